@@ -3,6 +3,7 @@ rootProject.name = "sustc"
 include(
     "sustc-api",
     "sustc-runner",
+    "sustc-jmh",
 )
 
 dependencyResolutionManagement {
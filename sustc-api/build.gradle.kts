@@ -19,6 +19,22 @@ dependencies {
     testImplementation("org.springframework.boot:spring-boot-starter-test")
 }
 
+tasks.test {
+    useJUnitPlatform {
+        excludeTags("db")
+    }
+}
+
+tasks.register<Test>("dbTest") {
+    group = "verification"
+    description = "Run the tests that need a PostgreSQL database (tagged db), see SUSTC_TEST_URL in the README"
+    testClassesDirs = sourceSets["test"].output.classesDirs
+    classpath = sourceSets["test"].runtimeClasspath
+    useJUnitPlatform {
+        includeTags("db")
+    }
+}
+
 
 tasks.withType<BootRun> {
     enabled = false
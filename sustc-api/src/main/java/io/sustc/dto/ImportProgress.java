@@ -0,0 +1,107 @@
+package io.sustc.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportProgress implements Serializable {
+
+    public enum Phase {
+        /**
+         * No import has run in this process.
+         */
+        IDLE,
+        /**
+         * Rows are being written.
+         */
+        LOAD,
+        /**
+         * Keys, foreign keys, indexes and statistics are being built.
+         */
+        CONSTRAINTS,
+        DONE,
+        FAILED,
+        /**
+         * An earlier import stopped part-way and left checkpoints behind; it can be resumed.
+         */
+        INTERRUPTED,
+        /**
+         * An import is running in another process; only what its checkpoints record is known.
+         */
+        RUNNING_ELSEWHERE
+    }
+
+    private Phase phase;
+
+    /**
+     * Milliseconds since the import started, or until it ended.
+     */
+    private long elapsedMillis;
+
+    /**
+     * Constraint, index and analyze stages finished so far, in completion order.
+     */
+    private List<String> completedStages;
+
+    private List<TableProgress> tables;
+
+    /**
+     * Rows per table whose imported counters (e.g. {@code users.followers}, {@code recipe.review_cnt})
+     * disagreed with the relation tables they are derived from.
+     */
+    private Map<String, Long> counterDrift;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TableProgress implements Serializable {
+
+        private String table;
+
+        /**
+         * Rows written so far, including chunks skipped because an earlier run already wrote them.
+         */
+        private long rowsDone;
+
+        /**
+         * Rows this table will receive, as far as known yet.
+         */
+        private long rowsTotal;
+
+        /**
+         * Payload bytes sent to the server.
+         */
+        private long bytesDone;
+
+        private long chunksDone;
+
+        private double rowsPerSecond;
+
+        private double bytesPerSecond;
+
+        /**
+         * Estimated seconds until the table is loaded, {@code -1} if unknown.
+         */
+        private long etaSeconds;
+
+        /**
+         * Rows per multi-row {@code INSERT} the adaptive batching settled on, {@code 0} when loading with COPY.
+         */
+        private int insertBatchSize;
+
+        /**
+         * Rows/s of the last {@code INSERT} batch.
+         */
+        private double insertBatchRowsPerSecond;
+    }
+}
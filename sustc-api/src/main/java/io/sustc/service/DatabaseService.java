@@ -1,13 +1,30 @@
 package io.sustc.service;
 
+import io.sustc.dto.ImportProgress;
 import io.sustc.dto.ReviewRecord;
 import io.sustc.dto.UserRecord;
 import io.sustc.dto.RecipeRecord;
 
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public interface DatabaseService {
 
+    /**
+     * How rows are pushed into the database during import.
+     */
+    enum ImportMode {
+        /**
+         * Multi-row {@code INSERT ... VALUES (?, ...)} statements.
+         */
+        INSERT,
+        /**
+         * PostgreSQL {@code COPY ... FROM STDIN} in binary format.
+         */
+        COPY
+    }
+
     /**
      * Acknowledges the authors of this project.
      *
@@ -29,6 +46,129 @@ public interface DatabaseService {
             List<RecipeRecord> recipeRecords
     );
 
+    /**
+     * Imports data to an empty database with the given import mode.
+     * Implementations that only support one mode may ignore {@code mode}.
+     *
+     * @param reviewRecords review records parsed from csv
+     * @param userRecords   user records parsed from csv
+     * @param recipeRecords recipe records parsed from csv
+     * @param mode          how rows are pushed into the database
+     */
+    default void importData(
+            List<ReviewRecord> reviewRecords,
+            List<UserRecord> userRecords,
+            List<RecipeRecord> recipeRecords,
+            ImportMode mode
+    ) {
+        importData(reviewRecords, userRecords, recipeRecords);
+    }
+
+    /**
+     * Imports data to an empty database from record streams.
+     * <p>
+     * An implementation that overrides this consumes the records one at a time and pushes them to the
+     * database in chunks, so that roughly {@code memoryBudgetBytes} of pending records and rows are held
+     * at any time and the datasets never need to fit on the heap. Each stream is consumed sequentially, once.
+     * <p>
+     * The default implementation ignores {@code memoryBudgetBytes}: it collects all three streams into lists
+     * and delegates to the list-based import, so the whole dataset is on the heap at once.
+     *
+     * @param reviewRecords     review records parsed from csv
+     * @param userRecords       user records parsed from csv
+     * @param recipeRecords     recipe records parsed from csv
+     * @param memoryBudgetBytes memory for pending records and rows, in bytes; ignored by the default implementation
+     */
+    default void importData(
+            Stream<ReviewRecord> reviewRecords,
+            Stream<UserRecord> userRecords,
+            Stream<RecipeRecord> recipeRecords,
+            long memoryBudgetBytes
+    ) {
+        importData(
+                reviewRecords.collect(Collectors.toList()),
+                userRecords.collect(Collectors.toList()),
+                recipeRecords.collect(Collectors.toList())
+        );
+    }
+
+    /**
+     * Applies an incremental data drop to an already imported database.
+     * <p>
+     * Users, recipes and reviews whose id already exists are updated, the others inserted. The follows of
+     * every given user, the ingredients of every given recipe and the likes of every given review are
+     * replaced by those in the records, and derived counters are brought up to date for the affected keys.
+     * Nothing is deleted except relations missing from the delta. The whole delta is applied atomically.
+     * A user, recipe or review given more than once takes its columns from the last of its records.
+     *
+     * @param reviewRecords new or changed reviews
+     * @param userRecords   new or changed users
+     * @param recipeRecords new or changed recipes
+     */
+    void importDelta(
+            List<ReviewRecord> reviewRecords,
+            List<UserRecord> userRecords,
+            List<RecipeRecord> recipeRecords
+    );
+
+    /**
+     * Continues an import that stopped part-way, skipping the work it had already committed.
+     * The records must be the same as in the interrupted import.
+     * The default implementation cannot resume, so it drops all tables and imports again.
+     *
+     * @param reviewRecords review records parsed from csv
+     * @param userRecords   user records parsed from csv
+     * @param recipeRecords recipe records parsed from csv
+     */
+    default void resumeImport(
+            List<ReviewRecord> reviewRecords,
+            List<UserRecord> userRecords,
+            List<RecipeRecord> recipeRecords
+    ) {
+        drop();
+        importData(reviewRecords, userRecords, recipeRecords);
+    }
+
+    /**
+     * Reports how far the running (or last) import got, per table.
+     * May be called from another thread while an import runs.
+     *
+     * @return the progress, with phase {@link ImportProgress.Phase#IDLE} if nothing is known
+     */
+    default ImportProgress getImportProgress() {
+        return ImportProgress.builder()
+                .phase(ImportProgress.Phase.IDLE)
+                .completedStages(List.of())
+                .tables(List.of())
+                .build();
+    }
+
+    /**
+     * Replaces the data of a populated database, keeping it queryable while the new data is loaded.
+     * <p>
+     * Unlike {@link #importData(List, List, List)}, the database does not need to be empty. The default
+     * implementation drops all tables and imports again, so queries fail until the import finishes.
+     *
+     * @param reviewRecords review records parsed from csv
+     * @param userRecords   user records parsed from csv
+     * @param recipeRecords recipe records parsed from csv
+     */
+    default void reloadData(
+            List<ReviewRecord> reviewRecords,
+            List<UserRecord> userRecords,
+            List<RecipeRecord> recipeRecords
+    ) {
+        drop();
+        importData(reviewRecords, userRecords, recipeRecords);
+    }
+
+    /**
+     * Forgets whatever the implementation cached about the data, because the tables were changed behind its back,
+     * e.g. restored to an earlier state by the benchmark.
+     */
+    default void invalidateCaches() {
+    }
+
     /**
      * Delete all tables in the database.
      * <p>
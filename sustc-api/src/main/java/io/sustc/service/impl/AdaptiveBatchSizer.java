@@ -0,0 +1,148 @@
+package io.sustc.service.impl;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Picks the number of rows per multi-row {@code INSERT} for each table from the throughput of its
+ * previous batches.
+ * <p>
+ * The size climbs by a constant factor while rows/s keep improving and turns around once they drop,
+ * so it settles near the throughput peak of each table: narrow rows such as follows end up with far
+ * larger batches than recipe with its TEXT columns. It never exceeds the 65,535 bind parameters a
+ * PostgreSQL statement accepts, nor roughly {@link #MAX_BATCH_BYTES} of parameter data.
+ * <p>
+ * The sizes handed out are rounded down to powers of two, so only a dozen or so statement shapes per table
+ * are ever built and cached, however the size wanders.
+ */
+final class AdaptiveBatchSizer {
+
+    static final int MAX_BIND_PARAMS = 65535;
+
+    private static final long MAX_BATCH_BYTES = 4L * 1024 * 1024;
+
+    private static final int MIN_BATCH_ROWS = 16;
+
+    private static final double STEP = 1.25;
+
+    // 吞吐下降超过该比例才掉头，避免被单批次的抖动带偏
+    private static final double TOLERANCE = 0.05;
+
+    private static final class TableState {
+
+        double batchSize;
+
+        int direction = 1;
+
+        double lastRowsPerSecond;
+
+        double avgRowBytes;
+    }
+
+    private final Map<String, TableState> states = new ConcurrentHashMap<>();
+
+    // key: 前缀 + 行数，只缓存 2 的幂行数的语句，数量有上限
+    private final Map<String, String> insertSql = new ConcurrentHashMap<>();
+
+    /**
+     * @return the number of rows to put into the next batch of {@code table}, a power of two
+     */
+    int batchSize(String table, int numParamsPerRecord) {
+        TableState state = state(table, numParamsPerRecord);
+        synchronized (state) {
+            return Integer.highestOneBit((int) Math.min(state.batchSize, maxRows(state, numParamsPerRecord)));
+        }
+    }
+
+    /**
+     * Feeds back one executed batch and moves the batch size of {@code table} accordingly.
+     */
+    void record(String table, int numParamsPerRecord, int rows, long bytes, long nanos) {
+        if (rows == 0 || nanos <= 0) {
+            return;
+        }
+        TableState state = state(table, numParamsPerRecord);
+        synchronized (state) {
+            double rowBytes = (double) bytes / rows;
+            state.avgRowBytes = state.avgRowBytes == 0 ? rowBytes : 0.8 * state.avgRowBytes + 0.2 * rowBytes;
+
+            double rowsPerSecond = rows * 1e9 / nanos;
+            if (rowsPerSecond < state.lastRowsPerSecond * (1 - TOLERANCE)) {
+                state.direction = -state.direction;
+            }
+            state.lastRowsPerSecond = rowsPerSecond;
+
+            double next = state.direction > 0 ? state.batchSize * STEP : state.batchSize / STEP;
+            double max = maxRows(state, numParamsPerRecord);
+            // 碰到边界时掉头继续探测
+            if (next >= max) {
+                next = max;
+                state.direction = -1;
+            } else if (next <= MIN_BATCH_ROWS) {
+                next = MIN_BATCH_ROWS;
+                state.direction = 1;
+            }
+            state.batchSize = next;
+        }
+    }
+
+    /**
+     * @return {@code sqlPrefix} followed by {@code rows} placeholder tuples, built once per shape when {@code rows}
+     * is a batch size handed out by {@link #batchSize}; the short last batch of a chunk is built every time
+     */
+    String insertSql(String sqlPrefix, int numParamsPerRecord, int rows) {
+        if (Integer.bitCount(rows) != 1) {
+            return buildInsertSql(sqlPrefix, numParamsPerRecord, rows);
+        }
+        return insertSql.computeIfAbsent(sqlPrefix + rows, k -> buildInsertSql(sqlPrefix, numParamsPerRecord, rows));
+    }
+
+    private static String buildInsertSql(String sqlPrefix, int numParamsPerRecord, int rows) {
+        String placeholders = "(" + String.join(",", Collections.nCopies(numParamsPerRecord, "?")) + ")";
+        return sqlPrefix + String.join(",", Collections.nCopies(rows, placeholders));
+    }
+
+    /**
+     * @return the batch size {@code table} is currently at, {@code 0} if it has not been inserted into
+     */
+    int currentBatchSize(String table) {
+        TableState state = states.get(table);
+        if (state == null) {
+            return 0;
+        }
+        synchronized (state) {
+            return (int) state.batchSize;
+        }
+    }
+
+    /**
+     * @return rows/s of the last batch of {@code table}
+     */
+    double lastRowsPerSecond(String table) {
+        TableState state = states.get(table);
+        if (state == null) {
+            return 0;
+        }
+        synchronized (state) {
+            return state.lastRowsPerSecond;
+        }
+    }
+
+    private TableState state(String table, int numParamsPerRecord) {
+        return states.computeIfAbsent(table, k -> {
+            TableState state = new TableState();
+            // 起点沿用原来的固定批量
+            state.batchSize = Math.max(MIN_BATCH_ROWS, 30000 / numParamsPerRecord);
+            return state;
+        });
+    }
+
+    private static double maxRows(TableState state, int numParamsPerRecord) {
+        double max = MAX_BIND_PARAMS / numParamsPerRecord;
+        if (state.avgRowBytes > 0) {
+            max = Math.min(max, MAX_BATCH_BYTES / state.avgRowBytes);
+        }
+        return Math.max(MIN_BATCH_ROWS, max);
+    }
+}
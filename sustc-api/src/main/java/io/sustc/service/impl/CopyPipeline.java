@@ -0,0 +1,374 @@
+package io.sustc.service.impl;
+
+import io.sustc.dto.RecipeRecord;
+import io.sustc.dto.ReviewRecord;
+import io.sustc.dto.UserRecord;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static io.sustc.service.impl.TableColumns.FOLLOW_COLUMNS;
+import static io.sustc.service.impl.TableColumns.HAS_INGREDIENT_COLUMNS;
+import static io.sustc.service.impl.TableColumns.INGREDIENT_COLUMNS;
+import static io.sustc.service.impl.TableColumns.LIKES_REVIEW_COLUMNS;
+import static io.sustc.service.impl.TableColumns.RECIPE_COLUMNS;
+import static io.sustc.service.impl.TableColumns.RECIPE_ROW;
+import static io.sustc.service.impl.TableColumns.REVIEW_COLUMNS;
+import static io.sustc.service.impl.TableColumns.REVIEW_ROW;
+import static io.sustc.service.impl.TableColumns.TABLES;
+import static io.sustc.service.impl.TableColumns.USER_COLUMNS;
+import static io.sustc.service.impl.TableColumns.USER_ROW;
+
+/**
+ * Streams records into the tables through three stages that run at the same time, connected by bounded queues:
+ * <ol>
+ *     <li>read: one thread per input stream pulls records off it (and so parses them, for CSV-backed streams)
+ *     and hands them on in small batches;</li>
+ *     <li>encode: one thread expands follows and likes, interns ingredient names and encodes every row into
+ *     binary {@code COPY} buffers, passing each buffer on once it reaches its chunk size;</li>
+ *     <li>write: worker threads, each on its own connection, send the full buffers with {@code COPY}.</li>
+ * </ol>
+ * A full queue blocks the stage feeding it, so a slow database throttles parsing instead of letting rows pile
+ * up. {@code memoryBudgetBytes} is split up front: a quarter goes to records between reading and encoding,
+ * counted at {@link #RECORD_BYTES} each, whether queued or held by a reader or the encoder; the rest goes to
+ * the {@code COPY} buffers, of which there are at most two per table (the one being filled and one spare for
+ * reuse) and two per writer (the one being sent and one queued). When the budget cannot give every buffer
+ * {@link #MIN_CHUNK_BYTES}, fewer writers are used. The first failure in any stage stops all of them.
+ */
+@Slf4j
+final class CopyPipeline {
+
+    private static final int RECORD_BATCH = 1024;
+
+    private static final int RECORD_QUEUE_BATCHES = 64;
+
+    /**
+     * Batches held outside the queue: one per reader thread and the one being encoded.
+     */
+    private static final int HELD_BATCHES = 4;
+
+    /**
+     * Rough heap footprint of one parsed record, its strings and arrays included.
+     */
+    static final long RECORD_BYTES = 1024;
+
+    static final long MIN_CHUNK_BYTES = 64 * 1024;
+
+    private static final long MAX_CHUNK_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * Room past the chunk size, so the row that fills a buffer does not make it grow.
+     */
+    static final int CHUNK_SLACK_BYTES = 16 * 1024;
+
+    /**
+     * Told about every chunk sent to the server.
+     */
+    interface FlushListener {
+        void flushed(String table, long rows, long bytes);
+    }
+
+    private enum Source {
+        USERS, RECIPES, REVIEWS
+    }
+
+    /**
+     * Records read from one source; {@code records == null} marks the end of that source.
+     */
+    private record Batch(Source source, List<?> records) {
+    }
+
+    private static final PgBinaryCopyBuffer END_OF_CHUNKS = new PgBinaryCopyBuffer("end_of_chunks", 0, "none");
+
+    private final ImportTarget target;
+
+    private final int writers;
+
+    private final long chunkBytes;
+
+    private final int recordBatch;
+
+    private final FlushListener listener;
+
+    private final BlockingQueue<Batch> batches;
+
+    private final BlockingQueue<PgBinaryCopyBuffer> chunks;
+
+    private final Map<String, Queue<PgBinaryCopyBuffer>> spares = new HashMap<>();
+
+    private final AtomicLong chunksWritten = new AtomicLong();
+
+    /**
+     * @param writers number of connections writing concurrently, lowered if the budget is too small for them
+     * @throws IllegalArgumentException if the budget is too small for even one writer
+     */
+    CopyPipeline(ImportTarget target, long memoryBudgetBytes, int writers, FlushListener listener) {
+        this.target = target;
+        this.listener = listener;
+
+        // 四分之一给读出、尚未编码的记录：队列里的批次加上读线程和编码线程手上的
+        long records = memoryBudgetBytes / 4 / RECORD_BYTES;
+        this.recordBatch = (int) Math.max(1, Math.min(RECORD_BATCH, records / (RECORD_QUEUE_BATCHES + HELD_BATCHES)));
+        this.batches = new ArrayBlockingQueue<>((int) Math.max(1, Math.min(RECORD_QUEUE_BATCHES, records / recordBatch - HELD_BATCHES)));
+
+        // 其余给 COPY 缓冲区：每张表一个正在填的和一个备用的，每个写线程一个正在发送的和一个排队的
+        long bufferBudget = memoryBudgetBytes - memoryBudgetBytes / 4;
+        long fitting = bufferBudget / (MIN_CHUNK_BYTES + CHUNK_SLACK_BYTES);
+        int maxWriters = (int) Math.min(Integer.MAX_VALUE, (fitting - 2L * TABLES.size()) / 2);
+        if (maxWriters < 1) {
+            throw new IllegalArgumentException("A memory budget of " + memoryBudgetBytes
+                    + " bytes is too small for the streaming import, it needs at least " + minimumBudget() + " bytes");
+        }
+        this.writers = Math.min(Math.max(1, writers), maxWriters);
+        if (this.writers < writers) {
+            log.info("A memory budget of {} bytes only leaves room for {} of {} writers", memoryBudgetBytes, this.writers, writers);
+        }
+        this.chunkBytes = Math.min(MAX_CHUNK_BYTES, bufferBudget / (2L * TABLES.size() + 2L * this.writers) - CHUNK_SLACK_BYTES);
+        this.chunks = new ArrayBlockingQueue<>(this.writers);
+        TABLES.forEach(table -> spares.put(table, new ArrayBlockingQueue<>(1)));
+    }
+
+    /**
+     * @return the smallest budget the pipeline accepts, the one that gives a single writer chunks of {@link #MIN_CHUNK_BYTES}
+     */
+    static long minimumBudget() {
+        long bufferBudget = (2L * TABLES.size() + 2) * (MIN_CHUNK_BYTES + CHUNK_SLACK_BYTES);
+        // 最小的 b 使 b - b / 4 >= bufferBudget
+        return (bufferBudget - 1) * 4 / 3 + 1;
+    }
+
+    int writers() {
+        return writers;
+    }
+
+    long chunkBytes() {
+        return chunkBytes;
+    }
+
+    int recordBatch() {
+        return recordBatch;
+    }
+
+    int recordQueueCapacity() {
+        return batches.remainingCapacity();
+    }
+
+    /**
+     * Runs all stages to completion. Each stream is consumed once, sequentially, on its own reader thread.
+     */
+    void run(Stream<ReviewRecord> reviewRecords, Stream<UserRecord> userRecords, Stream<RecipeRecord> recipeRecords) {
+        AtomicInteger threadId = new AtomicInteger();
+        int threads = 3 + 1 + writers;
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "sustc-pipeline-" + threadId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        ExecutorCompletionService<Void> stages = new ExecutorCompletionService<>(executor);
+        try {
+            stages.submit(() -> read(Source.USERS, userRecords), null);
+            stages.submit(() -> read(Source.RECIPES, recipeRecords), null);
+            stages.submit(() -> read(Source.REVIEWS, reviewRecords), null);
+            stages.submit(() -> {
+                encode();
+                return null;
+            });
+            for (int i = 0; i < writers; i++) {
+                stages.submit(() -> {
+                    write();
+                    return null;
+                });
+            }
+            for (int i = 0; i < threads; i++) {
+                stages.take().get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            // 任一阶段失败时中断其余阻塞在队列上的线程
+            executor.shutdownNow();
+        }
+        log.debug("Pipeline wrote {} COPY chunks", chunksWritten.get());
+    }
+
+    private void read(Source source, Stream<?> records) {
+        try {
+            List<Object> batch = new ArrayList<>(recordBatch);
+            Iterator<?> it = records.sequential().iterator();
+            while (it.hasNext()) {
+                batch.add(it.next());
+                if (batch.size() == recordBatch) {
+                    batches.put(new Batch(source, batch));
+                    batch = new ArrayList<>(recordBatch);
+                }
+            }
+            if (!batch.isEmpty()) {
+                batches.put(new Batch(source, batch));
+            }
+            batches.put(new Batch(source, null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void encode() throws InterruptedException {
+        Encoder encoder = new Encoder();
+        int open = Source.values().length;
+        while (open > 0) {
+            Batch batch = batches.take();
+            if (batch.records() == null) {
+                open--;
+                continue;
+            }
+            for (Object record : batch.records()) {
+                switch (batch.source()) {
+                    case USERS -> encoder.user((UserRecord) record);
+                    case RECIPES -> encoder.recipe((RecipeRecord) record);
+                    case REVIEWS -> encoder.review((ReviewRecord) record);
+                }
+            }
+        }
+        // 所有菜谱都处理完，字典才完整
+        target.dictionary().forEach((name, id) -> encoder.ingredients = encoder.addRow(encoder.ingredients, id, name));
+        encoder.finish();
+        for (int i = 0; i < writers; i++) {
+            chunks.put(END_OF_CHUNKS);
+        }
+    }
+
+    private void write() throws InterruptedException {
+        try (Connection conn = target.dataSource().getConnection()) {
+            while (true) {
+                PgBinaryCopyBuffer chunk = chunks.take();
+                if (chunk == END_OF_CHUNKS) {
+                    return;
+                }
+                long bytes = chunk.size();
+                long rows = chunk.flush(conn);
+                chunksWritten.incrementAndGet();
+                listener.flushed(chunk.table(), rows, bytes);
+                // 每张表只留一个备用缓冲区，多余的交给 GC
+                spares.get(chunk.table()).offer(chunk);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * State of the encode stage; only ever touched by its thread.
+     */
+    private final class Encoder {
+
+        private final Map<String, String[]> columns = Map.of(
+                "users", USER_COLUMNS, "follows", FOLLOW_COLUMNS,
+                "recipe", RECIPE_COLUMNS, "has_ingredient", HAS_INGREDIENT_COLUMNS, "ingredient", INGREDIENT_COLUMNS,
+                "review", REVIEW_COLUMNS, "likes_review", LIKES_REVIEW_COLUMNS);
+
+        PgBinaryCopyBuffer users = open("users");
+
+        PgBinaryCopyBuffer follows = open("follows");
+
+        PgBinaryCopyBuffer recipes = open("recipe");
+
+        PgBinaryCopyBuffer hasIngredients = open("has_ingredient");
+
+        PgBinaryCopyBuffer ingredients = open("ingredient");
+
+        PgBinaryCopyBuffer reviews = open("review");
+
+        PgBinaryCopyBuffer likes = open("likes_review");
+
+        void user(UserRecord u) {
+            users = addRow(users, USER_ROW.map(u));
+            if (u.getFollowingUsers() != null) {
+                long followerId = u.getAuthorId();
+                for (long bloggerId : Arrays.stream(u.getFollowingUsers()).distinct().toArray()) {
+                    follows = addRow(follows, bloggerId, followerId);
+                }
+            }
+        }
+
+        void recipe(RecipeRecord r) {
+            recipes = addRow(recipes, RECIPE_ROW.map(r));
+            if (r.getRecipeIngredientParts() != null) {
+                long rid = r.getRecipeId();
+                String[] names = Arrays.stream(r.getRecipeIngredientParts())
+                        .filter(Objects::nonNull)
+                        .distinct()
+                        .toArray(String[]::new);
+                for (String name : names) {
+                    hasIngredients = addRow(hasIngredients, rid, target.dictionary().intern(name));
+                }
+            }
+        }
+
+        void review(ReviewRecord rr) {
+            reviews = addRow(reviews, REVIEW_ROW.map(rr));
+            if (rr.getLikes() != null) {
+                long rid = rr.getReviewId();
+                for (long uid : Arrays.stream(rr.getLikes()).distinct().toArray()) {
+                    likes = addRow(likes, uid, rid);
+                }
+            }
+        }
+
+        /**
+         * Appends a row and, once {@code buffer} reached the chunk size, queues it for writing.
+         *
+         * @return the buffer to append the next row of this table to
+         */
+        PgBinaryCopyBuffer addRow(PgBinaryCopyBuffer buffer, Object... values) {
+            buffer.addRow(values);
+            if (buffer.size() < chunkBytes) {
+                return buffer;
+            }
+            try {
+                chunks.put(buffer);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            return open(buffer.table());
+        }
+
+        void finish() throws InterruptedException {
+            for (PgBinaryCopyBuffer buffer : List.of(users, follows, recipes, hasIngredients, ingredients, reviews, likes)) {
+                if (buffer.rowCount() > 0) {
+                    chunks.put(buffer);
+                }
+            }
+        }
+
+        private PgBinaryCopyBuffer open(String table) {
+            PgBinaryCopyBuffer spare = spares.get(table).poll();
+            return spare != null ? spare : new PgBinaryCopyBuffer(table, (int) chunkBytes + CHUNK_SLACK_BYTES, columns.get(table));
+        }
+    }
+}
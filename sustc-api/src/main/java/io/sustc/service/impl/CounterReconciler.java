@@ -0,0 +1,179 @@
+package io.sustc.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Recomputes the denormalized counters ({@code users.following/followers}, {@code recipe.aggr_rating/review_cnt})
+ * from the relation tables after an import.
+ * <p>
+ * Each table is cut into equally wide key ranges, one scheduler task per range, and every task runs a single
+ * {@code UPDATE ... FROM (SELECT ... GROUP BY)} over its range. Only rows whose stored value
+ * {@code IS DISTINCT FROM} the recomputed one are touched, and their number is reported as drift.
+ * The formulas match the incremental updates in {@link UserServiceImpl} and
+ * {@link ReviewServiceImpl#refreshRecipeAggregatedRating}.
+ */
+@Slf4j
+final class CounterReconciler {
+
+    enum Mode {
+        /**
+         * Leave the imported values alone.
+         */
+        OFF,
+        /**
+         * Only count the rows whose counters disagree with the relation tables.
+         */
+        REPORT,
+        /**
+         * Overwrite the counters that disagree.
+         */
+        REPAIR
+    }
+
+    /**
+     * Counters of {@code table}. {@code derivedSql} is given a function that turns a key column into a
+     * predicate restricting it to the keys being reconciled, and returns a query yielding {@code key}
+     * plus one column per counter, named like the counter.
+     */
+    private record DerivedCounters(String table, String key, List<String> columns, List<String> sources,
+                                   Function<UnaryOperator<String>, String> derivedSql) {
+    }
+
+    private static final List<DerivedCounters> COUNTERS = List.of(
+            new DerivedCounters("users", "author_id", List.of("following", "followers"), List.of("users", "follows"), keys -> """
+                SELECT u.author_id,
+                       COALESCE(fo.cnt, 0) AS following,
+                       COALESCE(fr.cnt, 0) AS followers
+                FROM users u
+                LEFT JOIN (SELECT follower_id, COUNT(*) AS cnt FROM follows
+                           WHERE %s GROUP BY follower_id) fo ON fo.follower_id = u.author_id
+                LEFT JOIN (SELECT blogger_id, COUNT(*) AS cnt FROM follows
+                           WHERE %s GROUP BY blogger_id) fr ON fr.blogger_id = u.author_id
+                WHERE %s
+            """.formatted(keys.apply("follower_id"), keys.apply("blogger_id"), keys.apply("u.author_id"))),
+            new DerivedCounters("recipe", "recipe_id", List.of("aggr_rating", "review_cnt"), List.of("recipe", "review"), keys -> """
+                SELECT r.recipe_id,
+                       ROUND(CAST(v.avg_rating AS numeric), 2) AS aggr_rating,
+                       COALESCE(v.cnt, 0) AS review_cnt
+                FROM recipe r
+                LEFT JOIN (SELECT recipe_id, AVG(rating) AS avg_rating, COUNT(*) AS cnt FROM review
+                           WHERE %s GROUP BY recipe_id) v ON v.recipe_id = r.recipe_id
+                WHERE %s
+            """.formatted(keys.apply("recipe_id"), keys.apply("r.recipe_id")))
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Mode mode;
+
+    private final Map<String, LongAdder> drift = new LinkedHashMap<>();
+
+    CounterReconciler(JdbcTemplate jdbcTemplate, Mode mode) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.mode = mode;
+        COUNTERS.forEach(c -> drift.put(c.table(), new LongAdder()));
+    }
+
+    /**
+     * Submits one task per key range and table, each named {@code counters:<table>} and starting once
+     * {@code readyTasksOf} of every table it reads has finished.
+     */
+    void schedule(ImportScheduler scheduler, int partitions, Function<String, String[]> readyTasksOf) {
+        if (mode == Mode.OFF) {
+            return;
+        }
+        for (DerivedCounters counters : COUNTERS) {
+            String[] dependsOn = counters.sources().stream()
+                    .flatMap(t -> Arrays.stream(readyTasksOf.apply(t)))
+                    .distinct()
+                    .toArray(String[]::new);
+            for (int i = 0; i < partitions; i++) {
+                int part = i;
+                scheduler.submit("counters:" + counters.table(), () -> reconcile(counters, part, partitions), dependsOn);
+            }
+        }
+    }
+
+    /**
+     * @return rows per table whose counters disagreed with the relation tables
+     */
+    Map<String, Long> drift() {
+        return drift.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().sum(), (a, b) -> a, LinkedHashMap::new));
+    }
+
+    /**
+     * Repairs the counters of {@code table} for the keys returned by {@code keysSql}, on {@code conn}
+     * (and so inside its transaction). Used after an incremental import, which only touches a few keys.
+     *
+     * @return number of rows whose counters changed
+     */
+    static long repairKeys(Connection conn, String table, String keysSql) throws SQLException {
+        DerivedCounters counters = COUNTERS.stream()
+                .filter(c -> c.table().equals(table))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No derived counters on " + table));
+        try (Statement stmt = conn.createStatement()) {
+            return stmt.executeUpdate(reconcileSql(counters, Mode.REPAIR, c -> c + " IN (" + keysSql + ")"));
+        }
+    }
+
+    /**
+     * In {@link Mode#REPAIR} an {@code UPDATE} of the drifted rows, otherwise a {@code SELECT COUNT(*)} of them.
+     */
+    private static String reconcileSql(DerivedCounters counters, Mode mode, UnaryOperator<String> keys) {
+        String derived = counters.derivedSql().apply(keys);
+        String distinct = counters.columns().stream()
+                .map(c -> "t." + c + " IS DISTINCT FROM d." + c)
+                .collect(Collectors.joining(" OR "));
+        if (mode == Mode.REPAIR) {
+            String set = counters.columns().stream()
+                    .map(c -> c + " = d." + c)
+                    .collect(Collectors.joining(", "));
+            return "UPDATE " + counters.table() + " t SET " + set + " FROM (" + derived + ") d"
+                    + " WHERE t." + counters.key() + " = d." + counters.key() + " AND (" + distinct + ")";
+        }
+        return "SELECT COUNT(*) FROM " + counters.table() + " t JOIN (" + derived + ") d"
+                + " ON t." + counters.key() + " = d." + counters.key() + " WHERE " + distinct;
+    }
+
+    private void reconcile(DerivedCounters counters, int part, int partitions) {
+        Map<String, Object> bounds = jdbcTemplate.queryForMap(
+                "SELECT MIN(" + counters.key() + ") AS lo, MAX(" + counters.key() + ") AS hi FROM " + counters.table());
+        if (bounds.get("lo") == null) {
+            return;
+        }
+        long min = ((Number) bounds.get("lo")).longValue();
+        long max = ((Number) bounds.get("hi")).longValue();
+        long width = (max - min) / partitions + 1;
+        long lo = min + width * part;
+        long hi = part == partitions - 1 ? max + 1 : lo + width;
+        if (lo > max) {
+            return;
+        }
+
+        String sql = reconcileSql(counters, mode, c -> c + " >= " + lo + " AND " + c + " < " + hi);
+        long rows;
+        if (mode == Mode.REPAIR) {
+            rows = jdbcTemplate.update(sql);
+        } else {
+            Long count = jdbcTemplate.queryForObject(sql, Long.class);
+            rows = count == null ? 0 : count;
+        }
+        drift.get(counters.table()).add(rows);
+        log.debug("Counters of {} [{}, {}): {} rows drifted", counters.table(), lo, hi, rows);
+    }
+}
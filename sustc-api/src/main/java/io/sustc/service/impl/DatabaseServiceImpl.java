@@ -1,22 +1,42 @@
 package io.sustc.service.impl;
 
+import com.zaxxer.hikari.HikariDataSource;
+import io.sustc.dto.ImportProgress;
 import io.sustc.dto.ReviewRecord;
 import io.sustc.dto.UserRecord;
 import io.sustc.dto.RecipeRecord;
 import io.sustc.service.DatabaseService;
+import io.sustc.service.impl.TableColumns.RowMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static io.sustc.service.impl.TableColumns.FOLLOW_COLUMNS;
+import static io.sustc.service.impl.TableColumns.HAS_INGREDIENT_COLUMNS;
+import static io.sustc.service.impl.TableColumns.INGREDIENT_COLUMNS;
+import static io.sustc.service.impl.TableColumns.LIKES_REVIEW_COLUMNS;
+import static io.sustc.service.impl.TableColumns.RECIPE_COLUMNS;
+import static io.sustc.service.impl.TableColumns.RECIPE_ROW;
+import static io.sustc.service.impl.TableColumns.REVIEW_COLUMNS;
+import static io.sustc.service.impl.TableColumns.REVIEW_ROW;
+import static io.sustc.service.impl.TableColumns.TABLES;
+import static io.sustc.service.impl.TableColumns.USER_COLUMNS;
+import static io.sustc.service.impl.TableColumns.USER_ROW;
 
 @Service
 @Slf4j
@@ -28,128 +48,735 @@ public class DatabaseServiceImpl implements DatabaseService {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private IngredientDictionary ingredientDictionary;
+
+    @Autowired
+    private ImportMetrics importMetrics;
+
     @Override
     public List<Integer> getGroupMembers() {
         return Arrays.asList(12410303, 12410148);
     }
 
+    // COPY 缓冲区超过该大小就发送一次，避免整张表都堆在内存里
+    private static final int COPY_FLUSH_BYTES = 8 * 1024 * 1024;
+
+    // 每个分块单独提交并记录检查点，中断后从下一个分块继续
+    private static final int CHUNK_ROWS = 50_000;
+
+    @Value("${sustc.import.mode:COPY}")
+    private ImportMode defaultImportMode;
+
+    // 建二级索引时每个连接使用的 maintenance_work_mem 与并行维护 worker 数
+    @Value("${sustc.import.maintenance-work-mem:256MB}")
+    private String maintenanceWorkMem;
+
+    @Value("${sustc.import.maintenance-workers:2}")
+    private int maintenanceWorkers;
+
+    // 按表记住 INSERT 批量大小，多次导入之间沿用
+    private final AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer();
+
+    private final Map<String, Long> indexBuildTimes = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    // 导入使用的工作线程数，0 表示按 CPU 核数（不超过连接池大小）
+    @Value("${sustc.import.parallelism:0}")
+    private int importParallelism;
+
+    // 导入结束后按 follows / review 重新计算 users、recipe 上的计数列：OFF、REPORT（只统计，默认）或 REPAIR（修正，会改写数据集给的值）
+    @Value("${sustc.import.counters:REPORT}")
+    private CounterReconciler.Mode counterMode;
+
+    // 导入过程中输出进度日志的间隔（秒），0 表示不输出
+    @Value("${sustc.import.progress-log-seconds:10}")
+    private long progressLogSeconds;
+
+    /**
+     * Key constraints of one table, added by a single {@code ALTER TABLE} once the table is loaded.
+     */
+    private record TableKeys(String table, List<String> primaryKey, String constraints) {
+
+        TableKeys(String table, String primaryKey) {
+            this(table, List.of(primaryKey.split(", ")), "");
+        }
+
+        TableKeys(String table, String primaryKey, String constraints) {
+            this(table, List.of(primaryKey.split(", ")), constraints);
+        }
+
+        String clauses() {
+            String pk = "ADD PRIMARY KEY (" + String.join(", ", primaryKey) + ")";
+            return constraints.isEmpty() ? pk : pk + ", " + constraints;
+        }
+    }
+
+    /**
+     * A foreign key of {@code table} referencing {@code referencedTable}.
+     */
+    private record ForeignKey(String table, String name, String definition, String referencedTable) {
+    }
+
+    private static final List<TableKeys> TABLE_KEYS = List.of(
+            new TableKeys("users", "author_id", "ADD CONSTRAINT chk_users_gender CHECK (gender IN ('Male','Female','UNKNOWN'))"),
+            new TableKeys("follows", "blogger_id, follower_id"),
+            new TableKeys("recipe", "recipe_id"),
+            new TableKeys("ingredient", "ingredient_id", "ADD CONSTRAINT uq_ingredient_name UNIQUE (ingredient_name)"),
+            new TableKeys("has_ingredient", "recipe_id, ingredient_id"),
+            new TableKeys("review", "review_id"),
+            new TableKeys("likes_review", "author_id, review_id")
+    );
+
+    private static final List<SecondaryIndexCatalogue.IndexSpec> SECONDARY_INDEXES = SecondaryIndexCatalogue.derive(
+            TABLE_KEYS.stream().collect(Collectors.toMap(TableKeys::table, TableKeys::primaryKey)));
+
+    /**
+     * Where an import writes to: the live {@code public} tables, or the staging schema of {@link #reloadData}.
+     */
+    record ImportTarget(DataSource dataSource, JdbcTemplate jdbcTemplate, IngredientDictionary dictionary) {
+    }
+
+    // reloadData 先把新数据导入该 schema，再整体换入 public
+    private static final String STAGING_SCHEMA = "sustc_staging";
+
+    private static final String RETIRED_SCHEMA = "sustc_retired";
+
+    private static final List<ForeignKey> FOREIGN_KEYS = List.of(
+            new ForeignKey("follows", "fk_follows_blogger", "FOREIGN KEY (blogger_id) REFERENCES users(author_id)", "users"),
+            new ForeignKey("follows", "fk_follows_follower", "FOREIGN KEY (follower_id) REFERENCES users(author_id)", "users"),
+            new ForeignKey("recipe", "fk_recipe_author", "FOREIGN KEY (author_id) REFERENCES users(author_id)", "users"),
+            new ForeignKey("has_ingredient", "fk_has_recipe", "FOREIGN KEY (recipe_id) REFERENCES recipe(recipe_id)", "recipe"),
+            new ForeignKey("has_ingredient", "fk_has_ingredient", "FOREIGN KEY (ingredient_id) REFERENCES ingredient(ingredient_id)", "ingredient"),
+            new ForeignKey("review", "fk_review_recipe", "FOREIGN KEY (recipe_id) REFERENCES recipe(recipe_id)", "recipe"),
+            new ForeignKey("review", "fk_review_author", "FOREIGN KEY (author_id) REFERENCES users(author_id)", "users"),
+            new ForeignKey("likes_review", "fk_likes_author", "FOREIGN KEY (author_id) REFERENCES users(author_id)", "users"),
+            new ForeignKey("likes_review", "fk_likes_review", "FOREIGN KEY (review_id) REFERENCES review(review_id)", "review")
+    );
+
     @Override
-    @Transactional
     public void importData(
             List<ReviewRecord> reviewRecords,
             List<UserRecord> userRecords,
             List<RecipeRecord> recipeRecords) {
+        importData(reviewRecords, userRecords, recipeRecords, defaultImportMode);
+    }
 
-        createBasicTables();
+    /**
+     * Loads the tables concurrently on several pooled connections.
+     * Constraints are only added after loading, so the tables can be filled in any order;
+     * review and likes_review are further split into disjoint review-id ranges.
+     * Each table gets its keys as soon as it is loaded, and foreign keys are validated
+     * once both sides have their keys.
+     */
+    @Override
+    public void importData(
+            List<ReviewRecord> reviewRecords,
+            List<UserRecord> userRecords,
+            List<RecipeRecord> recipeRecords,
+            ImportMode mode) {
+        ImportTarget target = liveTarget();
+        createBasicTables(target, false);
+        runImport(target, reviewRecords, userRecords, recipeRecords, mode, false);
+    }
 
-        String userSql = "INSERT INTO users (author_id, author_name, gender, age, following, followers, password) VALUES ";
-        executeBulkInsert(userSql, 7, userRecords, (u) -> new Object[]{
-                u.getAuthorId(), u.getAuthorName(), u.getGender(), u.getAge(), u.getFollowing(), u.getFollowers(), u.getPassword()
-        });
+    /**
+     * Continues from the checkpoints of an import that stopped part-way: chunks and stages recorded
+     * there are skipped, everything else runs as in {@link #importData(List, List, List, ImportMode)}.
+     * The records must be the same as in the interrupted run.
+     * <p>
+     * A streaming import has no per-chunk checkpoints, so it is only resumed once all its rows were written,
+     * and then only its remaining constraint, index and analyze stages run.
+     *
+     * @throws IllegalStateException if an import is still running, or a streaming import stopped while loading
+     */
+    @Override
+    public void resumeImport(
+            List<ReviewRecord> reviewRecords,
+            List<UserRecord> userRecords,
+            List<RecipeRecord> recipeRecords) {
+        if (ImportCheckpoints.isLive(jdbcTemplate)) {
+            throw new IllegalStateException("An import is still running, wait for it or stop it before resuming");
+        }
+        ImportTarget target = liveTarget();
+        if (ImportCheckpoints.hasStreamingCheckpoints(jdbcTemplate)) {
+            resumeStreamingImport(target);
+            return;
+        }
+        createBasicTables(target, false);
+        runImport(target, reviewRecords, userRecords, recipeRecords, defaultImportMode, true);
+    }
+
+    private void resumeStreamingImport(ImportTarget target) {
+        int parallelism = resolveParallelism();
+        try (ImportCheckpoints checkpoints = new ImportCheckpoints(target.jdbcTemplate())) {
+            checkpoints.begin(true, parallelism);
+            if (!checkpoints.isDone(ImportCheckpoints.STREAM_LOADED, 0, 0)) {
+                throw new IllegalStateException("The interrupted streaming import stopped while loading rows, which it does not"
+                        + " checkpoint; drop the tables and import again");
+            }
+            log.info("Resuming the stages of a streaming import on {} workers", parallelism);
+            target.dictionary().clear();
+            importMetrics.start(TABLES, progressLogSeconds);
+            runStreamingStages(target, checkpoints, parallelism, () -> importMetrics.phase(ImportProgress.Phase.CONSTRAINTS));
+        }
+    }
 
-        // --- Follows ---
-        List<Object[]> followArgs = userRecords.parallelStream()
-                .filter(u -> u.getFollowingUsers() != null && u.getFollowingUsers().length > 0)
-                .flatMap(u -> {
-                    long followerId = u.getAuthorId();
-                    return Arrays.stream(u.getFollowingUsers())
-                            .distinct() // 去重
-                            .mapToObj(bloggerId -> new Object[]{bloggerId, followerId});
-                })
-                .collect(Collectors.toList());
-
-        executeBulkInsert("INSERT INTO follows (blogger_id, follower_id) VALUES ", 2, followArgs, x -> x);
-
-        // --- Recipe ---
-        String recipeSql = "INSERT INTO recipe (recipe_id, author_id, dish_name, date_published, cook_time, prep_time, description, category, aggr_rating, review_cnt, recipe_yield, servings, calories, fat, saturated_fat, cholesterol, sodium, carbohydrate, fiber, sugar, protein) VALUES ";
-        executeBulkInsert(recipeSql, 21, recipeRecords, (r) -> new Object[]{
-                r.getRecipeId(), r.getAuthorId(), r.getName(), r.getDatePublished(), r.getCookTime(), r.getPrepTime(), r.getDescription(), r.getRecipeCategory(), r.getAggregatedRating(), r.getReviewCount(), r.getRecipeYield(), r.getRecipeServings(), r.getCalories(), r.getFatContent(), r.getSaturatedFatContent(), r.getCholesterolContent(), r.getSodiumContent(), r.getCarbohydrateContent(), r.getFiberContent(), r.getSugarContent(), r.getProteinContent()
+    /**
+     * Merges a delta through temporary tables in a single transaction, see {@link DeltaImporter}.
+     * Derived counters of the touched keys are always recomputed, whatever {@code sustc.import.counters}
+     * says: that setting is about trusting the counters of a full dataset, while a delta can change the
+     * relations of rows it does not carry.
+     */
+    @Override
+    public void importDelta(
+            List<ReviewRecord> reviewRecords,
+            List<UserRecord> userRecords,
+            List<RecipeRecord> recipeRecords) {
+        long start = System.currentTimeMillis();
+        DeltaImporter delta = inTransaction(jdbcTemplate, conn -> {
+            DeltaImporter importer = new DeltaImporter(conn);
+            importer.apply(reviewRecords, userRecords, recipeRecords);
+            return importer;
         });
+        // 事务提交后再把新食材放进缓存
+        delta.getNewIngredients().forEach(ingredientDictionary::put);
+        log.info("Applied delta of {} users, {} recipes, {} reviews in {} ms, rows changed: {}",
+                userRecords.size(), recipeRecords.size(), reviewRecords.size(), System.currentTimeMillis() - start, delta);
+    }
 
-        // --- Ingredients ---
-        Set<String> uniqueIngredientNames = recipeRecords.parallelStream()
-                .filter(r -> r.getRecipeIngredientParts() != null)
-                .flatMap(r -> Arrays.stream(r.getRecipeIngredientParts())) // 使用 Arrays.stream() 处理数组
-                .collect(Collectors.toSet());
+    @Override
+    public ImportProgress getImportProgress() {
+        ImportProgress progress = importMetrics.snapshot();
+        if (progress.getPhase() == ImportProgress.Phase.IDLE) {
+            // 本进程还没有导入过：看看上一次（可能已中断的）导入留下的检查点
+            // 也可能是另一个进程正在导入，靠检查点表里的心跳区分
+            ImportProgress checkpointed = ImportCheckpoints.readCheckpointed(jdbcTemplate);
+            if (checkpointed != null) {
+                return checkpointed;
+            }
+        }
+        return progress;
+    }
 
-        List<String> sortedIngredients = new ArrayList<>(uniqueIngredientNames);
-        executeBulkInsert("INSERT INTO ingredient (ingredient_name) VALUES ", 1, sortedIngredients, (name) -> new Object[]{name});
+    private void runImport(
+            ImportTarget target,
+            List<ReviewRecord> reviewRecords,
+            List<UserRecord> userRecords,
+            List<RecipeRecord> recipeRecords,
+            ImportMode mode,
+            boolean resume) {
+        int parallelism = resolveParallelism();
+        ImportCheckpoints checkpoints = new ImportCheckpoints(target.jdbcTemplate());
+        int partitions = checkpoints.begin(resume, parallelism);
+        log.info("{} data with mode {} on {} workers", resume ? "Resuming import of" : "Importing", mode, parallelism);
+
+        target.dictionary().clear();
+        importMetrics.start(TABLES, progressLogSeconds);
+        importMetrics.expect("users", userRecords.size());
+        importMetrics.expect("recipe", recipeRecords.size());
+        importMetrics.expect("review", reviewRecords.size());
+
+        boolean success = false;
+        try (ImportScheduler scheduler = new ImportScheduler(parallelism)) {
+            scheduler.submit("load:users", () -> bulkLoad(target, checkpoints, mode, "users", 0, USER_COLUMNS, userRecords, USER_ROW));
+
+            // --- Follows ---
+            scheduler.submit("load:follows", () -> {
+                List<Object[]> followArgs = userRecords.parallelStream()
+                        .filter(u -> u.getFollowingUsers() != null && u.getFollowingUsers().length > 0)
+                        .flatMap(u -> {
+                            long followerId = u.getAuthorId();
+                            return Arrays.stream(u.getFollowingUsers())
+                                    .distinct() // 去重
+                                    .mapToObj(bloggerId -> new Object[]{bloggerId, followerId});
+                        })
+                        .collect(Collectors.toList());
+
+                importMetrics.expect("follows", followArgs.size());
+                bulkLoad(target, checkpoints, mode, "follows", 0, FOLLOW_COLUMNS, followArgs, x -> x);
+            });
 
-        Map<String, Long> ingredientMap = new HashMap<>(uniqueIngredientNames.size());
-        jdbcTemplate.query("SELECT ingredient_id, ingredient_name FROM ingredient", (rs) -> {
-            ingredientMap.put(rs.getString("ingredient_name"), rs.getLong("ingredient_id"));
-        });
+            // --- Recipe ---
+            scheduler.submit("load:recipe", () -> bulkLoad(target, checkpoints, mode, "recipe", 0, RECIPE_COLUMNS, recipeRecords, RECIPE_ROW));
 
-        // --- Has_Ingredient ---
-        List<Object[]> recipeIngRelations = recipeRecords.parallelStream()
-                .filter(r -> r.getRecipeIngredientParts() != null && r.getRecipeIngredientParts().length > 0) // 数组没有 isEmpty()，用 length > 0
-                .flatMap(r -> {
+            // --- Ingredients & Has_Ingredient --- 食材 id 在内存字典中分配，一遍扫描同时得到两张表的行
+            List<Object[]> recipeIngRelations = new ArrayList<>();
+            scheduler.submit("intern:ingredient", () -> {
+                for (RecipeRecord r : recipeRecords) {
+                    if (r.getRecipeIngredientParts() == null) continue;
                     long rid = r.getRecipeId();
-                    Set<String> parts = new HashSet<>();
-                    Collections.addAll(parts, r.getRecipeIngredientParts()); // 将数组添加到 Set 进行去重
-
-                    return parts.stream()
-                            .map(ingredientMap::get)
+                    Arrays.stream(r.getRecipeIngredientParts())
                             .filter(Objects::nonNull)
-                            .map(ingId -> new Object[]{rid, ingId});
-                })
-                .collect(Collectors.toList());
+                            .distinct()
+                            .forEach(name -> recipeIngRelations.add(new Object[]{rid, target.dictionary().intern(name)}));
+                }
+                importMetrics.expect("has_ingredient", recipeIngRelations.size());
+                importMetrics.expect("ingredient", target.dictionary().size());
+            });
+
+            scheduler.submit("load:ingredient", () -> {
+                List<Object[]> ingredientRows = new ArrayList<>(target.dictionary().size());
+                target.dictionary().forEach((name, id) -> ingredientRows.add(new Object[]{id, name}));
+                bulkLoad(target, checkpoints, mode, "ingredient", 0, INGREDIENT_COLUMNS, ingredientRows, x -> x);
+                advanceIngredientSequence(target);
+            }, "intern:ingredient");
+
+            scheduler.submit("load:has_ingredient",
+                    () -> bulkLoad(target, checkpoints, mode, "has_ingredient", 0, HAS_INGREDIENT_COLUMNS, recipeIngRelations, x -> x),
+                    "intern:ingredient");
+
+            // --- Reviews & Review Likes --- 按 review_id 区间切分，各分区并行写入
+            List<List<ReviewRecord>> reviewPartitions = partitionByIdRange(reviewRecords, ReviewRecord::getReviewId, partitions);
+            for (int i = 0; i < reviewPartitions.size(); i++) {
+                int part = i;
+                List<ReviewRecord> partition = reviewPartitions.get(i);
+                scheduler.submit("load:review", () -> bulkLoad(target, checkpoints, mode, "review", part, REVIEW_COLUMNS, partition, REVIEW_ROW));
+
+                scheduler.submit("load:likes_review", () -> {
+                    List<Object[]> likeRelations = partition.stream()
+                            .filter(rr -> rr.getLikes() != null && rr.getLikes().length > 0)
+                            .flatMap(rr -> {
+                                long rid = rr.getReviewId();
+                                return Arrays.stream(rr.getLikes())
+                                        .distinct()
+                                        .mapToObj(uid -> new Object[]{uid, rid});
+                            })
+                            .collect(Collectors.toList());
+
+                    importMetrics.expect("likes_review", likeRelations.size());
+                    bulkLoad(target, checkpoints, mode, "likes_review", part, LIKES_REVIEW_COLUMNS, likeRelations, x -> x);
+                });
+            }
+
+            scheduler.submit("phase:constraints", () -> importMetrics.phase(ImportProgress.Phase.CONSTRAINTS),
+                    TABLES.stream().map(t -> "load:" + t).toArray(String[]::new));
+            scheduleConstraints(target, checkpoints, scheduler, table -> "load:" + table);
+            scheduleIndexes(target, checkpoints, scheduler);
+            CounterReconciler reconciler = scheduleCounters(target, scheduler, parallelism);
+            scheduler.await();
+            reportCounterDrift(reconciler);
+            success = true;
+        } finally {
+            importMetrics.finish(success);
+            checkpoints.close();
+            if (!success) {
+                log.warn("Import stopped part-way, finished chunks and stages are kept in {} for resumeImport", ImportCheckpoints.TABLE);
+            }
+        }
+        checkpoints.finish();
+        logIndexBuildTimes();
+    }
+
+    /**
+     * Imports into {@code UNLOGGED} tables of a separate staging schema while the current tables keep
+     * serving queries, then swaps them in. Constraints, indexes and statistics are all built in staging;
+     * the tables are switched to {@code LOGGED} parent-first (a logged table may not reference an unlogged
+     * one) and finally moved into {@code public} in one transaction, so readers see either the old or the
+     * new data and only wait for the brief {@code SET SCHEMA} locks.
+     */
+    @Override
+    public void reloadData(
+            List<ReviewRecord> reviewRecords,
+            List<UserRecord> userRecords,
+            List<RecipeRecord> recipeRecords) {
+        log.info("Reloading data through staging schema {}", STAGING_SCHEMA);
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + STAGING_SCHEMA + " CASCADE");
+        jdbcTemplate.execute("CREATE SCHEMA " + STAGING_SCHEMA);
+
+        DataSource stagingDataSource = new SearchPathDataSource(dataSource, STAGING_SCHEMA);
+        ImportTarget staging = new ImportTarget(stagingDataSource, new JdbcTemplate(stagingDataSource), new IngredientDictionary());
+        try {
+            createBasicTables(staging, true);
+            runImport(staging, reviewRecords, userRecords, recipeRecords, defaultImportMode, false);
+            setLogged(staging);
+            swapIntoPublic();
+        } catch (RuntimeException e) {
+            jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + STAGING_SCHEMA + " CASCADE");
+            throw e;
+        }
+
+        // 新表已生效，用 staging 分配的食材 id 替换运行时缓存
+        ingredientDictionary.clear();
+        staging.dictionary().forEach(ingredientDictionary::put);
+    }
 
-        executeBulkInsert("INSERT INTO has_ingredient (recipe_id, ingredient_id) VALUES ", 2, recipeIngRelations, x -> x);
+    /**
+     * Runs {@code ALTER TABLE ... SET LOGGED} on every table once all tables it references are logged.
+     */
+    private void setLogged(ImportTarget target) {
+        Map<String, Set<String>> referencedTables = new HashMap<>();
+        for (ForeignKey fk : FOREIGN_KEYS) {
+            referencedTables.computeIfAbsent(fk.table(), k -> new LinkedHashSet<>()).add(fk.referencedTable());
+        }
+        // TABLE_KEYS 中被引用的表总排在引用它的表之前
+        try (ImportScheduler scheduler = new ImportScheduler(resolveParallelism())) {
+            for (TableKeys keys : TABLE_KEYS) {
+                String table = keys.table();
+                String[] dependsOn = referencedTables.getOrDefault(table, Set.of()).stream()
+                        .map(t -> "logged:" + t)
+                        .toArray(String[]::new);
+                scheduler.submit("logged:" + table,
+                        () -> target.jdbcTemplate().execute("ALTER TABLE " + table + " SET LOGGED"), dependsOn);
+            }
+            scheduler.await();
+        }
+    }
 
-        // --- Reviews ---
-        String reviewSql = "INSERT INTO review (review_id, recipe_id, author_id, rating, review, date_submitted, date_modified) VALUES ";
-        executeBulkInsert(reviewSql, 7, reviewRecords, (rr) -> new Object[]{
-                rr.getReviewId(), rr.getRecipeId(), rr.getAuthorId(), rr.getRating(), rr.getReview(), rr.getDateSubmitted(), rr.getDateModified()
+    /**
+     * Moves the current tables out of {@code public} and the staging tables in, in a single transaction,
+     * then drops the old tables. Sequences, indexes and constraints follow their tables.
+     */
+    private void swapIntoPublic() {
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + RETIRED_SCHEMA + " CASCADE");
+        inTransaction(jdbcTemplate, conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE SCHEMA " + RETIRED_SCHEMA);
+                for (String table : TABLES) {
+                    stmt.execute("ALTER TABLE IF EXISTS public." + table + " SET SCHEMA " + RETIRED_SCHEMA);
+                }
+                for (String table : TABLES) {
+                    stmt.execute("ALTER TABLE " + STAGING_SCHEMA + "." + table + " SET SCHEMA public");
+                }
+            }
+            return null;
         });
+        jdbcTemplate.execute("DROP SCHEMA " + RETIRED_SCHEMA + " CASCADE");
+        jdbcTemplate.execute("DROP SCHEMA " + STAGING_SCHEMA + " CASCADE");
+        log.info("Swapped reloaded tables into public");
+    }
 
-        // --- Review Likes ---
-        List<Object[]> likeRelations = reviewRecords.parallelStream()
-                .filter(rr -> rr.getLikes() != null && rr.getLikes().length > 0)
-                .flatMap(rr -> {
-                    long rid = rr.getReviewId();
-                    return Arrays.stream(rr.getLikes())
-                            .distinct()
-                            .mapToObj(uid -> new Object[]{uid, rid});
-                })
-                .collect(Collectors.toList());
+    /**
+     * Reads, encodes and writes the records as overlapping stages of a {@link CopyPipeline}, with
+     * {@code parallelism} connections sending binary COPY chunks. Follows and likes are expanded per record and
+     * ingredient ids come from the {@link IngredientDictionary}, so apart from the distinct ingredient names
+     * nothing proportional to the dataset is kept on the heap.
+     */
+    @Override
+    public void importData(
+            Stream<ReviewRecord> reviewRecords,
+            Stream<UserRecord> userRecords,
+            Stream<RecipeRecord> recipeRecords,
+            long memoryBudgetBytes) {
+        int parallelism = resolveParallelism();
+        log.info("Streaming import with a memory budget of {} bytes", memoryBudgetBytes);
+
+        ImportTarget target = liveTarget();
+        createBasicTables(target, false);
+        target.dictionary().clear();
+        // 流式导入只有一个加载任务，不能按分块恢复；检查点只覆盖加载完成之后的约束与索引阶段
+        try (ImportCheckpoints checkpoints = new ImportCheckpoints(target.jdbcTemplate())) {
+            checkpoints.begin(false, parallelism);
+            checkpoints.markStreaming();
+            importMetrics.start(TABLES, progressLogSeconds);
+            runStreamingStages(target, checkpoints, parallelism, () -> {
+                streamLoad(target, reviewRecords, userRecords, recipeRecords, memoryBudgetBytes, parallelism);
+                checkpoints.record(ImportCheckpoints.STREAM_LOADED);
+                importMetrics.phase(ImportProgress.Phase.CONSTRAINTS);
+            });
+        }
+    }
 
-        executeBulkInsert("INSERT INTO likes_review (author_id, review_id) VALUES ", 2, likeRelations, x -> x);
+    /**
+     * Runs {@code load} and then the constraint, index and counter stages of the streaming import,
+     * and drops the checkpoints once all of them are done.
+     */
+    private void runStreamingStages(ImportTarget target, ImportCheckpoints checkpoints, int parallelism, Runnable load) {
+        boolean success = false;
+        try (ImportScheduler scheduler = new ImportScheduler(parallelism)) {
+            scheduler.submit("load:stream", load);
+            scheduleConstraints(target, checkpoints, scheduler, table -> "load:stream");
+            scheduleIndexes(target, checkpoints, scheduler);
+            CounterReconciler reconciler = scheduleCounters(target, scheduler, parallelism);
+            scheduler.await();
+            reportCounterDrift(reconciler);
+            success = true;
+        } finally {
+            importMetrics.finish(success);
+            checkpoints.close();
+        }
+        checkpoints.finish();
+        logIndexBuildTimes();
+    }
 
-        addConstraints();
+    private void streamLoad(
+            ImportTarget target,
+            Stream<ReviewRecord> reviewRecords,
+            Stream<UserRecord> userRecords,
+            Stream<RecipeRecord> recipeRecords,
+            long memoryBudgetBytes,
+            int writers) {
+        new CopyPipeline(target, memoryBudgetBytes, writers, importMetrics::chunkWritten)
+                .run(reviewRecords, userRecords, recipeRecords);
+        advanceIngredientSequence(target);
     }
 
-    private <T> void executeBulkInsert(String sqlPrefix, int numParamsPerRecord, List<T> records, RowMapper<T> mapper) {
-        if (records == null || records.isEmpty()) return;
+    /**
+     * Ingredient ids were assigned client-side, so move the BIGSERIAL sequence past them
+     * for rows inserted later by {@code createRecipe}.
+     */
+    private void advanceIngredientSequence(ImportTarget target) {
+        long maxId = target.dictionary().maxId();
+        target.jdbcTemplate().queryForObject("SELECT setval(pg_get_serial_sequence('ingredient', 'ingredient_id'), ?, ?)",
+                Long.class, Math.max(maxId, 1), maxId > 0);
+    }
 
-        int batchSize = Math.max(1, 30000 / numParamsPerRecord);
+    private ImportTarget liveTarget() {
+        return new ImportTarget(dataSource, jdbcTemplate, ingredientDictionary);
+    }
+
+    private int resolveParallelism() {
+        int parallelism = importParallelism > 0 ? importParallelism : Runtime.getRuntime().availableProcessors();
+        if (dataSource instanceof HikariDataSource hikari) {
+            parallelism = Math.min(parallelism, hikari.getMaximumPoolSize());
+        }
+        return Math.max(1, parallelism);
+    }
+
+    /**
+     * Splits {@code records} into at most {@code parts} groups covering disjoint, equally wide id ranges.
+     */
+    private static <T> List<List<T>> partitionByIdRange(List<T> records, ToLongFunction<T> idOf, int parts) {
+        if (parts <= 1 || records.size() < parts) {
+            return List.of(records);
+        }
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        for (T record : records) {
+            long id = idOf.applyAsLong(record);
+            min = Math.min(min, id);
+            max = Math.max(max, id);
+        }
+        double span = (double) max - min + 1;
+
+        List<List<T>> partitions = new ArrayList<>(parts);
+        for (int i = 0; i < parts; i++) {
+            partitions.add(new ArrayList<>(records.size() / parts + 1));
+        }
+        for (T record : records) {
+            int p = (int) ((idOf.applyAsLong(record) - min) / span * parts);
+            partitions.get(Math.min(p, parts - 1)).add(record);
+        }
+        partitions.removeIf(List::isEmpty);
+        return partitions;
+    }
+
+    /**
+     * Primary/unique/check constraints of a table only need that table, so each table gets its keys
+     * right after it is loaded, in parallel with the others. Foreign keys are first added as
+     * {@code NOT VALID} (a catalog-only change) and then validated.
+     * <p>
+     * Adding a foreign key takes SHARE ROW EXCLUSIVE, which conflicts with itself, on the child and then on
+     * the parent, so two children sharing a table (review is a child of recipe and the parent of likes_review)
+     * would lock it in opposite orders and could deadlock. The {@code NOT VALID} constraints are therefore added
+     * by a single task, one table after another. {@code VALIDATE CONSTRAINT} only takes SHARE UPDATE EXCLUSIVE on
+     * the child and ROW SHARE on the parent, which do not conflict across tables, so different child tables are
+     * validated concurrently, the constraints of one table one after another.
+     */
+    private void scheduleConstraints(ImportTarget target, ImportCheckpoints checkpoints, ImportScheduler scheduler, UnaryOperator<String> loadTaskOf) {
+        for (TableKeys keys : TABLE_KEYS) {
+            scheduler.submit("keys:" + keys.table(),
+                    () -> runStage(target, checkpoints, "keys:" + keys.table(), "ALTER TABLE " + keys.table() + " " + keys.clauses()),
+                    loadTaskOf.apply(keys.table()));
+        }
+
+        Map<String, List<ForeignKey>> foreignKeysByTable = FOREIGN_KEYS.stream()
+                .collect(Collectors.groupingBy(ForeignKey::table, LinkedHashMap::new, Collectors.toList()));
+        String[] keyed = foreignKeysByTable.entrySet().stream()
+                .flatMap(e -> Stream.concat(Stream.of(e.getKey()), e.getValue().stream().map(ForeignKey::referencedTable)))
+                .distinct()
+                .map(t -> "keys:" + t)
+                .toArray(String[]::new);
+        scheduler.submit("fk:add", () -> foreignKeysByTable.forEach((table, foreignKeys) ->
+                runStage(target, checkpoints, "fk:" + table, "ALTER TABLE " + table + " " + foreignKeys.stream()
+                        .map(fk -> "ADD CONSTRAINT " + fk.name() + " " + fk.definition() + " NOT VALID")
+                        .collect(Collectors.joining(", ")))), keyed);
+        foreignKeysByTable.forEach((table, foreignKeys) -> scheduler.submit("validate:" + table, () -> {
+            for (ForeignKey fk : foreignKeys) {
+                runStage(target, checkpoints, "validate:" + fk.name(), "ALTER TABLE " + table + " VALIDATE CONSTRAINT " + fk.name());
+            }
+        }, "fk:add"));
+    }
+
+    /**
+     * Builds the {@link SecondaryIndexCatalogue secondary indexes} once their table has its keys, each on
+     * its own connection with a raised {@code maintenance_work_mem} and parallel maintenance workers, and
+     * then analyzes every table once nothing else touches it. Plain {@code CREATE INDEX} only takes a SHARE
+     * lock, so several indexes of the same table are built at the same time.
+     */
+    private void scheduleIndexes(ImportTarget target, ImportCheckpoints checkpoints, ImportScheduler scheduler) {
+        indexBuildTimes.clear();
+        Set<String> tablesWithForeignKeys = FOREIGN_KEYS.stream().map(ForeignKey::table).collect(Collectors.toSet());
+        for (SecondaryIndexCatalogue.IndexSpec index : SECONDARY_INDEXES) {
+            scheduler.submit("index:" + index.table(), () -> buildIndex(target, checkpoints, index), tableReadyTasks(index.table(), tablesWithForeignKeys));
+        }
+
+        Set<String> indexedTables = SECONDARY_INDEXES.stream().map(SecondaryIndexCatalogue.IndexSpec::table).collect(Collectors.toSet());
+        for (String table : TABLES) {
+            String[] dependsOn = indexedTables.contains(table)
+                    ? new String[]{"index:" + table}
+                    : tableReadyTasks(table, tablesWithForeignKeys);
+            scheduler.submit("analyze:" + table, () -> runStage(target, checkpoints, "analyze:" + table, "ANALYZE " + table), dependsOn);
+        }
+    }
+
+    private static String[] tableReadyTasks(String table, Set<String> tablesWithForeignKeys) {
+        return tablesWithForeignKeys.contains(table)
+                ? new String[]{"keys:" + table, "validate:" + table}
+                : new String[]{"keys:" + table};
+    }
 
+    private void buildIndex(ImportTarget target, ImportCheckpoints checkpoints, SecondaryIndexCatalogue.IndexSpec index) {
+        long start = System.currentTimeMillis();
+        // SET LOCAL 只在本事务内生效，连接归还连接池时不会带着这些设置
+        runStage(target, checkpoints, "index:" + index.name(),
+                "SET LOCAL maintenance_work_mem = '" + maintenanceWorkMem + "'",
+                "SET LOCAL max_parallel_maintenance_workers = " + maintenanceWorkers,
+                index.createSql());
+        long elapsed = System.currentTimeMillis() - start;
+        indexBuildTimes.put(index.name(), elapsed);
+        log.info("Built index {} in {} ms, used by {}", index.name(), elapsed, index.usedBy());
+    }
+
+    /**
+     * Reconciles the derived counters once the tables they are computed from are indexed and analyzed.
+     */
+    private CounterReconciler scheduleCounters(ImportTarget target, ImportScheduler scheduler, int parallelism) {
+        CounterReconciler reconciler = new CounterReconciler(target.jdbcTemplate(), counterMode);
+        reconciler.schedule(scheduler, parallelism, table -> new String[]{"analyze:" + table});
+        return reconciler;
+    }
+
+    private void reportCounterDrift(CounterReconciler reconciler) {
+        if (counterMode == CounterReconciler.Mode.OFF) {
+            return;
+        }
+        Map<String, Long> drift = reconciler.drift();
+        drift.keySet().forEach(table -> importMetrics.stageDone("counters:" + table));
+        importMetrics.counterDrift(drift);
+        log.info("Derived counters {} ({} rows drifted per table): {}",
+                counterMode == CounterReconciler.Mode.REPAIR ? "repaired" : "checked", counterMode, drift);
+    }
+
+    private void logIndexBuildTimes() {
+        log.info("Secondary index build times (ms): {}", indexBuildTimes);
+    }
+
+    /**
+     * Runs {@code statements} in one transaction that also records {@code stage} as done,
+     * unless an interrupted run already did.
+     */
+    private void runStage(ImportTarget target, ImportCheckpoints checkpoints, String stage, String... statements) {
+        if (!checkpoints.isDone(stage, 0, 0)) {
+            inTransaction(target.jdbcTemplate(), conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    for (String sql : statements) {
+                        stmt.execute(sql);
+                    }
+                }
+                checkpoints.record(conn, stage, 0, 0, 0, 0);
+                return null;
+            });
+        }
+        importMetrics.stageDone(stage);
+    }
+
+    private static <R> R inTransaction(JdbcTemplate jdbcTemplate, ConnectionCallback<R> work) {
+        return jdbcTemplate.execute((ConnectionCallback<R>) conn -> {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                R result = work.doInConnection(conn);
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    /**
+     * Writes {@code records} in chunks of {@link #CHUNK_ROWS}; each chunk is committed together with its
+     * checkpoint, and chunks already checkpointed by an interrupted run are skipped. {@code part} tells
+     * apart the partitions of a table loaded by different tasks.
+     */
+    private <T> void bulkLoad(ImportTarget target, ImportCheckpoints checkpoints, ImportMode mode, String table, int part,
+                              String[] columns, List<T> records, RowMapper<T> mapper) {
+        String task = "load:" + table;
+        String sqlPrefix = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ";
+        for (int from = 0, chunk = 0; from < records.size(); from += CHUNK_ROWS, chunk++) {
+            List<T> rows = records.subList(from, Math.min(from + CHUNK_ROWS, records.size()));
+            if (checkpoints.isDone(task, part, chunk)) {
+                importMetrics.chunkSkipped(table, rows.size());
+                continue;
+            }
+            int chunkNo = chunk;
+            long bytes = inTransaction(target.jdbcTemplate(), (ConnectionCallback<Long>) conn -> {
+                long written = mode == ImportMode.COPY
+                        ? executeBulkCopy(conn, table, columns, rows, mapper)
+                        : executeBulkInsert(conn, table, sqlPrefix, columns.length, rows, mapper);
+                checkpoints.record(conn, task, part, chunkNo, rows.size(), written);
+                return written;
+            });
+            importMetrics.chunkWritten(table, rows.size(), bytes);
+            if (mode == ImportMode.INSERT) {
+                importMetrics.insertBatch(table, batchSizer.currentBatchSize(table), batchSizer.lastRowsPerSecond(table));
+            }
+        }
+    }
+
+    /**
+     * @return number of COPY payload bytes sent
+     */
+    private static <T> long executeBulkCopy(Connection conn, String table, String[] columns, List<T> records, RowMapper<T> mapper) throws SQLException {
+        long bytes = 0;
+        PgBinaryCopyBuffer buffer = new PgBinaryCopyBuffer(table, columns);
+        for (T record : records) {
+            buffer.addRow(mapper.map(record));
+            if (buffer.size() >= COPY_FLUSH_BYTES) {
+                bytes += buffer.size();
+                buffer.flush(conn);
+            }
+        }
+        bytes += buffer.size();
+        buffer.flush(conn);
+        return bytes;
+    }
+
+    /**
+     * Sends {@code records} as multi-row {@code INSERT}s sized by the {@link AdaptiveBatchSizer}.
+     *
+     * @return approximate number of parameter bytes sent
+     */
+    private <T> long executeBulkInsert(Connection conn, String table, String sqlPrefix, int numParamsPerRecord, List<T> records, RowMapper<T> mapper) throws SQLException {
+        long bytes = 0;
         int total = records.size();
-        for (int i = 0; i < total; i += batchSize) {
-            int end = Math.min(i + batchSize, total);
+        for (int i = 0; i < total; ) {
+            int end = Math.min(i + batchSizer.batchSize(table, numParamsPerRecord), total);
             List<T> batch = records.subList(i, end);
 
-            StringBuilder sql = new StringBuilder(sqlPrefix);
-            String placeholders = "(" + String.join(",", Collections.nCopies(numParamsPerRecord, "?")) + ")";
-            sql.append(String.join(",", Collections.nCopies(batch.size(), placeholders)));
-
-            jdbcTemplate.update(sql.toString(), ps -> {
+            long batchBytes = 0;
+            long start = System.nanoTime();
+            try (PreparedStatement ps = conn.prepareStatement(batchSizer.insertSql(sqlPrefix, numParamsPerRecord, batch.size()))) {
                 int paramIndex = 1;
                 for (T record : batch) {
                     Object[] args = mapper.map(record);
                     for (Object arg : args) {
                         ps.setObject(paramIndex++, arg);
+                        batchBytes += arg == null ? 0 : arg instanceof String str ? str.length() : 8;
                     }
                 }
-            });
+                ps.executeUpdate();
+            }
+            batchSizer.record(table, numParamsPerRecord, batch.size(), batchBytes, System.nanoTime() - start);
+            bytes += batchBytes;
+            i = end;
         }
+        return bytes;
     }
 
-    private interface RowMapper<T> {
-        Object[] map(T t);
-    }
-
-    private void createBasicTables() {
+    private void createBasicTables(ImportTarget target, boolean unlogged) {
         // 注意：这里没有任何 PRIMARY KEY 定义，只有最纯粹的数据列
         String sql = """
             CREATE TABLE IF NOT EXISTS users (
@@ -185,8 +812,7 @@ public class DatabaseServiceImpl implements DatabaseService {
                     cholesterol     REAL,
                     sodium          REAL,
                     carbohydrate    REAL,
-                    fiber           REAL,sysdm.cpl
-                                         
+                    fiber           REAL,
                     sugar           REAL,
                     protein         REAL
             );
@@ -212,44 +838,7 @@ public class DatabaseServiceImpl implements DatabaseService {
                     ingredient_id BIGINT
             );
         """;
-        jdbcTemplate.execute(sql);
-    }
-
-    private void addConstraints() {
-        String sql = """
-            -- Users
-            ALTER TABLE users ADD PRIMARY KEY (author_id);
-            ALTER TABLE users ADD CONSTRAINT chk_users_gender CHECK (gender IN ('Male','Female','UNKNOWN'));
-
-            -- Follows
-            ALTER TABLE follows ADD PRIMARY KEY (blogger_id, follower_id);
-            ALTER TABLE follows ADD CONSTRAINT fk_follows_blogger FOREIGN KEY (blogger_id) REFERENCES users(author_id);
-            ALTER TABLE follows ADD CONSTRAINT fk_follows_follower FOREIGN KEY (follower_id) REFERENCES users(author_id);
-
-            -- Recipe
-            ALTER TABLE recipe ADD PRIMARY KEY (recipe_id);
-            ALTER TABLE recipe ADD CONSTRAINT fk_recipe_author FOREIGN KEY (author_id) REFERENCES users(author_id);
-
-            -- Ingredient
-            ALTER TABLE ingredient ADD PRIMARY KEY (ingredient_id);
-            ALTER TABLE ingredient ADD CONSTRAINT uq_ingredient_name UNIQUE (ingredient_name);
-
-            -- Has Ingredient
-            ALTER TABLE has_ingredient ADD PRIMARY KEY (recipe_id, ingredient_id);
-            ALTER TABLE has_ingredient ADD CONSTRAINT fk_has_recipe FOREIGN KEY (recipe_id) REFERENCES recipe(recipe_id);
-            ALTER TABLE has_ingredient ADD CONSTRAINT fk_has_ingredient FOREIGN KEY (ingredient_id) REFERENCES ingredient(ingredient_id);
-
-            -- Review
-            ALTER TABLE review ADD PRIMARY KEY (review_id);
-            ALTER TABLE review ADD CONSTRAINT fk_review_recipe FOREIGN KEY (recipe_id) REFERENCES recipe(recipe_id);
-            ALTER TABLE review ADD CONSTRAINT fk_review_author FOREIGN KEY (author_id) REFERENCES users(author_id);
-
-            -- Likes Review
-            ALTER TABLE likes_review ADD PRIMARY KEY (author_id, review_id);
-            ALTER TABLE likes_review ADD CONSTRAINT fk_likes_author FOREIGN KEY (author_id) REFERENCES users(author_id);
-            ALTER TABLE likes_review ADD CONSTRAINT fk_likes_review FOREIGN KEY (review_id) REFERENCES review(review_id);
-        """;
-        jdbcTemplate.execute(sql);
+        target.jdbcTemplate().execute(unlogged ? sql.replace("CREATE TABLE", "CREATE UNLOGGED TABLE") : sql);
     }
 
     @Override
@@ -273,6 +862,12 @@ public class DatabaseServiceImpl implements DatabaseService {
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
+        ingredientDictionary.clear();
+    }
+
+    @Override
+    public void invalidateCaches() {
+        ingredientDictionary.clear();
     }
 
     @Override
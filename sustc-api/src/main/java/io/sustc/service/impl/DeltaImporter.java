@@ -0,0 +1,231 @@
+package io.sustc.service.impl;
+
+import io.sustc.dto.RecipeRecord;
+import io.sustc.dto.ReviewRecord;
+import io.sustc.dto.UserRecord;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static io.sustc.service.impl.TableColumns.FOLLOW_COLUMNS;
+import static io.sustc.service.impl.TableColumns.LIKES_REVIEW_COLUMNS;
+import static io.sustc.service.impl.TableColumns.RECIPE_COLUMNS;
+import static io.sustc.service.impl.TableColumns.RECIPE_ROW;
+import static io.sustc.service.impl.TableColumns.REVIEW_COLUMNS;
+import static io.sustc.service.impl.TableColumns.REVIEW_ROW;
+import static io.sustc.service.impl.TableColumns.USER_COLUMNS;
+import static io.sustc.service.impl.TableColumns.USER_ROW;
+
+/**
+ * Applies an incremental data drop to populated tables, on one connection and inside its transaction.
+ * <p>
+ * The records are binary-COPYed into temporary {@code delta_*} tables and merged from there with
+ * {@code INSERT ... ON CONFLICT DO UPDATE}. For every user, recipe and review in the delta, its follow,
+ * ingredient and like relations are replaced by the ones in the delta: rows missing from the delta are
+ * deleted and new rows inserted, everything else stays untouched. The keys whose relations changed are
+ * collected in {@code touched_*} tables so that only their derived counters are recomputed; the counters
+ * given in the records are ignored. The cost thus follows the size of the delta, not of the database.
+ */
+final class DeltaImporter {
+
+    private static final Set<String> USER_COUNTERS = Set.of("following", "followers");
+
+    private static final Set<String> RECIPE_COUNTERS = Set.of("aggr_rating", "review_cnt");
+
+    private final Connection conn;
+
+    private final Map<String, Long> changes = new LinkedHashMap<>();
+
+    private final Map<String, Long> newIngredients = new LinkedHashMap<>();
+
+    DeltaImporter(Connection conn) {
+        this.conn = conn;
+    }
+
+    void apply(List<ReviewRecord> reviewRecords, List<UserRecord> userRecords, List<RecipeRecord> recipeRecords) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TEMP TABLE delta_users (LIKE users INCLUDING DEFAULTS, delta_seq BIGINT GENERATED ALWAYS AS IDENTITY) ON COMMIT DROP;
+                CREATE TEMP TABLE delta_follows (blogger_id BIGINT, follower_id BIGINT) ON COMMIT DROP;
+                CREATE TEMP TABLE delta_recipe (LIKE recipe, delta_seq BIGINT GENERATED ALWAYS AS IDENTITY) ON COMMIT DROP;
+                CREATE TEMP TABLE delta_recipe_ingredient (recipe_id BIGINT, ingredient_name VARCHAR(255)) ON COMMIT DROP;
+                CREATE TEMP TABLE delta_review (LIKE review, delta_seq BIGINT GENERATED ALWAYS AS IDENTITY) ON COMMIT DROP;
+                CREATE TEMP TABLE delta_likes (author_id BIGINT, review_id BIGINT) ON COMMIT DROP;
+                CREATE TEMP TABLE touched_users (author_id BIGINT) ON COMMIT DROP;
+                CREATE TEMP TABLE touched_recipes (recipe_id BIGINT) ON COMMIT DROP;
+            """);
+        }
+        stage(reviewRecords, userRecords, recipeRecords);
+
+        // 顺序按外键依赖：先父表后子表
+        // 计数列由下面按关系表重算，记录里的值不用
+        upsert("users", "author_id", USER_COLUMNS, USER_COUNTERS);
+        upsert("recipe", "recipe_id", RECIPE_COLUMNS, RECIPE_COUNTERS);
+        execute("touched:users", "INSERT INTO touched_users SELECT author_id FROM delta_users");
+        execute("touched:recipes", "INSERT INTO touched_recipes SELECT recipe_id FROM delta_recipe");
+
+        execute("follows", """
+            WITH removed AS (
+                DELETE FROM follows f
+                WHERE f.follower_id IN (SELECT author_id FROM delta_users)
+                  AND NOT EXISTS (SELECT 1 FROM delta_follows d WHERE d.blogger_id = f.blogger_id AND d.follower_id = f.follower_id)
+                RETURNING f.blogger_id, f.follower_id
+            ), added AS (
+                INSERT INTO follows (blogger_id, follower_id)
+                SELECT DISTINCT blogger_id, follower_id FROM delta_follows
+                ON CONFLICT DO NOTHING
+                RETURNING blogger_id, follower_id
+            ), changed AS (
+                SELECT * FROM removed UNION ALL SELECT * FROM added
+            )
+            INSERT INTO touched_users SELECT blogger_id FROM changed UNION SELECT follower_id FROM changed
+        """);
+
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("""
+                 INSERT INTO ingredient (ingredient_name)
+                 SELECT DISTINCT ingredient_name FROM delta_recipe_ingredient
+                 ON CONFLICT (ingredient_name) DO NOTHING
+                 RETURNING ingredient_id, ingredient_name
+             """)) {
+            while (rs.next()) {
+                newIngredients.put(rs.getString(2), rs.getLong(1));
+            }
+        }
+        changes.put("ingredient", (long) newIngredients.size());
+        execute("has_ingredient:removed", """
+            DELETE FROM has_ingredient h
+            WHERE h.recipe_id IN (SELECT recipe_id FROM delta_recipe)
+              AND NOT EXISTS (SELECT 1 FROM delta_recipe_ingredient d JOIN ingredient i ON i.ingredient_name = d.ingredient_name
+                              WHERE d.recipe_id = h.recipe_id AND i.ingredient_id = h.ingredient_id)
+        """);
+        execute("has_ingredient:added", """
+            INSERT INTO has_ingredient (recipe_id, ingredient_id)
+            SELECT DISTINCT d.recipe_id, i.ingredient_id
+            FROM delta_recipe_ingredient d JOIN ingredient i ON i.ingredient_name = d.ingredient_name
+            ON CONFLICT DO NOTHING
+        """);
+
+        // 评论若换了菜谱，原菜谱的评分也要重算
+        execute("touched:recipes", "INSERT INTO touched_recipes SELECT r.recipe_id FROM review r JOIN delta_review d ON d.review_id = r.review_id");
+        upsert("review", "review_id", REVIEW_COLUMNS, Set.of());
+        execute("touched:recipes", "INSERT INTO touched_recipes SELECT recipe_id FROM delta_review");
+
+        execute("likes_review:removed", """
+            DELETE FROM likes_review l
+            WHERE l.review_id IN (SELECT review_id FROM delta_review)
+              AND NOT EXISTS (SELECT 1 FROM delta_likes d WHERE d.author_id = l.author_id AND d.review_id = l.review_id)
+        """);
+        execute("likes_review:added", """
+            INSERT INTO likes_review (author_id, review_id)
+            SELECT DISTINCT author_id, review_id FROM delta_likes
+            ON CONFLICT DO NOTHING
+        """);
+
+        changes.put("counters:users", CounterReconciler.repairKeys(conn, "users", "SELECT author_id FROM touched_users"));
+        changes.put("counters:recipe", CounterReconciler.repairKeys(conn, "recipe", "SELECT recipe_id FROM touched_recipes"));
+    }
+
+    /**
+     * @return rows affected per step of the merge
+     */
+    Map<String, Long> getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return ingredients the delta introduced, with the ids the database assigned
+     */
+    Map<String, Long> getNewIngredients() {
+        return newIngredients;
+    }
+
+    private void stage(List<ReviewRecord> reviewRecords, List<UserRecord> userRecords, List<RecipeRecord> recipeRecords) throws SQLException {
+        PgBinaryCopyBuffer users = new PgBinaryCopyBuffer("delta_users", USER_COLUMNS);
+        PgBinaryCopyBuffer follows = new PgBinaryCopyBuffer("delta_follows", FOLLOW_COLUMNS);
+        for (UserRecord u : userRecords) {
+            users.addRow(USER_ROW.map(u));
+            if (u.getFollowingUsers() != null) {
+                long followerId = u.getAuthorId();
+                for (long bloggerId : u.getFollowingUsers()) {
+                    follows.addRow(bloggerId, followerId);
+                }
+            }
+        }
+        users.flush(conn);
+        follows.flush(conn);
+
+        PgBinaryCopyBuffer recipes = new PgBinaryCopyBuffer("delta_recipe", RECIPE_COLUMNS);
+        PgBinaryCopyBuffer ingredients = new PgBinaryCopyBuffer("delta_recipe_ingredient", "recipe_id", "ingredient_name");
+        for (RecipeRecord r : recipeRecords) {
+            recipes.addRow(RECIPE_ROW.map(r));
+            if (r.getRecipeIngredientParts() != null) {
+                long rid = r.getRecipeId();
+                for (String name : r.getRecipeIngredientParts()) {
+                    if (name != null) {
+                        ingredients.addRow(rid, name);
+                    }
+                }
+            }
+        }
+        recipes.flush(conn);
+        ingredients.flush(conn);
+
+        PgBinaryCopyBuffer reviews = new PgBinaryCopyBuffer("delta_review", REVIEW_COLUMNS);
+        PgBinaryCopyBuffer likes = new PgBinaryCopyBuffer("delta_likes", LIKES_REVIEW_COLUMNS);
+        for (ReviewRecord rr : reviewRecords) {
+            reviews.addRow(REVIEW_ROW.map(rr));
+            if (rr.getLikes() != null) {
+                long rid = rr.getReviewId();
+                for (long uid : rr.getLikes()) {
+                    likes.addRow(uid, rid);
+                }
+            }
+        }
+        reviews.flush(conn);
+        likes.flush(conn);
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ANALYZE delta_users, delta_follows, delta_recipe, delta_recipe_ingredient, delta_review, delta_likes");
+        }
+    }
+
+    /**
+     * Inserts the rows of {@code delta_<table>} into {@code table}, overwriting all columns except the key and
+     * {@code keep} when the key exists. A key repeated in the delta is merged once, from its last record:
+     * {@code COPY} numbers the staged rows in {@code delta_seq} in the order of the records.
+     */
+    private void upsert(String table, String key, String[] columns, Set<String> keep) throws SQLException {
+        String columnList = String.join(", ", columns);
+        String updates = Arrays.stream(columns)
+                .filter(c -> !c.equals(key) && !keep.contains(c))
+                .map(c -> c + " = EXCLUDED." + c)
+                .collect(Collectors.joining(", "));
+        execute(table, "INSERT INTO " + table + " (" + columnList + ")"
+                + " SELECT DISTINCT ON (" + key + ") " + columnList + " FROM delta_" + table + " ORDER BY " + key + ", delta_seq DESC"
+                + " ON CONFLICT (" + key + ") DO UPDATE SET " + updates);
+    }
+
+    private void execute(String step, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            long rows = stmt.executeUpdate(sql);
+            changes.merge(step, rows, Long::sum);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return changes.entrySet().stream()
+                .filter(e -> e.getValue() > 0)
+                .map(e -> e.getKey() + "=" + e.getValue())
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+}
@@ -0,0 +1,268 @@
+package io.sustc.service.impl;
+
+import io.sustc.dto.ImportProgress;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records which parts of an import are already in the database, in a table next to the data tables.
+ * <p>
+ * Loads are written in chunks, and each chunk commits together with its checkpoint row, so after a
+ * crash every recorded chunk is fully present and every other chunk fully absent. Constraint, index and
+ * analyze stages are recorded the same way, with part and chunk 0. A resumed import skips whatever is
+ * recorded; the table is dropped once an import completes.
+ * <p>
+ * While an import runs it refreshes a heartbeat row every few seconds, so another process reading the
+ * checkpoints can tell a live import from one that stopped. Bookkeeping rows have tasks starting with
+ * {@code import:}.
+ */
+@Slf4j
+final class ImportCheckpoints implements AutoCloseable {
+
+    static final String TABLE = "import_checkpoint";
+
+    /**
+     * Recorded once the streaming import has written all its rows. The streaming import has no per-chunk
+     * checkpoints, so it can only be resumed after this.
+     */
+    static final String STREAM_LOADED = "stream:loaded";
+
+    // 记录中断的导入使用的分区数，恢复时必须按同样的方式切分
+    private static final String PARALLELISM_TASK = "import:parallelism";
+
+    private static final String HEARTBEAT_TASK = "import:heartbeat";
+
+    private static final String STREAM_TASK = "import:stream";
+
+    private static final int HEARTBEAT_SECONDS = 5;
+
+    /**
+     * A heartbeat older than this means the import is no longer running.
+     */
+    private static final int HEARTBEAT_TIMEOUT_SECONDS = 3 * HEARTBEAT_SECONDS;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Set<String> done = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService heartbeat;
+
+    ImportCheckpoints(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Prepares the checkpoint table. A fresh import discards old checkpoints; a resumed one loads them.
+     *
+     * @return the parallelism to partition by: the interrupted run's when resuming, else {@code parallelism}
+     */
+    int begin(boolean resume, int parallelism) {
+        if (!resume) {
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + TABLE);
+        }
+        jdbcTemplate.execute("""
+            CREATE TABLE IF NOT EXISTS %s (
+                    task      VARCHAR(128),
+                    part      INT,
+                    chunk     INT,
+                    row_cnt   BIGINT NOT NULL,
+                    byte_cnt  BIGINT NOT NULL,
+                    done_at   TIMESTAMP NOT NULL DEFAULT now(),
+                    PRIMARY KEY (task, part, chunk)
+            )
+        """.formatted(TABLE));
+
+        startHeartbeat();
+
+        done.clear();
+        jdbcTemplate.query("SELECT task, part, chunk FROM " + TABLE,
+                rs -> {
+                    done.add(key(rs.getString(1), rs.getInt(2), rs.getInt(3)));
+                });
+
+        List<Integer> recorded = jdbcTemplate.queryForList(
+                "SELECT part FROM " + TABLE + " WHERE task = ?", Integer.class, PARALLELISM_TASK);
+        if (!recorded.isEmpty()) {
+            return recorded.get(0);
+        }
+        jdbcTemplate.update("INSERT INTO " + TABLE + " (task, part, chunk, row_cnt, byte_cnt) VALUES (?, ?, 0, 0, 0)",
+                PARALLELISM_TASK, parallelism);
+        return parallelism;
+    }
+
+    /**
+     * Marks the checkpoints as those of a streaming import.
+     */
+    void markStreaming() {
+        record(STREAM_TASK);
+    }
+
+    /**
+     * Records {@code task} as done in a transaction of its own.
+     */
+    void record(String task) {
+        jdbcTemplate.update("INSERT INTO " + TABLE + " (task, part, chunk, row_cnt, byte_cnt) VALUES (?, 0, 0, 0, 0)"
+                + " ON CONFLICT DO NOTHING", task);
+        done.add(key(task, 0, 0));
+    }
+
+    boolean isDone(String task, int part, int chunk) {
+        return done.contains(key(task, part, chunk));
+    }
+
+    /**
+     * Inserts a checkpoint on {@code conn}, inside the transaction that wrote the chunk.
+     */
+    void record(Connection conn, String task, int part, int chunk, long rows, long bytes) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO " + TABLE + " (task, part, chunk, row_cnt, byte_cnt) VALUES (?, ?, ?, ?, ?)")) {
+            stmt.setString(1, task);
+            stmt.setInt(2, part);
+            stmt.setInt(3, chunk);
+            stmt.setLong(4, rows);
+            stmt.setLong(5, bytes);
+            stmt.executeUpdate();
+        }
+    }
+
+    void finish() {
+        close();
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + TABLE);
+        done.clear();
+    }
+
+    /**
+     * Stops the heartbeat and keeps the checkpoints, e.g. after a failed import. The heartbeat row is deleted,
+     * so the stopped import can be resumed right away instead of looking live for another
+     * {@value #HEARTBEAT_TIMEOUT_SECONDS} seconds.
+     */
+    @Override
+    public void close() {
+        if (heartbeat == null) {
+            return;
+        }
+        heartbeat.shutdownNow();
+        try {
+            // 等正在写的心跳结束，否则它可能在删除之后又把行插回去
+            heartbeat.awaitTermination(HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        heartbeat = null;
+        try {
+            jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE task = ?", HEARTBEAT_TASK);
+        } catch (DataAccessException e) {
+            log.warn("Failed to clear the import heartbeat, resuming is refused for {} s", HEARTBEAT_TIMEOUT_SECONDS, e);
+        }
+    }
+
+    private void startHeartbeat() {
+        close();
+        beat();
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sustc-import-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        heartbeat.scheduleAtFixedRate(this::beat, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void beat() {
+        try {
+            jdbcTemplate.update("""
+                INSERT INTO %s (task, part, chunk, row_cnt, byte_cnt) VALUES (?, 0, 0, 0, 0)
+                ON CONFLICT (task, part, chunk) DO UPDATE SET done_at = now()
+            """.formatted(TABLE), HEARTBEAT_TASK);
+        } catch (DataAccessException e) {
+            // 表可能正被删除，下一次心跳再试
+            log.debug("Import heartbeat failed", e);
+        }
+    }
+
+    /**
+     * @return whether there are checkpoints of a streaming import, live or not
+     */
+    static boolean hasStreamingCheckpoints(JdbcTemplate jdbcTemplate) {
+        if (!exists(jdbcTemplate)) {
+            return false;
+        }
+        Long count = jdbcTemplate.queryForObject("SELECT count(*) FROM " + TABLE + " WHERE task = ?", Long.class, STREAM_TASK);
+        return count != null && count > 0;
+    }
+
+    /**
+     * @return whether an import, in this or another process, refreshed its heartbeat recently
+     */
+    static boolean isLive(JdbcTemplate jdbcTemplate) {
+        if (!exists(jdbcTemplate)) {
+            return false;
+        }
+        Boolean live = jdbcTemplate.queryForObject(
+                "SELECT coalesce(bool_or(done_at > now() - make_interval(secs => ?)), false) FROM " + TABLE + " WHERE task = ?",
+                Boolean.class, HEARTBEAT_TIMEOUT_SECONDS, HEARTBEAT_TASK);
+        return Boolean.TRUE.equals(live);
+    }
+
+    private static boolean exists(JdbcTemplate jdbcTemplate) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, TABLE));
+    }
+
+    /**
+     * Progress of an import read back from its checkpoints: {@link ImportProgress.Phase#RUNNING_ELSEWHERE} if its
+     * heartbeat is recent, otherwise {@link ImportProgress.Phase#INTERRUPTED}.
+     *
+     * @return {@code null} if there are no checkpoints
+     */
+    static ImportProgress readCheckpointed(JdbcTemplate jdbcTemplate) {
+        if (!exists(jdbcTemplate)) {
+            return null;
+        }
+        boolean live = isLive(jdbcTemplate);
+
+        List<ImportProgress.TableProgress> tables = new ArrayList<>();
+        List<String> stages = new ArrayList<>();
+        jdbcTemplate.query("""
+            SELECT task, count(*), sum(row_cnt), sum(byte_cnt)
+            FROM %s
+            WHERE task NOT LIKE 'import:%%'
+            GROUP BY task
+            ORDER BY max(done_at)
+        """.formatted(TABLE), rs -> {
+            String task = rs.getString(1);
+            if (task.startsWith("load:")) {
+                tables.add(ImportProgress.TableProgress.builder()
+                        .table(task.substring("load:".length()))
+                        .chunksDone(rs.getLong(2))
+                        .rowsDone(rs.getLong(3))
+                        .rowsTotal(rs.getLong(3))
+                        .bytesDone(rs.getLong(4))
+                        .etaSeconds(-1)
+                        .build());
+            } else {
+                stages.add(task);
+            }
+        });
+
+        return ImportProgress.builder()
+                .phase(live ? ImportProgress.Phase.RUNNING_ELSEWHERE : ImportProgress.Phase.INTERRUPTED)
+                .completedStages(stages)
+                .tables(tables)
+                .build();
+    }
+
+    private static String key(String task, int part, int chunk) {
+        return task + '/' + part + '/' + chunk;
+    }
+}
@@ -0,0 +1,207 @@
+package io.sustc.service.impl;
+
+import io.sustc.dto.ImportProgress;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters of the running (or last) import, updated by the import workers after every chunk.
+ * <p>
+ * Counters are {@link LongAdder}s so the workers never contend on them; {@link #snapshot()} may be
+ * called from any thread while the import runs.
+ */
+@Slf4j
+@Component
+public class ImportMetrics {
+
+    private static final class TableCounters {
+
+        final LongAdder rowsDone = new LongAdder();
+
+        // 只统计本次真正写入的行，跳过的检查点不计入速率
+        final LongAdder rowsWritten = new LongAdder();
+
+        final LongAdder rowsTotal = new LongAdder();
+
+        final LongAdder bytes = new LongAdder();
+
+        final LongAdder chunks = new LongAdder();
+
+        final AtomicLong firstWriteNanos = new AtomicLong();
+
+        volatile int insertBatchSize;
+
+        volatile double insertBatchRowsPerSecond;
+    }
+
+    private volatile Map<String, TableCounters> tables = Map.of();
+
+    private final List<String> completedStages = new CopyOnWriteArrayList<>();
+
+    private volatile Map<String, Long> counterDrift = Map.of();
+
+    private volatile ImportProgress.Phase phase = ImportProgress.Phase.IDLE;
+
+    private volatile long startNanos;
+
+    private volatile long endNanos;
+
+    private ScheduledExecutorService reporter;
+
+    /**
+     * Resets the counters for a new import of {@code tableNames} and, if {@code logIntervalSeconds > 0},
+     * logs the progress at that interval until {@link #finish}.
+     */
+    public synchronized void start(List<String> tableNames, long logIntervalSeconds) {
+        Map<String, TableCounters> counters = new LinkedHashMap<>();
+        tableNames.forEach(t -> counters.put(t, new TableCounters()));
+        tables = counters;
+        completedStages.clear();
+        counterDrift = Map.of();
+        startNanos = System.nanoTime();
+        endNanos = 0;
+        phase = ImportProgress.Phase.LOAD;
+
+        stopReporter();
+        if (logIntervalSeconds > 0) {
+            reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "sustc-import-progress");
+                t.setDaemon(true);
+                return t;
+            });
+            reporter.scheduleAtFixedRate(this::logProgress, logIntervalSeconds, logIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    public void phase(ImportProgress.Phase phase) {
+        this.phase = phase;
+    }
+
+    /**
+     * Adds {@code rows} to the rows {@code table} is expected to receive.
+     */
+    public void expect(String table, long rows) {
+        counters(table).rowsTotal.add(rows);
+    }
+
+    public void chunkWritten(String table, long rows, long bytes) {
+        TableCounters c = counters(table);
+        c.firstWriteNanos.compareAndSet(0, System.nanoTime());
+        c.rowsDone.add(rows);
+        c.rowsWritten.add(rows);
+        c.bytes.add(bytes);
+        c.chunks.increment();
+    }
+
+    /**
+     * Records the multi-row {@code INSERT} batch size {@code table} is at and the rows/s of its last batch.
+     */
+    public void insertBatch(String table, int batchSize, double rowsPerSecond) {
+        TableCounters c = counters(table);
+        c.insertBatchSize = batchSize;
+        c.insertBatchRowsPerSecond = rowsPerSecond;
+    }
+
+    /**
+     * Counts a chunk that an interrupted run already wrote.
+     */
+    public void chunkSkipped(String table, long rows) {
+        TableCounters c = counters(table);
+        c.rowsDone.add(rows);
+        c.chunks.increment();
+    }
+
+    public void stageDone(String stage) {
+        completedStages.add(stage);
+    }
+
+    /**
+     * Records how many rows per table had derived counters that disagreed with the relation tables.
+     */
+    public void counterDrift(Map<String, Long> drift) {
+        counterDrift = Collections.unmodifiableMap(new LinkedHashMap<>(drift));
+    }
+
+    public synchronized void finish(boolean success) {
+        stopReporter();
+        endNanos = System.nanoTime();
+        phase = success ? ImportProgress.Phase.DONE : ImportProgress.Phase.FAILED;
+        logProgress();
+    }
+
+    public ImportProgress snapshot() {
+        long now = endNanos != 0 ? endNanos : System.nanoTime();
+        List<ImportProgress.TableProgress> tableProgress = new ArrayList<>();
+        tables.forEach((table, c) -> {
+            long rowsDone = c.rowsDone.sum();
+            long expected = c.rowsTotal.sum();
+            long rowsTotal = Math.max(expected, rowsDone);
+            long first = c.firstWriteNanos.get();
+            double seconds = first == 0 ? 0 : (now - first) / 1e9;
+            double rowsPerSecond = seconds > 0 ? c.rowsWritten.sum() / seconds : 0;
+            double bytesPerSecond = seconds > 0 ? c.bytes.sum() / seconds : 0;
+            // 流式导入事先不知道行数，ETA 记为未知
+            long eta = expected == 0 ? -1
+                    : rowsDone >= rowsTotal ? 0
+                    : rowsPerSecond > 0 ? (long) Math.ceil((rowsTotal - rowsDone) / rowsPerSecond) : -1;
+            tableProgress.add(ImportProgress.TableProgress.builder()
+                    .table(table)
+                    .rowsDone(rowsDone)
+                    .rowsTotal(rowsTotal)
+                    .bytesDone(c.bytes.sum())
+                    .chunksDone(c.chunks.sum())
+                    .rowsPerSecond(rowsPerSecond)
+                    .bytesPerSecond(bytesPerSecond)
+                    .etaSeconds(eta)
+                    .insertBatchSize(c.insertBatchSize)
+                    .insertBatchRowsPerSecond(c.insertBatchRowsPerSecond)
+                    .build());
+        });
+        return ImportProgress.builder()
+                .phase(phase)
+                .elapsedMillis(phase == ImportProgress.Phase.IDLE ? 0 : TimeUnit.NANOSECONDS.toMillis(now - startNanos))
+                .completedStages(List.copyOf(completedStages))
+                .counterDrift(counterDrift)
+                .tables(tableProgress)
+                .build();
+    }
+
+    private TableCounters counters(String table) {
+        TableCounters c = tables.get(table);
+        if (c == null) {
+            throw new IllegalArgumentException("Table " + table + " is not part of the running import");
+        }
+        return c;
+    }
+
+    private void logProgress() {
+        ImportProgress progress = snapshot();
+        for (ImportProgress.TableProgress t : progress.getTables()) {
+            log.info("Import {} {}: {}/{} rows, {} rows/s, {} KB/s, ETA {} s", progress.getPhase(), t.getTable(),
+                    t.getRowsDone(), t.getRowsTotal(), Math.round(t.getRowsPerSecond()),
+                    Math.round(t.getBytesPerSecond() / 1024), t.getEtaSeconds());
+        }
+        if (!progress.getCompletedStages().isEmpty()) {
+            log.info("Import stages done: {}", progress.getCompletedStages());
+        }
+    }
+
+    private void stopReporter() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package io.sustc.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs import tasks on a fixed pool of worker threads.
+ * <p>
+ * Every task is registered under a name and may depend on other names; it starts as soon as
+ * all tasks registered under its dependencies have finished. Several tasks may share one name
+ * (e.g. the partitions of a large table), and depending on that name waits for all of them.
+ * Workers do not share a connection, so each task talks to the database on its own pooled one.
+ */
+@Slf4j
+final class ImportScheduler implements AutoCloseable {
+
+    private final ExecutorService executor;
+
+    private final Map<String, List<CompletableFuture<Void>>> tasks = new HashMap<>();
+
+    private final List<CompletableFuture<Void>> all = new ArrayList<>();
+
+    ImportScheduler(int parallelism) {
+        AtomicInteger threadId = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "sustc-import-" + threadId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Schedules {@code work} to run once every task registered under {@code dependsOn} is done.
+     * Dependencies must have been submitted before their dependents.
+     */
+    void submit(String name, Runnable work, String... dependsOn) {
+        List<CompletableFuture<Void>> deps = new ArrayList<>();
+        for (String dep : dependsOn) {
+            List<CompletableFuture<Void>> registered = tasks.get(dep);
+            if (registered == null) {
+                throw new IllegalStateException("Task " + name + " depends on unknown task " + dep);
+            }
+            deps.addAll(registered);
+        }
+
+        CompletableFuture<Void> future = CompletableFuture.allOf(deps.toArray(new CompletableFuture[0]))
+                .thenRunAsync(() -> {
+                    long start = System.currentTimeMillis();
+                    work.run();
+                    log.debug("Import task {} finished in {} ms", name, System.currentTimeMillis() - start);
+                }, executor);
+
+        tasks.computeIfAbsent(name, k -> new ArrayList<>()).add(future);
+        all.add(future);
+    }
+
+    /**
+     * Blocks until every submitted task has finished, rethrowing the first failure.
+     */
+    void await() {
+        try {
+            CompletableFuture.allOf(all.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,148 @@
+package io.sustc.service.impl;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.ObjLongConsumer;
+
+/**
+ * In-memory mapping from ingredient name to {@code ingredient.ingredient_id}.
+ * <p>
+ * During import the ids are handed out here (densely, starting from 1), so the ingredient and
+ * has_ingredient rows can be written in the same pass without reading the table back.
+ * At runtime {@link RecipeServiceImpl} uses it as a cache in front of the ingredient table.
+ * <p>
+ * Names and ids live in two parallel arrays with linear probing, so an entry costs one
+ * reference and one {@code long} instead of a {@code HashMap.Node} plus a boxed {@code Long}.
+ */
+@Component
+public class IngredientDictionary {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private static final long MISSING = -1L;
+
+    private String[] names = new String[INITIAL_CAPACITY];
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+
+    private int size;
+
+    private long maxId;
+
+    /**
+     * Returns the id of {@code name}, assigning the next free id if the name is new.
+     */
+    public synchronized long intern(String name) {
+        int slot = slotOf(name);
+        if (names[slot] != null) {
+            return ids[slot];
+        }
+        long id = ++maxId;
+        insertAt(slot, name, id);
+        return id;
+    }
+
+    /**
+     * @return the id of {@code name}, or {@code -1} if it is not known
+     */
+    public synchronized long get(String name) {
+        int slot = slotOf(name);
+        return names[slot] != null ? ids[slot] : MISSING;
+    }
+
+    /**
+     * Records an id that was assigned by the database.
+     */
+    public synchronized void put(String name, long id) {
+        int slot = slotOf(name);
+        if (names[slot] != null) {
+            ids[slot] = id;
+        } else {
+            insertAt(slot, name, id);
+        }
+        maxId = Math.max(maxId, id);
+    }
+
+    /**
+     * Like {@link #put}, but if a transaction is active the entry only becomes visible after it commits,
+     * so a rolled-back insert never leaves a dangling id behind.
+     */
+    public void putAfterCommit(String name, long id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put(name, id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(name, id);
+            }
+        });
+    }
+
+    public synchronized void forEach(ObjLongConsumer<String> action) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] != null) {
+                action.accept(names[i], ids[i]);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the largest id handed out or recorded so far, {@code 0} if empty
+     */
+    public synchronized long maxId() {
+        return maxId;
+    }
+
+    public synchronized void clear() {
+        names = new String[INITIAL_CAPACITY];
+        ids = new long[INITIAL_CAPACITY];
+        size = 0;
+        maxId = 0;
+    }
+
+    private int slotOf(String name) {
+        int mask = names.length - 1;
+        int slot = spread(name.hashCode()) & mask;
+        while (names[slot] != null && !names[slot].equals(name)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void insertAt(int slot, String name, long id) {
+        names[slot] = name;
+        ids[slot] = id;
+        // 负载因子超过 1/2 时扩容，保证线性探测的探测长度较短
+        if (++size * 2 > names.length) {
+            rehash(names.length << 1);
+        }
+    }
+
+    private void rehash(int capacity) {
+        String[] oldNames = names;
+        long[] oldIds = ids;
+        names = new String[capacity];
+        ids = new long[capacity];
+        for (int i = 0; i < oldNames.length; i++) {
+            if (oldNames[i] != null) {
+                int slot = slotOf(oldNames[i]);
+                names[slot] = oldNames[i];
+                ids[slot] = oldIds[i];
+            }
+        }
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        return h ^ (h >>> 13);
+    }
+}
@@ -0,0 +1,224 @@
+package io.sustc.service.impl;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Encodes rows in PostgreSQL's binary {@code COPY} format and ships them
+ * to the server through pgjdbc's {@link org.postgresql.copy.CopyManager}.
+ * <p>
+ * Rows are appended to an in-memory buffer; every {@link #flush(Connection)}
+ * sends the buffered rows as one complete {@code COPY ... FROM STDIN (FORMAT BINARY)}
+ * and resets the buffer, so callers can bound memory by flushing whenever
+ * {@link #size()} grows past their limit.
+ * <p>
+ * The Java type of each value decides its wire encoding, so values must match the
+ * column types: {@code Long -> BIGINT}, {@code Integer -> INT}, {@code Float -> REAL},
+ * {@code String -> VARCHAR/TEXT}, {@code Timestamp -> TIMESTAMP}, {@code Boolean -> BOOLEAN}.
+ */
+final class PgBinaryCopyBuffer {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+
+    // PostgreSQL timestamps count microseconds from 2000-01-01 00:00:00
+    private static final long PG_EPOCH_SECONDS = LocalDateTime.of(2000, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+
+    private final String table;
+
+    private final String copySql;
+
+    private final int columnCount;
+
+    private byte[] buf;
+
+    private int pos;
+
+    private int rows;
+
+    PgBinaryCopyBuffer(String table, String... columns) {
+        this(table, INITIAL_CAPACITY, columns);
+    }
+
+    /**
+     * @param initialCapacity bytes to allocate up front, so a buffer flushed at a known size never has to grow
+     */
+    PgBinaryCopyBuffer(String table, int initialCapacity, String... columns) {
+        this.table = table;
+        this.copySql = "COPY " + table + " (" + String.join(", ", columns) + ") FROM STDIN (FORMAT BINARY)";
+        this.columnCount = columns.length;
+        this.buf = new byte[initialCapacity];
+    }
+
+    /**
+     * Appends a full row; {@code values} must follow the column order given to the constructor.
+     */
+    void addRow(Object... values) {
+        if (values.length != columnCount) {
+            throw new IllegalArgumentException("Expected " + columnCount + " values, got " + values.length);
+        }
+        startRow();
+        for (Object value : values) {
+            writeObject(value);
+        }
+    }
+
+    void startRow() {
+        ensureCapacity(2);
+        putShort(columnCount);
+        rows++;
+    }
+
+    void writeObject(Object value) {
+        if (value == null) {
+            writeNull();
+        } else if (value instanceof Long) {
+            writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            writeInt((Integer) value);
+        } else if (value instanceof Float) {
+            writeFloat((Float) value);
+        } else if (value instanceof String) {
+            writeString((String) value);
+        } else if (value instanceof Timestamp) {
+            writeTimestamp((Timestamp) value);
+        } else if (value instanceof Boolean) {
+            writeBoolean((Boolean) value);
+        } else {
+            throw new IllegalArgumentException("Unsupported COPY value type: " + value.getClass().getName());
+        }
+    }
+
+    void writeNull() {
+        ensureCapacity(4);
+        putInt(-1);
+    }
+
+    void writeLong(long value) {
+        ensureCapacity(12);
+        putInt(8);
+        putLong(value);
+    }
+
+    void writeInt(int value) {
+        ensureCapacity(8);
+        putInt(4);
+        putInt(value);
+    }
+
+    void writeFloat(float value) {
+        ensureCapacity(8);
+        putInt(4);
+        putInt(Float.floatToIntBits(value));
+    }
+
+    void writeBoolean(boolean value) {
+        ensureCapacity(5);
+        putInt(1);
+        buf[pos++] = (byte) (value ? 1 : 0);
+    }
+
+    void writeString(String value) {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(4 + bytes.length);
+        putInt(bytes.length);
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        pos += bytes.length;
+    }
+
+    /**
+     * Encodes a {@code TIMESTAMP WITHOUT TIME ZONE}. Like pgjdbc's {@code setTimestamp},
+     * the wall-clock time in the JVM's default zone is what gets stored.
+     */
+    void writeTimestamp(Timestamp value) {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        LocalDateTime ldt = value.toLocalDateTime();
+        long micros = (ldt.toEpochSecond(ZoneOffset.UTC) - PG_EPOCH_SECONDS) * 1_000_000L + ldt.getNano() / 1_000;
+        writeLong(micros);
+    }
+
+    String table() {
+        return table;
+    }
+
+    int rowCount() {
+        return rows;
+    }
+
+    /**
+     * @return number of encoded bytes currently buffered
+     */
+    int size() {
+        return pos;
+    }
+
+    /**
+     * Sends the buffered rows as a single {@code COPY} on {@code conn} and clears the buffer.
+     *
+     * @return number of rows the server reported as copied
+     */
+    long flush(Connection conn) throws SQLException {
+        if (rows == 0) {
+            return 0;
+        }
+        CopyIn copyIn = conn.unwrap(PGConnection.class).getCopyAPI().copyIn(copySql);
+        try {
+            copyIn.writeToCopy(SIGNATURE, 0, SIGNATURE.length);
+            // flags field + header extension length
+            copyIn.writeToCopy(new byte[8], 0, 8);
+            copyIn.writeToCopy(buf, 0, pos);
+            // file trailer: a 16-bit -1 in place of the field count
+            copyIn.writeToCopy(new byte[]{(byte) 0xFF, (byte) 0xFF}, 0, 2);
+            return copyIn.endCopy();
+        } catch (SQLException e) {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+            throw e;
+        } finally {
+            pos = 0;
+            rows = 0;
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (pos + extra > buf.length) {
+            int newCapacity = Math.max(buf.length << 1, pos + extra);
+            byte[] grown = new byte[newCapacity];
+            System.arraycopy(buf, 0, grown, 0, pos);
+            buf = grown;
+        }
+    }
+
+    private void putShort(int v) {
+        buf[pos++] = (byte) (v >>> 8);
+        buf[pos++] = (byte) v;
+    }
+
+    private void putInt(int v) {
+        buf[pos++] = (byte) (v >>> 24);
+        buf[pos++] = (byte) (v >>> 16);
+        buf[pos++] = (byte) (v >>> 8);
+        buf[pos++] = (byte) v;
+    }
+
+    private void putLong(long v) {
+        putInt((int) (v >>> 32));
+        putInt((int) v);
+    }
+}
@@ -3,6 +3,7 @@ package io.sustc.service.impl;
 import io.sustc.dto.*;
 import io.sustc.service.RecipeService;
 import io.sustc.service.UserService;
+import io.sustc.util.TimeFields;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
@@ -29,6 +30,9 @@ public class RecipeServiceImpl implements RecipeService {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private IngredientDictionary ingredientDictionary;
+
     @Override
     public String getNameFromID(long id) {
         String sql = "SELECT dish_name FROM recipe WHERE recipe_id = ?";
@@ -63,7 +67,7 @@ public class RecipeServiceImpl implements RecipeService {
         try {
             RecipeRecord record = jdbcTemplate.queryForObject(sql, new BeanPropertyRowMapper<>(RecipeRecord.class), recipeId);
             if (record != null) {
-                record.setTotalTime(calculateTotalTime(record.getCookTime(), record.getPrepTime()));
+                record.setTotalTime(TimeFields.calculateTotalTime(record.getCookTime(), record.getPrepTime()));
                 
                 String ingSql = """
                         SELECT i.ingredient_name 
@@ -147,7 +151,7 @@ public class RecipeServiceImpl implements RecipeService {
         List<RecipeRecord> records = jdbcTemplate.query(fetchSql.toString(), new BeanPropertyRowMapper<>(RecipeRecord.class), args.toArray());
 
         if (!records.isEmpty()) {
-            records.forEach(r -> r.setTotalTime(calculateTotalTime(r.getCookTime(), r.getPrepTime())));
+            records.forEach(r -> r.setTotalTime(TimeFields.calculateTotalTime(r.getCookTime(), r.getPrepTime())));
 
             List<Long> recipeIds = records.stream().map(RecipeRecord::getRecipeId).collect(Collectors.toList());
             String placeholders = String.join(",", Collections.nCopies(recipeIds.size(), "?"));
@@ -210,13 +214,15 @@ public class RecipeServiceImpl implements RecipeService {
         if (dto.getRecipeIngredientParts() != null) {
             for (String ingName : dto.getRecipeIngredientParts()) {
                 if (ingName == null || ingName.trim().isEmpty()) continue;
-                String checkIng = "SELECT ingredient_id FROM ingredient WHERE ingredient_name = ?";
-                Long ingId;
-                try {
-                    ingId = jdbcTemplate.queryForObject(checkIng, Long.class, ingName);
-                } catch (EmptyResultDataAccessException e) {
-                    jdbcTemplate.update("INSERT INTO ingredient (ingredient_name) VALUES (?)", ingName);
-                    ingId = jdbcTemplate.queryForObject(checkIng, Long.class, ingName);
+                long ingId = ingredientDictionary.get(ingName);
+                if (ingId < 0) {
+                    // 字典未命中：插入（或取回已存在的）食材，事务提交后再写入字典
+                    ingId = jdbcTemplate.queryForObject("""
+                            INSERT INTO ingredient (ingredient_name) VALUES (?)
+                            ON CONFLICT (ingredient_name) DO UPDATE SET ingredient_name = EXCLUDED.ingredient_name
+                            RETURNING ingredient_id
+                            """, Long.class, ingName);
+                    ingredientDictionary.putAfterCommit(ingName, ingId);
                 }
                 jdbcTemplate.update("INSERT INTO has_ingredient (recipe_id, ingredient_id) VALUES (?, ?)", newId, ingId);
             }
@@ -361,16 +367,4 @@ public class RecipeServiceImpl implements RecipeService {
             return map;
         });
     }
-
-    private String calculateTotalTime(String cook, String prep) {
-        try {
-            Duration c = (cook != null && !cook.isEmpty()) ? Duration.parse(cook) : Duration.ZERO;
-            Duration p = (prep != null && !prep.isEmpty()) ? Duration.parse(prep) : Duration.ZERO;
-            Duration total = c.plus(p);
-            if (total.isZero()) return null;
-            return total.toString();
-        } catch (Exception e) {
-            return null;
-        }
-    }
 }
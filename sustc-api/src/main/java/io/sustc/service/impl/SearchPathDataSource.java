@@ -0,0 +1,65 @@
+package io.sustc.service.impl;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Hands out pooled connections whose {@code search_path} points at {@code schema}, so unqualified
+ * table names in the import SQL resolve to that schema. The setting is reset before the connection
+ * goes back to the pool, where other services expect {@code public}.
+ */
+final class SearchPathDataSource extends DelegatingDataSource {
+
+    private final String schema;
+
+    SearchPathDataSource(DataSource target, String schema) {
+        super(target);
+        this.schema = schema;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return withSearchPath(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return withSearchPath(super.getConnection(username, password));
+    }
+
+    private Connection withSearchPath(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET search_path TO " + schema);
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close") && !conn.isClosed()) {
+                        resetSearchPath(conn);
+                    }
+                    try {
+                        return method.invoke(conn, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+
+    private static void resetSearchPath(Connection conn) throws SQLException {
+        // 事务出错后无法执行 RESET，先回滚（连接池归还时本来也会回滚）
+        if (!conn.getAutoCommit()) {
+            conn.rollback();
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("RESET search_path");
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package io.sustc.service.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The lookups issued by the service implementations, and the secondary indexes derived from them.
+ * <p>
+ * Each {@link QueryAccess} names a table and the columns a query filters (or orders) on. Accesses on
+ * the same columns share one index, and accesses already served by a prefix of the table's primary key
+ * need none. Keep this list in sync when a service gains a new query shape.
+ */
+final class SecondaryIndexCatalogue {
+
+    /**
+     * A query that looks rows of {@code table} up by {@code columns}, in index column order.
+     */
+    record QueryAccess(String usedBy, String table, List<String> columns) {
+
+        QueryAccess(String usedBy, String table, String... columns) {
+            this(usedBy, table, List.of(columns));
+        }
+    }
+
+    /**
+     * An index to build after import, together with the queries that need it.
+     */
+    record IndexSpec(String name, String table, List<String> columns, List<String> usedBy) {
+
+        String createSql() {
+            return "CREATE INDEX IF NOT EXISTS " + name + " ON " + table + " (" + String.join(", ", columns) + ")";
+        }
+    }
+
+    static final List<QueryAccess> QUERIES = List.of(
+            new QueryAccess("UserServiceImpl#register", "users", "author_name"),
+            new QueryAccess("UserServiceImpl#feed", "follows", "follower_id"),
+            new QueryAccess("UserServiceImpl#deleteAccount", "follows", "follower_id"),
+            new QueryAccess("UserServiceImpl#deleteAccount", "follows", "blogger_id"),
+            new QueryAccess("UserServiceImpl#follow", "follows", "blogger_id", "follower_id"),
+            new QueryAccess("UserServiceImpl#feed", "recipe", "author_id"),
+            new QueryAccess("UserServiceImpl#feed", "recipe", "category"),
+            new QueryAccess("RecipeServiceImpl#searchRecipes", "recipe", "category"),
+            new QueryAccess("RecipeServiceImpl#getClosestCaloriePair", "recipe", "calories", "recipe_id"),
+            new QueryAccess("RecipeServiceImpl#getRecipeById", "has_ingredient", "recipe_id"),
+            new QueryAccess("RecipeServiceImpl#searchRecipes", "has_ingredient", "recipe_id"),
+            new QueryAccess("RecipeServiceImpl#deleteRecipe", "review", "recipe_id"),
+            new QueryAccess("ReviewServiceImpl#listByRecipe", "review", "recipe_id"),
+            new QueryAccess("ReviewServiceImpl#refreshRecipeAggregatedRating", "review", "recipe_id"),
+            new QueryAccess("ReviewServiceImpl#likeReview", "likes_review", "review_id"),
+            new QueryAccess("ReviewServiceImpl#unlikeReview", "likes_review", "review_id"),
+            new QueryAccess("ReviewServiceImpl#listByRecipe", "likes_review", "review_id"),
+            new QueryAccess("ReviewServiceImpl#deleteReview", "likes_review", "review_id")
+    );
+
+    private SecondaryIndexCatalogue() {
+    }
+
+    /**
+     * @param primaryKeys primary key columns of each table, in key order
+     * @return one index per distinct access that the primary key cannot serve
+     */
+    static List<IndexSpec> derive(Map<String, List<String>> primaryKeys) {
+        Map<String, IndexSpec> indexes = new LinkedHashMap<>();
+        for (QueryAccess access : QUERIES) {
+            List<String> pk = primaryKeys.getOrDefault(access.table(), List.of());
+            if (pk.size() >= access.columns().size() && pk.subList(0, access.columns().size()).equals(access.columns())) {
+                continue;
+            }
+            String name = "idx_" + access.table() + "_" + String.join("_", access.columns());
+            indexes.computeIfAbsent(name, k -> new IndexSpec(k, access.table(), access.columns(), new ArrayList<>()))
+                    .usedBy().add(access.usedBy());
+        }
+        return List.copyOf(indexes.values());
+    }
+}
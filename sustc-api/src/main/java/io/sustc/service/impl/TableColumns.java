@@ -0,0 +1,54 @@
+package io.sustc.service.impl;
+
+import io.sustc.dto.RecipeRecord;
+import io.sustc.dto.ReviewRecord;
+import io.sustc.dto.UserRecord;
+
+import java.util.List;
+
+/**
+ * The tables an import writes, their columns in load order, and how a record becomes a row of them.
+ * Shared by the full import, the streaming {@link CopyPipeline} and the {@link DeltaImporter}, which must
+ * all agree on the column order of the rows they encode.
+ */
+final class TableColumns {
+
+    /**
+     * Every imported table, parents before children.
+     */
+    static final List<String> TABLES = List.of(
+            "users", "follows", "recipe", "ingredient", "has_ingredient", "review", "likes_review");
+
+    static final String[] USER_COLUMNS = {"author_id", "author_name", "gender", "age", "following", "followers", "password"};
+
+    static final String[] FOLLOW_COLUMNS = {"blogger_id", "follower_id"};
+
+    static final String[] RECIPE_COLUMNS = {"recipe_id", "author_id", "dish_name", "date_published", "cook_time", "prep_time", "description", "category", "aggr_rating", "review_cnt", "recipe_yield", "servings", "calories", "fat", "saturated_fat", "cholesterol", "sodium", "carbohydrate", "fiber", "sugar", "protein"};
+
+    static final String[] INGREDIENT_COLUMNS = {"ingredient_id", "ingredient_name"};
+
+    static final String[] HAS_INGREDIENT_COLUMNS = {"recipe_id", "ingredient_id"};
+
+    static final String[] REVIEW_COLUMNS = {"review_id", "recipe_id", "author_id", "rating", "review", "date_submitted", "date_modified"};
+
+    static final String[] LIKES_REVIEW_COLUMNS = {"author_id", "review_id"};
+
+    static final RowMapper<UserRecord> USER_ROW = (u) -> new Object[]{
+            u.getAuthorId(), u.getAuthorName(), u.getGender(), u.getAge(), u.getFollowing(), u.getFollowers(), u.getPassword()
+    };
+
+    static final RowMapper<RecipeRecord> RECIPE_ROW = (r) -> new Object[]{
+            r.getRecipeId(), r.getAuthorId(), r.getName(), r.getDatePublished(), r.getCookTime(), r.getPrepTime(), r.getDescription(), r.getRecipeCategory(), r.getAggregatedRating(), r.getReviewCount(), r.getRecipeYield(), r.getRecipeServings(), r.getCalories(), r.getFatContent(), r.getSaturatedFatContent(), r.getCholesterolContent(), r.getSodiumContent(), r.getCarbohydrateContent(), r.getFiberContent(), r.getSugarContent(), r.getProteinContent()
+    };
+
+    static final RowMapper<ReviewRecord> REVIEW_ROW = (rr) -> new Object[]{
+            rr.getReviewId(), rr.getRecipeId(), rr.getAuthorId(), rr.getRating(), rr.getReview(), rr.getDateSubmitted(), rr.getDateModified()
+    };
+
+    interface RowMapper<T> {
+        Object[] map(T t);
+    }
+
+    private TableColumns() {
+    }
+}
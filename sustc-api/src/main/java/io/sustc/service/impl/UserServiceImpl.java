@@ -2,6 +2,7 @@ package io.sustc.service.impl;
 
 import io.sustc.dto.*;
 import io.sustc.service.UserService;
+import io.sustc.util.TimeFields;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DuplicateKeyException;
@@ -11,14 +12,10 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDate;
-import java.time.Period;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Locale;
 import java.util.Calendar;
 import java.util.TimeZone;
 
@@ -41,7 +38,7 @@ public class UserServiceImpl implements UserService {
         if (req.getBirthday() == null || req.getBirthday().isEmpty()) {
             return -1;
         }
-        Integer age = calculateAge(req.getBirthday());
+        Integer age = TimeFields.calculateAge(req.getBirthday());
         if (age == null || age <= 0) {
             return -1;
         }
@@ -61,25 +58,6 @@ public class UserServiceImpl implements UserService {
         return newId;
     }
 
-    private Integer calculateAge(String birthday) {
-        String[] patterns = {"yyyy-MM-dd", "MM/dd/yyyy", "yyyy/MM/dd", "yyyy-MM-dd HH:mm:ss", "MM/dd/yyyy HH:mm:ss"};
-        for (String pattern : patterns) {
-            try {
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern, Locale.US);
-                LocalDate birthDate;
-                if (pattern.contains("HH")) {
-                    birthDate = java.time.LocalDateTime.parse(birthday, formatter).toLocalDate();
-                } else {
-                    birthDate = LocalDate.parse(birthday, formatter);
-                }
-                return Period.between(birthDate, LocalDate.now()).getYears();
-            } catch (Exception e) {
-                // continue to next pattern
-            }
-        }
-        return null;
-    }
-
     @Override
     public long login(AuthInfo auth) {
         if (auth == null || auth.getPassword() == null || auth.getPassword().isEmpty()) {
@@ -0,0 +1,59 @@
+package io.sustc.util;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Time fields the services derive from user input: a recipe's total time and a user's age.
+ * Both return {@code null} for input they cannot parse. All methods are thread-safe.
+ */
+public final class TimeFields {
+
+    private static final String[] BIRTHDAY_PATTERNS = {"yyyy-MM-dd", "MM/dd/yyyy", "yyyy/MM/dd", "yyyy-MM-dd HH:mm:ss", "MM/dd/yyyy HH:mm:ss"};
+
+    /**
+     * @return the sum of two ISO-8601 durations, an empty or {@code null} one counting as zero, or {@code null}
+     * if the sum is zero or either cannot be parsed
+     */
+    public static String calculateTotalTime(String cook, String prep) {
+        try {
+            Duration c = (cook != null && !cook.isEmpty()) ? Duration.parse(cook) : Duration.ZERO;
+            Duration p = (prep != null && !prep.isEmpty()) ? Duration.parse(prep) : Duration.ZERO;
+            Duration total = c.plus(p);
+            if (total.isZero()) return null;
+            return total.toString();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Tries the birthday patterns in order, so a date in a later pattern pays for the failed attempts before it.
+     *
+     * @return the age in whole years as of today, or {@code null} if no pattern matches
+     */
+    public static Integer calculateAge(String birthday) {
+        for (String pattern : BIRTHDAY_PATTERNS) {
+            try {
+                DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern, Locale.US);
+                LocalDate birthDate;
+                if (pattern.contains("HH")) {
+                    birthDate = LocalDateTime.parse(birthday, formatter).toLocalDate();
+                } else {
+                    birthDate = LocalDate.parse(birthday, formatter);
+                }
+                return Period.between(birthDate, LocalDate.now()).getYears();
+            } catch (Exception e) {
+                // continue to next pattern
+            }
+        }
+        return null;
+    }
+
+    private TimeFields() {
+    }
+}
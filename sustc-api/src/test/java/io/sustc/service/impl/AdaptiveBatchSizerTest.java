@@ -0,0 +1,67 @@
+package io.sustc.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveBatchSizerTest {
+
+    @Test
+    void startsFromThePowerOfTwoBelowTheFixedBatch() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer();
+
+        // 30000 / 7 = 4285
+        assertEquals(4096, sizer.batchSize("users", 7));
+        assertEquals(0, sizer.currentBatchSize("recipe"));
+    }
+
+    @Test
+    void growsWhileThroughputImprovesButStaysUnderTheBindLimit() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer();
+        int params = 21;
+        int first = sizer.batchSize("recipe", params);
+        int largest = first;
+        for (int i = 0; i < 50; i++) {
+            int rows = sizer.batchSize("recipe", params);
+            // 每批耗时相同，批越大吞吐越高
+            sizer.record("recipe", params, rows, rows * 100L, 1_000_000);
+            int next = sizer.batchSize("recipe", params);
+            assertEquals(1, Integer.bitCount(next));
+            assertTrue(next * params <= AdaptiveBatchSizer.MAX_BIND_PARAMS, () -> next + " rows");
+            largest = Math.max(largest, next);
+        }
+        assertTrue(largest > first);
+    }
+
+    @Test
+    void wideRowsShrinkTheBatch() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer();
+        int rows = sizer.batchSize("review", 7);
+
+        // 每行 1 MB，4 MB 的上限只容得下几行，取下限 16
+        sizer.record("review", 7, rows, rows * 1024L * 1024, 1_000_000);
+
+        assertEquals(16, sizer.batchSize("review", 7));
+    }
+
+    @Test
+    void insertSqlHasOneTuplePerRow() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer();
+
+        assertEquals("INSERT INTO t (a, b) VALUES (?,?),(?,?),(?,?)", sizer.insertSql("INSERT INTO t (a, b) VALUES ", 2, 3));
+        assertEquals("INSERT INTO t (a, b) VALUES (?,?),(?,?),(?,?),(?,?)", sizer.insertSql("INSERT INTO t (a, b) VALUES ", 2, 4));
+    }
+
+    @Test
+    void insertSqlIsCachedOnlyForPowersOfTwo() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer();
+        String prefix = "INSERT INTO t (a) VALUES ";
+
+        assertSame(sizer.insertSql(prefix, 1, 64), sizer.insertSql(prefix, 1, 64));
+        String odd = sizer.insertSql(prefix, 1, 63);
+        assertEquals(odd, sizer.insertSql(prefix, 1, 63));
+        assertTrue(odd != sizer.insertSql(prefix, 1, 63));
+    }
+}
@@ -0,0 +1,61 @@
+package io.sustc.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * How {@link CopyPipeline} splits its memory budget; the pipeline itself needs a database, see the tests tagged {@code db}.
+ */
+class CopyPipelineTest {
+
+    private static final int TABLES = TableColumns.TABLES.size();
+
+    @ParameterizedTest
+    @CsvSource({
+            "2097152, 1", "2097152, 8",
+            "16777216, 1", "16777216, 8", "16777216, 64",
+            "67108864, 8",
+            "1073741824, 16",
+            "68719476736, 8"
+    })
+    void everythingHeldFitsTheBudget(long budget, int writers) {
+        CopyPipeline pipeline = new CopyPipeline(null, budget, writers, null);
+
+        // 读出的记录：队列里的批次，加上 3 个读线程和编码线程手上的
+        long records = (pipeline.recordQueueCapacity() + 4L) * pipeline.recordBatch() * CopyPipeline.RECORD_BYTES;
+        // COPY 缓冲区：每张表正在填的和备用的，每个写线程正在发送的和排队的
+        long buffers = (2L * TABLES + 2L * pipeline.writers()) * (pipeline.chunkBytes() + CopyPipeline.CHUNK_SLACK_BYTES);
+
+        assertTrue(records + buffers <= budget, () -> records + " + " + buffers + " > " + budget);
+        assertTrue(pipeline.chunkBytes() >= CopyPipeline.MIN_CHUNK_BYTES);
+        assertTrue(pipeline.recordBatch() >= 1 && pipeline.recordQueueCapacity() >= 1);
+    }
+
+    @Test
+    void largeBudgetKeepsAllWriters() {
+        CopyPipeline pipeline = new CopyPipeline(null, 64L * 1024 * 1024, 8, null);
+
+        assertEquals(8, pipeline.writers());
+        // 四分之三的预算分给 7 张表各 2 个和 8 个写线程各 2 个缓冲区
+        assertEquals(48L * 1024 * 1024 / (2 * TABLES + 16) - CopyPipeline.CHUNK_SLACK_BYTES, pipeline.chunkBytes());
+    }
+
+    @Test
+    void smallBudgetLowersWriters() {
+        CopyPipeline pipeline = new CopyPipeline(null, CopyPipeline.minimumBudget(), 8, null);
+
+        assertEquals(1, pipeline.writers());
+        assertTrue(pipeline.chunkBytes() >= CopyPipeline.MIN_CHUNK_BYTES);
+    }
+
+    @Test
+    void budgetBelowMinimumIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new CopyPipeline(null, CopyPipeline.minimumBudget() - 1, 1, null));
+        assertThrows(IllegalArgumentException.class, () -> new CopyPipeline(null, 0, 1, null));
+    }
+}
@@ -0,0 +1,108 @@
+package io.sustc.service.impl;
+
+import io.sustc.service.DatabaseService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.Map;
+
+import static io.sustc.service.impl.ImportFixtures.recipe;
+import static io.sustc.service.impl.ImportFixtures.review;
+import static io.sustc.service.impl.ImportFixtures.user;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Tag("db")
+@SpringJUnitConfig(DatabaseTestConfig.class)
+class CounterReconcilerTest {
+
+    @Autowired
+    private DatabaseService databaseService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Every counter is imported as zero. Users 1, 2 and 3 follow somebody or are followed, user 4 is alone;
+     * recipe 10 has two reviews and recipe 11 none, so its rating should be null.
+     */
+    @BeforeEach
+    void importStaleCounters() {
+        databaseService.drop();
+        databaseService.importData(
+                List.of(review(100, 10, 2, 4), review(101, 10, 3, 5)),
+                List.of(user(1, 2, 3), user(2, 3), user(3), user(4)),
+                List.of(recipe(10, 1, "salt"), recipe(11, 2)),
+                DatabaseService.ImportMode.COPY);
+    }
+
+    @Test
+    void reportCountsDriftWithoutChangingIt() {
+        CounterReconciler reconciler = reconcile(CounterReconciler.Mode.REPORT);
+
+        assertEquals(Map.of("users", 3L, "recipe", 2L), reconciler.drift());
+        assertEquals(0, following(1));
+        assertEquals(0, reviewCount(10));
+    }
+
+    @Test
+    void repairOverwritesDriftedCounters() {
+        CounterReconciler reconciler = reconcile(CounterReconciler.Mode.REPAIR);
+
+        assertEquals(Map.of("users", 3L, "recipe", 2L), reconciler.drift());
+        assertEquals(List.of(2, 1, 0, 0), column("SELECT following FROM users ORDER BY author_id"));
+        assertEquals(List.of(0, 1, 2, 0), column("SELECT followers FROM users ORDER BY author_id"));
+        assertEquals(2, reviewCount(10));
+        assertEquals(4.5f, jdbcTemplate.queryForObject("SELECT aggr_rating FROM recipe WHERE recipe_id = 10", Float.class));
+        assertNull(jdbcTemplate.queryForObject("SELECT aggr_rating FROM recipe WHERE recipe_id = 11", Float.class));
+
+        assertEquals(Map.of("users", 0L, "recipe", 0L), reconcile(CounterReconciler.Mode.REPORT).drift());
+    }
+
+    @Test
+    void offDoesNothing() {
+        CounterReconciler reconciler = reconcile(CounterReconciler.Mode.OFF);
+
+        assertEquals(Map.of("users", 0L, "recipe", 0L), reconciler.drift());
+        assertEquals(0, following(1));
+    }
+
+    @Test
+    void repairKeysOnlyTouchesTheGivenKeys() {
+        long changed = jdbcTemplate.execute((Connection conn) -> CounterReconciler.repairKeys(conn, "users", "SELECT 3"));
+
+        assertEquals(1, changed);
+        assertEquals(List.of(0, 0, 2, 0), column("SELECT followers FROM users ORDER BY author_id"));
+        assertThrows(IllegalArgumentException.class,
+                () -> jdbcTemplate.execute((Connection conn) -> CounterReconciler.repairKeys(conn, "review", "SELECT 1")));
+    }
+
+    private CounterReconciler reconcile(CounterReconciler.Mode mode) {
+        CounterReconciler reconciler = new CounterReconciler(jdbcTemplate, mode);
+        try (ImportScheduler scheduler = new ImportScheduler(2)) {
+            // 分区数多于行数，有的区间是空的
+            reconciler.schedule(scheduler, 3, table -> new String[0]);
+            scheduler.await();
+        }
+        return reconciler;
+    }
+
+    private int following(long userId) {
+        return jdbcTemplate.queryForObject("SELECT following FROM users WHERE author_id = ?", Integer.class, userId);
+    }
+
+    private int reviewCount(long recipeId) {
+        return jdbcTemplate.queryForObject("SELECT review_cnt FROM recipe WHERE recipe_id = ?", Integer.class, recipeId);
+    }
+
+    private List<Integer> column(String sql) {
+        return jdbcTemplate.queryForList(sql, Integer.class);
+    }
+}
@@ -0,0 +1,40 @@
+package io.sustc.service.impl;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Spring context of the tests tagged {@code db}, holding the {@link DatabaseServiceImpl} and what it needs.
+ * <p>
+ * The database is taken from the environment variables {@code SUSTC_TEST_URL}, {@code SUSTC_TEST_USERNAME} and
+ * {@code SUSTC_TEST_PASSWORD}, defaulting to {@code application.properties}. The tests drop all its tables.
+ */
+@Configuration
+@Import({DatabaseServiceImpl.class, IngredientDictionary.class, ImportMetrics.class})
+class DatabaseTestConfig {
+
+    @Bean(destroyMethod = "close")
+    DataSource dataSource() {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(env("SUSTC_TEST_URL", "jdbc:postgresql://localhost:5432/sustc"));
+        config.setUsername(env("SUSTC_TEST_USERNAME", "sustc"));
+        config.setPassword(env("SUSTC_TEST_PASSWORD", "sustc"));
+        return new HikariDataSource(config);
+    }
+
+    @Bean
+    JdbcTemplate jdbcTemplate(DataSource dataSource) {
+        return new JdbcTemplate(dataSource);
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+}
@@ -0,0 +1,134 @@
+package io.sustc.service.impl;
+
+import io.sustc.dto.UserRecord;
+import io.sustc.service.DatabaseService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.List;
+
+import static io.sustc.service.impl.ImportFixtures.recipe;
+import static io.sustc.service.impl.ImportFixtures.review;
+import static io.sustc.service.impl.ImportFixtures.user;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link DeltaImporter} through {@link DatabaseService#importDelta}, on top of a small import whose counters
+ * were repaired, so every counter starts out right.
+ */
+@Tag("db")
+@SpringJUnitConfig(DatabaseTestConfig.class)
+@TestPropertySource(properties = "sustc.import.counters=REPAIR")
+class DeltaImporterTest {
+
+    @Autowired
+    private DatabaseService databaseService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private IngredientDictionary ingredientDictionary;
+
+    @BeforeEach
+    void importBase() {
+        databaseService.drop();
+        databaseService.importData(
+                List.of(review(100, 10, 2, 4, 3)),
+                List.of(user(1, 2), user(2), user(3)),
+                List.of(recipe(10, 1, "salt", "sugar"), recipe(11, 2)),
+                DatabaseService.ImportMode.COPY);
+    }
+
+    @Test
+    void mergesUsersAndRecomputesTheirCounters() {
+        // 记录里的计数不可信，应按 follows 重算
+        UserRecord changed = user(3, 1, 2);
+        changed.setFollowers(99);
+        changed.setAuthorName("renamed");
+
+        databaseService.importDelta(List.of(), List.of(changed, user(4, 1)), List.of());
+
+        assertEquals("renamed", jdbcTemplate.queryForObject("SELECT author_name FROM users WHERE author_id = 3", String.class));
+        assertEquals(List.of(1, 0, 2, 1), column("SELECT following FROM users ORDER BY author_id"));
+        assertEquals(List.of(2, 2, 0, 0), column("SELECT followers FROM users ORDER BY author_id"));
+    }
+
+    @Test
+    void replacesTheFollowsOfDeltaUsers() {
+        databaseService.importDelta(List.of(), List.of(user(1)), List.of());
+
+        assertEquals(0, count("SELECT COUNT(*) FROM follows"));
+        assertEquals(List.of(0, 0, 0), column("SELECT following FROM users ORDER BY author_id"));
+        assertEquals(List.of(0, 0, 0), column("SELECT followers FROM users ORDER BY author_id"));
+    }
+
+    @Test
+    void lastRecordOfARepeatedKeyWins() {
+        UserRecord first = user(5);
+        first.setAuthorName("first");
+        UserRecord second = user(5);
+        second.setAuthorName("second");
+
+        databaseService.importDelta(List.of(), List.of(first, second), List.of());
+
+        assertEquals("second", jdbcTemplate.queryForObject("SELECT author_name FROM users WHERE author_id = 5", String.class));
+    }
+
+    @Test
+    void replacesIngredientsAndCachesNewOnes() {
+        databaseService.importDelta(List.of(), List.of(), List.of(recipe(10, 1, "salt", "pepper")));
+
+        assertEquals(List.of("pepper", "salt"), jdbcTemplate.queryForList("""
+                SELECT i.ingredient_name FROM has_ingredient h JOIN ingredient i ON i.ingredient_id = h.ingredient_id
+                WHERE h.recipe_id = 10 ORDER BY 1
+                """, String.class));
+        long pepper = jdbcTemplate.queryForObject("SELECT ingredient_id FROM ingredient WHERE ingredient_name = 'pepper'", Long.class);
+        assertEquals(pepper, ingredientDictionary.get("pepper"));
+    }
+
+    @Test
+    void movedReviewUpdatesBothRecipes() {
+        databaseService.importDelta(List.of(review(100, 11, 2, 2)), List.of(), List.of());
+
+        assertEquals(0, count("SELECT review_cnt FROM recipe WHERE recipe_id = 10"));
+        assertNull(jdbcTemplate.queryForObject("SELECT aggr_rating FROM recipe WHERE recipe_id = 10", Float.class));
+        assertEquals(1, count("SELECT review_cnt FROM recipe WHERE recipe_id = 11"));
+        assertEquals(2f, jdbcTemplate.queryForObject("SELECT aggr_rating FROM recipe WHERE recipe_id = 11", Float.class));
+        // 新记录没有点赞，原来的点赞被删掉
+        assertEquals(0, count("SELECT COUNT(*) FROM likes_review"));
+    }
+
+    @Test
+    void replacesTheLikesOfDeltaReviews() {
+        databaseService.importDelta(List.of(review(100, 10, 2, 4, 1, 2)), List.of(), List.of());
+
+        assertEquals(List.of(1, 2), column("SELECT author_id FROM likes_review WHERE review_id = 100 ORDER BY 1"));
+    }
+
+    @Test
+    void failedDeltaChangesNothing() {
+        // 评论指向不存在的菜谱，违反外键，整个增量回滚
+        assertThrows(DataAccessException.class, () -> databaseService.importDelta(
+                List.of(review(101, 999, 2, 5)), List.of(user(4, 1)), List.of()));
+
+        assertEquals(3, count("SELECT COUNT(*) FROM users"));
+        assertEquals(1, count("SELECT followers FROM users WHERE author_id = 2"));
+    }
+
+    private long count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class);
+    }
+
+    private List<Integer> column(String sql) {
+        return jdbcTemplate.queryForList(sql, Integer.class);
+    }
+}
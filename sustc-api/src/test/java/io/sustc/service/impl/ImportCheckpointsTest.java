@@ -0,0 +1,49 @@
+package io.sustc.service.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("db")
+@SpringJUnitConfig(DatabaseTestConfig.class)
+class ImportCheckpointsTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void dropCheckpoints() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + ImportCheckpoints.TABLE);
+    }
+
+    @Test
+    void runningImportIsLive() {
+        try (ImportCheckpoints checkpoints = new ImportCheckpoints(jdbcTemplate)) {
+            checkpoints.begin(false, 4);
+
+            assertTrue(ImportCheckpoints.isLive(jdbcTemplate));
+        }
+    }
+
+    @Test
+    void closedImportCanBeResumedAtOnce() {
+        try (ImportCheckpoints checkpoints = new ImportCheckpoints(jdbcTemplate)) {
+            checkpoints.begin(false, 4);
+            checkpoints.record("users");
+        }
+
+        // 失败的导入关闭后立刻不再算作正在运行，检查点保留
+        assertFalse(ImportCheckpoints.isLive(jdbcTemplate));
+        ImportCheckpoints resumed = new ImportCheckpoints(jdbcTemplate);
+        assertEquals(4, resumed.begin(true, 8));
+        assertTrue(resumed.isDone("users", 0, 0));
+        resumed.finish();
+    }
+}
@@ -0,0 +1,54 @@
+package io.sustc.service.impl;
+
+import io.sustc.dto.RecipeRecord;
+import io.sustc.dto.ReviewRecord;
+import io.sustc.dto.UserRecord;
+
+import java.sql.Timestamp;
+
+/**
+ * Small records for the tests tagged {@code db}. Derived counters are left at zero, so they only match the
+ * relation tables where those are empty.
+ */
+final class ImportFixtures {
+
+    static UserRecord user(long id, long... following) {
+        return UserRecord.builder()
+                .authorId(id)
+                .authorName("user" + id)
+                .gender("Male")
+                .age(30)
+                .followingUsers(following)
+                .followerUsers(new long[0])
+                .password("pw" + id)
+                .build();
+    }
+
+    static RecipeRecord recipe(long id, long authorId, String... ingredients) {
+        RecipeRecord recipe = new RecipeRecord();
+        recipe.setRecipeId(id);
+        recipe.setAuthorId(authorId);
+        recipe.setName("recipe" + id);
+        recipe.setDatePublished(Timestamp.valueOf("2020-01-01 00:00:00"));
+        recipe.setCookTime("PT1H");
+        recipe.setPrepTime("PT10M");
+        recipe.setRecipeCategory("Dessert");
+        recipe.setRecipeIngredientParts(ingredients);
+        return recipe;
+    }
+
+    static ReviewRecord review(long id, long recipeId, long authorId, float rating, long... likes) {
+        return ReviewRecord.builder()
+                .reviewId(id)
+                .recipeId(recipeId)
+                .authorId(authorId)
+                .rating(rating)
+                .review("review" + id)
+                .dateSubmitted(Timestamp.valueOf("2020-01-02 00:00:00"))
+                .likes(likes)
+                .build();
+    }
+
+    private ImportFixtures() {
+    }
+}
@@ -0,0 +1,107 @@
+package io.sustc.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImportSchedulerTest {
+
+    @Test
+    void dependentWaitsForEveryTaskOfTheName() {
+        List<String> done = new CopyOnWriteArrayList<>();
+        try (ImportScheduler scheduler = new ImportScheduler(4)) {
+            scheduler.submit("users", () -> {
+                sleep(100);
+                done.add("users-1");
+            });
+            scheduler.submit("users", () -> done.add("users-2"));
+            scheduler.submit("recipe", () -> done.add("recipe"));
+            scheduler.submit("follows", () -> done.add("follows"), "users");
+            scheduler.submit("review", () -> done.add("review"), "users", "recipe");
+            scheduler.await();
+        }
+
+        assertEquals(5, done.size());
+        int users1 = done.indexOf("users-1");
+        assertTrue(done.indexOf("follows") > users1, done::toString);
+        assertTrue(done.indexOf("review") > users1, done::toString);
+        assertTrue(done.indexOf("review") > done.indexOf("recipe"), done::toString);
+    }
+
+    @Test
+    void independentTasksRunConcurrently() throws InterruptedException {
+        // 两个任务都要等对方开始，串行执行会超时
+        CountDownLatch started = new CountDownLatch(2);
+        AtomicBoolean overlapped = new AtomicBoolean(true);
+        try (ImportScheduler scheduler = new ImportScheduler(2)) {
+            for (String name : List.of("users", "recipe")) {
+                scheduler.submit(name, () -> {
+                    started.countDown();
+                    try {
+                        if (!started.await(5, TimeUnit.SECONDS)) {
+                            overlapped.set(false);
+                        }
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+            }
+            scheduler.await();
+        }
+
+        assertTrue(overlapped.get());
+    }
+
+    @Test
+    void unknownDependencyIsRejected() {
+        try (ImportScheduler scheduler = new ImportScheduler(1)) {
+            assertThrows(IllegalStateException.class, () -> scheduler.submit("follows", () -> {
+            }, "users"));
+        }
+    }
+
+    @Test
+    void failureIsRethrownAndDependentsSkipped() {
+        IllegalArgumentException failure = new IllegalArgumentException("bad record");
+        AtomicBoolean dependentRan = new AtomicBoolean();
+        try (ImportScheduler scheduler = new ImportScheduler(2)) {
+            scheduler.submit("users", () -> {
+                throw failure;
+            });
+            scheduler.submit("follows", () -> dependentRan.set(true), "users");
+
+            assertSame(failure, assertThrows(IllegalArgumentException.class, scheduler::await));
+        }
+        assertFalse(dependentRan.get());
+    }
+
+    @Test
+    void errorIsWrapped() {
+        try (ImportScheduler scheduler = new ImportScheduler(1)) {
+            scheduler.submit("users", () -> {
+                throw new AssertionError("boom");
+            });
+
+            RuntimeException e = assertThrows(RuntimeException.class, scheduler::await);
+            assertTrue(e.getCause() instanceof AssertionError);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package io.sustc.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IngredientDictionaryTest {
+
+    @Test
+    void internAssignsDenseIdsOncePerName() {
+        IngredientDictionary dictionary = new IngredientDictionary();
+
+        assertEquals(1, dictionary.intern("salt"));
+        assertEquals(2, dictionary.intern("sugar"));
+        assertEquals(1, dictionary.intern("salt"));
+        assertEquals(2, dictionary.size());
+        assertEquals(2, dictionary.maxId());
+        assertEquals(2, dictionary.get("sugar"));
+        assertEquals(-1, dictionary.get("pepper"));
+    }
+
+    @Test
+    void putRecordsDatabaseIdsAndMovesTheNextId() {
+        IngredientDictionary dictionary = new IngredientDictionary();
+        dictionary.intern("salt");
+
+        dictionary.put("pepper", 10);
+        dictionary.put("salt", 7);
+
+        assertEquals(7, dictionary.get("salt"));
+        assertEquals(10, dictionary.get("pepper"));
+        assertEquals(11, dictionary.intern("sugar"));
+    }
+
+    @Test
+    void keepsEveryEntryWhileGrowing() {
+        IngredientDictionary dictionary = new IngredientDictionary();
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i + 1, dictionary.intern("ingredient " + i));
+        }
+
+        assertEquals(10_000, dictionary.size());
+        Map<String, Long> entries = new HashMap<>();
+        dictionary.forEach(entries::put);
+        assertEquals(10_000, entries.size());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i + 1, dictionary.get("ingredient " + i));
+            assertEquals(Long.valueOf(i + 1), entries.get("ingredient " + i));
+        }
+    }
+
+    @Test
+    void putAfterCommitWithoutTransactionPutsRightAway() {
+        IngredientDictionary dictionary = new IngredientDictionary();
+
+        dictionary.putAfterCommit("salt", 3);
+
+        assertEquals(3, dictionary.get("salt"));
+    }
+
+    @Test
+    void clearForgetsEverything() {
+        IngredientDictionary dictionary = new IngredientDictionary();
+        dictionary.intern("salt");
+        dictionary.put("sugar", 42);
+
+        dictionary.clear();
+
+        assertEquals(0, dictionary.size());
+        assertEquals(0, dictionary.maxId());
+        assertEquals(-1, dictionary.get("salt"));
+        assertEquals(1, dictionary.intern("sugar"));
+    }
+}
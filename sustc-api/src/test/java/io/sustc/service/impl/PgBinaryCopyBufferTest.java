@@ -0,0 +1,135 @@
+package io.sustc.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class PgBinaryCopyBufferTest {
+
+    private static final String[] COLUMNS = {"id", "name", "at", "n", "r", "b"};
+
+    private Connection conn;
+
+    private CopyManager copyManager;
+
+    private CopyIn copyIn;
+
+    private final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+
+    @BeforeEach
+    void mockCopyApi() throws SQLException {
+        conn = mock(Connection.class);
+        PGConnection pg = mock(PGConnection.class);
+        copyManager = mock(CopyManager.class);
+        copyIn = mock(CopyIn.class);
+        when(conn.unwrap(PGConnection.class)).thenReturn(pg);
+        when(pg.getCopyAPI()).thenReturn(copyManager);
+        when(copyManager.copyIn(anyString())).thenReturn(copyIn);
+        doAnswer(inv -> {
+            byte[] bytes = inv.getArgument(0);
+            int off = inv.getArgument(1);
+            int len = inv.getArgument(2);
+            sent.write(bytes, off, len);
+            return null;
+        }).when(copyIn).writeToCopy(any(byte[].class), anyInt(), anyInt());
+    }
+
+    @Test
+    void flushSendsOneBinaryCopy() throws SQLException {
+        when(copyIn.endCopy()).thenReturn(2L);
+        PgBinaryCopyBuffer buffer = new PgBinaryCopyBuffer("t", COLUMNS);
+
+        buffer.addRow(1L, "é", Timestamp.valueOf("2000-01-01 00:00:01"), 7, 1.5f, true);
+        buffer.addRow(null, null, null, null, null, null);
+
+        ByteBuffer rows = ByteBuffer.allocate(128);
+        rows.putShort((short) 6)
+                .putInt(8).putLong(1)
+                .putInt(2).put((byte) 0xC3).put((byte) 0xA9)
+                // 2000-01-01 起的微秒数
+                .putInt(8).putLong(1_000_000)
+                .putInt(4).putInt(7)
+                .putInt(4).putFloat(1.5f)
+                .putInt(1).put((byte) 1);
+        rows.putShort((short) 6);
+        for (int i = 0; i < 6; i++) {
+            rows.putInt(-1);
+        }
+        assertEquals(rows.position(), buffer.size());
+        assertEquals(2, buffer.rowCount());
+
+        assertEquals(2, buffer.flush(conn));
+
+        verify(copyManager).copyIn("COPY t (id, name, at, n, r, b) FROM STDIN (FORMAT BINARY)");
+        ByteBuffer expected = ByteBuffer.allocate(11 + 8 + rows.position() + 2);
+        expected.put(new byte[]{'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0})
+                .put(new byte[8])
+                .put(rows.array(), 0, rows.position())
+                .putShort((short) -1);
+        assertArrayEquals(expected.array(), sent.toByteArray());
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.rowCount());
+    }
+
+    @Test
+    void flushOfEmptyBufferDoesNothing() throws SQLException {
+        PgBinaryCopyBuffer buffer = new PgBinaryCopyBuffer("t", COLUMNS);
+
+        assertEquals(0, buffer.flush(conn));
+
+        verifyNoInteractions(conn);
+    }
+
+    @Test
+    void failedCopyIsCancelledAndBufferCleared() throws SQLException {
+        when(copyIn.endCopy()).thenThrow(new SQLException("duplicate key"));
+        when(copyIn.isActive()).thenReturn(true);
+        PgBinaryCopyBuffer buffer = new PgBinaryCopyBuffer("t", "id");
+        buffer.addRow(1L);
+
+        assertThrows(SQLException.class, () -> buffer.flush(conn));
+
+        verify(copyIn).cancelCopy();
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.rowCount());
+    }
+
+    @Test
+    void rejectsRowsThatDoNotFitTheColumns() {
+        PgBinaryCopyBuffer buffer = new PgBinaryCopyBuffer("t", "id", "name");
+
+        assertThrows(IllegalArgumentException.class, () -> buffer.addRow(1L));
+        assertThrows(IllegalArgumentException.class, () -> buffer.addRow(1L, 2.5));
+    }
+
+    @Test
+    void growsPastItsInitialCapacity() {
+        PgBinaryCopyBuffer buffer = new PgBinaryCopyBuffer("t", "name");
+        String text = "x".repeat(1000);
+        for (int i = 0; i < 200; i++) {
+            buffer.addRow(text);
+        }
+
+        assertEquals(200 * (2 + 4 + 1000), buffer.size());
+    }
+}
@@ -0,0 +1,97 @@
+package io.sustc.service.impl;
+
+import io.sustc.dto.RecipeRecord;
+import io.sustc.dto.ReviewRecord;
+import io.sustc.dto.UserRecord;
+import io.sustc.service.DatabaseService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static io.sustc.service.impl.ImportFixtures.recipe;
+import static io.sustc.service.impl.ImportFixtures.review;
+import static io.sustc.service.impl.ImportFixtures.user;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The streaming import, and so {@link CopyPipeline}, with the smallest budget it accepts, so every table is
+ * sent in several chunks.
+ */
+@Tag("db")
+@SpringJUnitConfig(DatabaseTestConfig.class)
+class StreamingImportTest {
+
+    private static final int USERS = 5000;
+
+    private static final int RECIPES = 2000;
+
+    private static final int REVIEWS = 20000;
+
+    @Autowired
+    private DatabaseService databaseService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void drop() {
+        databaseService.drop();
+    }
+
+    @Test
+    void streamsEveryRowInChunks() {
+        databaseService.importData(reviews(), users(), recipes(), CopyPipeline.minimumBudget());
+
+        assertEquals(USERS, count("users"));
+        // 每个用户关注后面两个用户，重复的关注只算一次
+        assertEquals(2L * (USERS - 2) + 1, count("follows"));
+        assertEquals(RECIPES, count("recipe"));
+        assertEquals(10, count("ingredient"));
+        assertEquals(3L * RECIPES, count("has_ingredient"));
+        assertEquals(REVIEWS, count("review"));
+        assertEquals(REVIEWS, count("likes_review"));
+        assertEquals(0, count("""
+                has_ingredient h LEFT JOIN ingredient i ON i.ingredient_id = h.ingredient_id
+                WHERE i.ingredient_id IS NULL
+                """));
+        // 食材 id 由客户端分配，序列要跳过它们
+        assertEquals(11L, jdbcTemplate.queryForObject("SELECT nextval(pg_get_serial_sequence('ingredient', 'ingredient_id'))", Long.class));
+    }
+
+    @Test
+    void failingStreamStopsTheImport() {
+        Stream<UserRecord> failing = Stream.concat(users().limit(100), Stream.generate(() -> {
+            throw new IllegalStateException("bad csv line");
+        }));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> databaseService.importData(reviews(), failing, recipes(), CopyPipeline.minimumBudget()));
+        assertEquals("bad csv line", e.getMessage());
+    }
+
+    private static Stream<UserRecord> users() {
+        return LongStream.rangeClosed(1, USERS).mapToObj(id -> id <= USERS - 2
+                ? user(id, id + 1, id + 2, id + 1)
+                : id == USERS - 1 ? user(id, id + 1) : user(id));
+    }
+
+    private static Stream<RecipeRecord> recipes() {
+        return LongStream.rangeClosed(1, RECIPES).mapToObj(id -> recipe(id, id % USERS + 1,
+                "ingredient" + id % 10, "ingredient" + (id + 1) % 10, "ingredient" + (id + 2) % 10, "ingredient" + id % 10));
+    }
+
+    private static Stream<ReviewRecord> reviews() {
+        return LongStream.rangeClosed(1, REVIEWS).mapToObj(id -> review(id, id % RECIPES + 1, id % USERS + 1, id % 5 + 1, (id * 7) % USERS + 1));
+    }
+
+    private long count(String from) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + from, Long.class);
+    }
+}
@@ -0,0 +1,43 @@
+package io.sustc.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TimeFieldsTest {
+
+    @Test
+    void totalTimeAddsBothDurations() {
+        assertEquals("PT3H35M", TimeFields.calculateTotalTime("PT3H", "PT35M"));
+        assertEquals("PT45M", TimeFields.calculateTotalTime("PT45M", ""));
+        assertEquals("PT10M", TimeFields.calculateTotalTime(null, "PT10M"));
+    }
+
+    @Test
+    void zeroOrUnparsableTotalTimeIsNull() {
+        assertNull(TimeFields.calculateTotalTime("", null));
+        assertNull(TimeFields.calculateTotalTime("PT0M", "PT0S"));
+        assertNull(TimeFields.calculateTotalTime("3 hours", "PT35M"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"%d-05-17", "05/17/%d", "%d/05/17", "%d-05-17 08:30:00", "05/17/%d 08:30:00"})
+    void ageIsReadInEveryPattern(String pattern) {
+        // 以今年为基准，测试结果不随日期变化
+        int year = LocalDate.now().getYear() - 30;
+        int expected = LocalDate.now().isBefore(LocalDate.of(year + 30, 5, 17)) ? 29 : 30;
+
+        assertEquals(expected, TimeFields.calculateAge(pattern.formatted(year)));
+    }
+
+    @Test
+    void unknownBirthdayPatternIsNull() {
+        assertNull(TimeFields.calculateAge("17.05.1990"));
+        assertNull(TimeFields.calculateAge("1990-13-01"));
+    }
+}
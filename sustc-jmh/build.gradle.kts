@@ -0,0 +1,36 @@
+plugins {
+    java
+    alias(libs.plugins.spring.dependencyManagement)
+    alias(libs.plugins.lombok)
+    alias(libs.plugins.jmh)
+}
+
+dependencyManagement {
+    imports {
+        mavenBom("org.springframework.boot:spring-boot-dependencies:${libs.plugins.spring.boot.get().version.requiredVersion}")
+    }
+}
+
+dependencies {
+    jmh(project(":sustc-api"))
+    // CSV 解析器和数据读取都在 runner 里
+    jmh(project(":sustc-runner"))
+    jmh("org.springframework.boot:spring-boot-starter-jdbc")
+    jmh("org.postgresql:postgresql")
+    jmh("com.opencsv:opencsv:5.7.1")
+}
+
+// e.g. ./gradlew :sustc-jmh:jmh -Pjmh.includes=ServiceBenchmark.login -Pjmh.fork=1
+jmh {
+    warmupIterations.set(5)
+    warmup.set("1s")
+    iterations.set(5)
+    timeOnIteration.set("2s")
+    fork.set(findProperty("jmh.fork")?.toString()?.toInt() ?: 2)
+    // gc 分析器报告每次调用的分配字节数
+    profilers.set(listOf("gc"))
+    findProperty("jmh.includes")?.let { includes.set(listOf(it.toString())) }
+    jvmArgsAppend.set(listOf("-Dsustc.jmh.data=$rootDir/sustc-runner/data/csv"))
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("reports/jmh/results.json"))
+}
@@ -0,0 +1,105 @@
+package io.sustc.jmh;
+
+import io.sustc.csv.CsvSource;
+import io.sustc.dto.AuthInfo;
+import io.sustc.dto.RecipeRecord;
+import io.sustc.dto.ReviewRecord;
+import io.sustc.dto.UserRecord;
+import io.sustc.service.DatabaseService;
+import io.sustc.service.RecipeService;
+import io.sustc.service.ReviewService;
+import io.sustc.service.UserService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The services, backed by a database seeded from the {@code *_head300.csv} sample files, shared by all threads of
+ * a trial.
+ * <p>
+ * The sample files are cut from the full dataset, so they refer to users, recipes and reviews they do not contain.
+ * Those references are dropped before the import to keep the foreign keys satisfied.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+
+    AnnotationConfigApplicationContext context;
+
+    UserService userService;
+
+    RecipeService recipeService;
+
+    ReviewService reviewService;
+
+    /**
+     * Credentials of every imported user that is not deleted.
+     */
+    AuthInfo[] auths;
+
+    long[] recipeIds;
+
+    /**
+     * Reviews with their authors, for picking a review the liking user did not write.
+     */
+    ReviewRecord[] reviews;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Path dir = Paths.get(System.getProperty("sustc.jmh.data", "sustc-runner/data/csv"));
+        List<UserRecord> users = CsvSource.USERS.readAll(dir.resolve("users_head300.csv"));
+        List<RecipeRecord> recipes = CsvSource.RECIPES.readAll(dir.resolve("recipes_head300.csv"));
+        List<ReviewRecord> reviewRecords = CsvSource.REVIEWS.readAll(dir.resolve("reviews_head300.csv"));
+
+        // 样例文件第一行是 #TYPE，真正的表头行会被解析成一条 id 为 0 的记录
+        users.removeIf(u -> u.getAuthorId() <= 0);
+        recipes.removeIf(r -> r.getRecipeId() <= 0);
+        reviewRecords.removeIf(r -> r.getReviewId() <= 0);
+
+        Set<Long> userIds = users.stream().map(UserRecord::getAuthorId).collect(Collectors.toSet());
+        users.forEach(u -> {
+            u.setFollowingUsers(only(u.getFollowingUsers(), userIds));
+            u.setFollowerUsers(only(u.getFollowerUsers(), userIds));
+        });
+        recipes.removeIf(r -> !userIds.contains(r.getAuthorId()));
+        Set<Long> recipeIdSet = recipes.stream().map(RecipeRecord::getRecipeId).collect(Collectors.toSet());
+        reviewRecords.removeIf(r -> !userIds.contains(r.getAuthorId()) || !recipeIdSet.contains(r.getRecipeId()));
+        reviewRecords.forEach(r -> r.setLikes(only(r.getLikes(), userIds)));
+
+        context = new AnnotationConfigApplicationContext(ServiceContext.class);
+        DatabaseService databaseService = context.getBean(DatabaseService.class);
+        databaseService.drop();
+        databaseService.importData(reviewRecords, users, recipes);
+        userService = context.getBean(UserService.class);
+        recipeService = context.getBean(RecipeService.class);
+        reviewService = context.getBean(ReviewService.class);
+
+        auths = users.stream()
+                .filter(u -> !u.isDeleted())
+                .map(u -> new AuthInfo(u.getAuthorId(), u.getPassword()))
+                .toArray(AuthInfo[]::new);
+        recipeIds = recipes.stream().mapToLong(RecipeRecord::getRecipeId).toArray();
+        reviews = reviewRecords.toArray(ReviewRecord[]::new);
+        if (auths.length < 2 || recipeIds.length == 0 || reviews.length == 0) {
+            throw new IllegalStateException("Too little sample data left in " + dir);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private static long[] only(long[] ids, Set<Long> allowed) {
+        return ids == null ? null : Arrays.stream(ids).filter(allowed::contains).toArray();
+    }
+}
@@ -0,0 +1,103 @@
+package io.sustc.jmh;
+
+import io.sustc.csv.CsvSource;
+import io.sustc.csv.FieldParsers;
+import io.sustc.csv.LegacyFieldParsers;
+import io.sustc.csv.MappedCsvParser;
+import io.sustc.dto.RecipeRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * The CSV parsers on the {@code *_head300.csv} sample files: the scanning field parsers against the legacy ones,
+ * each over every value of a column kind, and whole-file parsing with OpenCSV against {@link MappedCsvParser}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CsvParserBenchmark {
+
+    private Path recipesFile;
+
+    private final List<String> idLists = new ArrayList<>();
+
+    private final List<String> ingredientLists = new ArrayList<>();
+
+    private final List<String> timestamps = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws Exception {
+        Path dir = Paths.get(System.getProperty("sustc.jmh.data", "sustc-runner/data/csv"));
+        recipesFile = dir.resolve("recipes_head300.csv");
+        // 与 db field-bench 取同样的列
+        collect(dir.resolve("users_head300.csv"), idLists, 6, 7);
+        collect(dir.resolve("reviews_head300.csv"), idLists, 8);
+        collect(recipesFile, ingredientLists, 10);
+        collect(recipesFile, timestamps, 7);
+        collect(dir.resolve("reviews_head300.csv"), timestamps, 6, 7);
+    }
+
+    @Benchmark
+    public void idListsScanning(Blackhole bh) {
+        idLists.forEach(s -> bh.consume(FieldParsers.parseLongList(s)));
+    }
+
+    @Benchmark
+    public void idListsLegacy(Blackhole bh) {
+        idLists.forEach(s -> bh.consume(LegacyFieldParsers.parseCsvLongList(s)));
+    }
+
+    @Benchmark
+    public void ingredientListsScanning(Blackhole bh) {
+        ingredientLists.forEach(s -> bh.consume(FieldParsers.parseStringList(s)));
+    }
+
+    @Benchmark
+    public void ingredientListsLegacy(Blackhole bh) {
+        ingredientLists.forEach(s -> bh.consume(LegacyFieldParsers.parseCsvList(s)));
+    }
+
+    @Benchmark
+    public void timestampsScanning(Blackhole bh) {
+        timestamps.forEach(s -> bh.consume(FieldParsers.parseTimestamp(s)));
+    }
+
+    @Benchmark
+    public void timestampsLegacy(Blackhole bh) {
+        timestamps.forEach(s -> bh.consume(LegacyFieldParsers.parseTimestamp(s)));
+    }
+
+    @Benchmark
+    public List<RecipeRecord> recipesOpenCsv() throws Exception {
+        return CsvSource.RECIPES.readAll(recipesFile);
+    }
+
+    @Benchmark
+    public List<RecipeRecord> recipesMapped() throws Exception {
+        return CsvSource.RECIPES.readAllParallel(recipesFile);
+    }
+
+    private static void collect(Path file, List<String> sink, int... indexes) throws Exception {
+        for (String[] fields : MappedCsvParser.parse(file, 1, Function.identity(), ForkJoinPool.commonPool())) {
+            for (int index : indexes) {
+                if (index < fields.length) {
+                    sink.add(fields[index]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package io.sustc.jmh;
+
+import io.sustc.util.TimeFields;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The pure-CPU helpers of the services, see {@link TimeFields}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HelperBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Times {
+
+        /**
+         * Cook and prep time, separated by {@code |}.
+         */
+        @Param({"PT3H|PT35M", "PT45M|", "|"})
+        public String times;
+
+        String cook;
+
+        String prep;
+
+        @Setup
+        public void setUp() {
+            String[] parts = times.split("\\|", -1);
+            cook = parts[0];
+            prep = parts[1];
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Birthday {
+
+        /**
+         * One date per pattern {@link TimeFields#calculateAge} tries, so the later ones pay for the failed attempts before them.
+         */
+        @Param({"1990-05-17", "05/17/1990", "1990/05/17", "1990-05-17 08:30:00", "05/17/1990 08:30:00"})
+        public String birthday;
+    }
+
+    @Benchmark
+    public String calculateTotalTime(Times in) {
+        return TimeFields.calculateTotalTime(in.cook, in.prep);
+    }
+
+    @Benchmark
+    public Integer calculateAge(Birthday in) {
+        return TimeFields.calculateAge(in.birthday);
+    }
+}
@@ -0,0 +1,69 @@
+package io.sustc.jmh;
+
+import io.sustc.dto.AuthInfo;
+import io.sustc.dto.FeedItem;
+import io.sustc.dto.PageResult;
+import io.sustc.dto.RecipeRecord;
+import io.sustc.dto.ReviewRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the hot service methods against the seeded sample database.
+ * Each thread walks through the sample users, recipes and reviews in turn, so calls do not all hit one cached row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ServiceBenchmark {
+
+    private int next;
+
+    @Benchmark
+    public long login(BenchmarkDatabase db) {
+        return db.userService.login(db.auths[next++ % db.auths.length]);
+    }
+
+    @Benchmark
+    public RecipeRecord getRecipeById(BenchmarkDatabase db) {
+        return db.recipeService.getRecipeById(db.recipeIds[next++ % db.recipeIds.length]);
+    }
+
+    @Benchmark
+    public PageResult<RecipeRecord> searchRecipes(BenchmarkDatabase db) {
+        return db.recipeService.searchRecipes("chicken", null, 3.0, 1, 10, "rating_desc");
+    }
+
+    @Benchmark
+    public PageResult<FeedItem> feed(BenchmarkDatabase db) {
+        return db.userService.feed(db.auths[next++ % db.auths.length], 1, 10, null);
+    }
+
+    @Benchmark
+    public PageResult<ReviewRecord> listByRecipe(BenchmarkDatabase db) {
+        return db.reviewService.listByRecipe(db.recipeIds[next++ % db.recipeIds.length], 1, 10, "likes_desc");
+    }
+
+    /**
+     * Likes a review and takes the like back, so every call inserts a row instead of hitting the
+     * {@code ON CONFLICT} path after the first round, and the table does not grow over the run.
+     */
+    @Benchmark
+    public long likeReview(BenchmarkDatabase db) {
+        int i = next++;
+        ReviewRecord review = db.reviews[i % db.reviews.length];
+        AuthInfo auth = db.auths[i % db.auths.length];
+        if (auth.getAuthorId() == review.getAuthorId()) {
+            auth = db.auths[(i + 1) % db.auths.length];
+        }
+        long likes = db.reviewService.likeReview(auth, review.getReviewId());
+        db.reviewService.unlikeReview(auth, review.getReviewId());
+        return likes;
+    }
+}
@@ -0,0 +1,50 @@
+package io.sustc.jmh;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import javax.sql.DataSource;
+
+/**
+ * The service beans and what they need, without Spring Boot: no web server, no shell, no auto-configuration.
+ * <p>
+ * The database is taken from the environment variables {@code SUSTC_JMH_URL}, {@code SUSTC_JMH_USERNAME} and
+ * {@code SUSTC_JMH_PASSWORD}, defaulting to the runner's {@code application.yml}. Environment variables reach the
+ * forked benchmark JVMs as they are. The database is dropped and re-seeded by every fork.
+ */
+@Configuration
+@EnableTransactionManagement
+@ComponentScan("io.sustc.service.impl")
+public class ServiceContext {
+
+    @Bean(destroyMethod = "close")
+    DataSource dataSource() {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(env("SUSTC_JMH_URL", "jdbc:postgresql://localhost:5432/sustc"));
+        config.setUsername(env("SUSTC_JMH_USERNAME", "sustc"));
+        config.setPassword(env("SUSTC_JMH_PASSWORD", "sustc"));
+        return new HikariDataSource(config);
+    }
+
+    @Bean
+    JdbcTemplate jdbcTemplate(DataSource dataSource) {
+        return new JdbcTemplate(dataSource);
+    }
+
+    @Bean
+    PlatformTransactionManager transactionManager(DataSource dataSource) {
+        return new DataSourceTransactionManager(dataSource);
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+}
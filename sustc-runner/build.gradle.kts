@@ -14,10 +14,12 @@ dependencies {
             .takeIf { !it.isEmpty } ?: project(":sustc-api")
     )
     runtimeOnly("org.postgresql:postgresql")
+    implementation("org.springframework.boot:spring-boot-starter-jdbc")
 
     implementation("org.apache.commons:commons-lang3")
     implementation("com.fasterxml.jackson.core:jackson-databind")
     implementation("org.furyio:fury-core:0.3.1")
+    implementation("org.hdrhistogram:HdrHistogram:2.1.12")
 
     implementation(platform("org.springframework.shell:spring-shell-dependencies:2.1.13"))
     implementation("org.springframework.shell:spring-shell-starter")
@@ -25,6 +27,24 @@ dependencies {
 
     // 添加OpenCSV依赖
     implementation("com.opencsv:opencsv:5.7.1")
+
+    testImplementation("org.springframework.boot:spring-boot-starter-test")
+}
+
+tasks.test {
+    useJUnitPlatform {
+        excludeTags("db")
+    }
+}
+
+tasks.register<Test>("dbTest") {
+    group = "verification"
+    description = "Run the tests that need a PostgreSQL database (tagged db), see SUSTC_TEST_URL in the README"
+    testClassesDirs = sourceSets["test"].output.classesDirs
+    classpath = sourceSets["test"].runtimeClasspath
+    useJUnitPlatform {
+        includeTags("db")
+    }
 }
 
 tasks.withType<JavaExec> {
@@ -5,12 +5,18 @@ import io.fury.Fury;
 import io.fury.ThreadSafeFury;
 import io.fury.config.CompatibleMode;
 import io.fury.config.Language;
+import io.sustc.dto.*;
+import io.sustc.service.DatabaseService;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 import org.springframework.validation.annotation.Validated;
 
+import java.time.Duration;
+import java.util.List;
+
 @Configuration
 @ConfigurationProperties(prefix = "benchmark")
 @Validated
@@ -34,6 +40,110 @@ public class BenchmarkConfig {
      */
     private boolean studentMode = false;
 
+    /**
+     * Import modes timed by the import step, in order.
+     * Both engines by default, so the report compares them. Each one imports the whole dataset again, as the tables
+     * are dropped between two modes, and the data left behind comes from the last one.
+     */
+    private List<DatabaseService.ImportMode> importModes = List.of(DatabaseService.ImportMode.INSERT, DatabaseService.ImportMode.COPY);
+
+    /**
+     * Memory budget of the streaming import, e.g. {@code 64MB}.
+     * If specified, the import step also times the streaming import after the modes above.
+     */
+    private DataSize importMemoryBudget;
+
+    /**
+     * Number of workers each test step spreads its cases over.
+     * With 1, the cases run one after another and the steps measure single-client latency. With more, they measure
+     * throughput under contention, and cases that depend on an earlier case's effect may fail depending on timing.
+     */
+    private int threads = 1;
+
+    /**
+     * Run the workers of the test steps on virtual threads. Needs Java 21, platform threads are used otherwise.
+     */
+    private boolean virtualThreads = false;
+
+    /**
+     * Warmup runs of every repeatable step, overriding {@link BenchmarkStep#warmup()}.
+     */
+    private Integer warmupIterations;
+
+    /**
+     * Measured runs of every repeatable step, overriding {@link BenchmarkStep#iterations()}.
+     * Steps that change the data restore a checkpoint of the database before each run after the first.
+     */
+    private Integer measurementIterations;
+
+    /**
+     * How the database is saved before a step that changes the data runs more than once, and restored between runs.
+     */
+    private DatabaseCheckpoint.Strategy checkpointStrategy = DatabaseCheckpoint.Strategy.TABLE_COPY;
+
+    /**
+     * Attach the full latency histogram of each service method to the report, not just its percentiles.
+     */
+    private boolean latencyHistograms = false;
+
+    /**
+     * Attach the deltas of the PostgreSQL statistics views over each step to the report.
+     * Statements are only reported if the {@code pg_stat_statements} extension is installed in the database.
+     */
+    private boolean serverStats = false;
+
+    /**
+     * Number of statements, by total execution time, reported for each step.
+     */
+    private int serverStatsTopStatements = 10;
+
+    /**
+     * Wait before reading the statistics after a trial. Backends report their table and database counters a
+     * little after each transaction (up to {@code 1s}, and longer when idle on PostgreSQL 15+), so the counters of
+     * the last moments of a trial may be missed with a shorter wait.
+     */
+    private Duration serverStatsSettle = Duration.ofSeconds(1);
+
+    /**
+     * Record each step with Java Flight Recorder into a {@code .jfr} file next to the report, and attach a digest
+     * of the recording (hot methods, allocation sites, GC pauses) to the step's result.
+     */
+    private boolean flightRecording = false;
+
+    /**
+     * JFR settings the steps are recorded with, {@code profile} or {@code default}, or the path of a {@code .jfc} file.
+     */
+    private String flightRecordingSettings = "profile";
+
+    /**
+     * Number of entries in each list of the digest.
+     */
+    private int flightRecordingTop = 10;
+
+    /**
+     * Reports of a known-good version to compare this run against when it ends: report files or directories of
+     * them, comma separated. The same as {@code benchmark compare --baseline}.
+     */
+    private String baselineReport;
+
+    /**
+     * Smallest relative change of a median timing that counts as a regression or an improvement.
+     */
+    private double regressionThreshold = 0.10;
+
+    /**
+     * Significance level of the test telling a change from noise.
+     */
+    private double regressionAlpha = 0.05;
+
+    /**
+     * Drop of the median pass count of a step tolerated before it counts as a regression.
+     */
+    private long passRegressionThreshold = 0;
+
+    /**
+     * Fury the existing single-object .ser files were written with; {@link ChunkedSerializer} still reads them with it.
+     */
     @Bean
     ThreadSafeFury fury() {
         return Fury.builder()
@@ -45,6 +155,36 @@ public class BenchmarkConfig {
                 .buildThreadSafeFury();
     }
 
+    @Bean
+    ChunkedSerializer chunkedSerializer(ThreadSafeFury fury) {
+        return new ChunkedSerializer(chunkFury(), fury);
+    }
+
+    /**
+     * Fury for the chunked data files. The DTO graphs are acyclic and free of shared references, so reference
+     * tracking is off, and the DTO classes are registered so they are written as small ids instead of names.
+     * Registration order is part of the format. Other classes (JDK collections, map entries) still work unregistered.
+     * Like the legacy Fury it writes field metadata, so files stay readable after a DTO gains or loses a field.
+     */
+    static ThreadSafeFury chunkFury() {
+        ThreadSafeFury fury = Fury.builder()
+                .requireClassRegistration(false)
+                .withLanguage(Language.JAVA)
+                .withRefTracking(false)
+                .withCompatibleMode(CompatibleMode.COMPATIBLE)
+                .withAsyncCompilation(true)
+                .buildThreadSafeFury();
+        fury.register(UserRecord.class);
+        fury.register(RecipeRecord.class);
+        fury.register(ReviewRecord.class);
+        fury.register(AuthInfo.class);
+        fury.register(FeedItem.class);
+        fury.register(PageResult.class);
+        fury.register(RegisterUserReq.class);
+        fury.register(RegisterUserReq.Gender.class);
+        return fury;
+    }
+
     @Bean
     ObjectMapper objectMapper() {
         return new ObjectMapper();
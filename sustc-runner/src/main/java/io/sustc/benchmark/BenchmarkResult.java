@@ -1,7 +1,9 @@
 package io.sustc.benchmark;
 
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -9,6 +11,7 @@ import java.util.concurrent.atomic.AtomicLong;
  * If any of the fields is null, it means the tasks won't be evaluated by this term.
  */
 @Data
+@NoArgsConstructor
 public class BenchmarkResult {
 
     private Integer id;
@@ -17,6 +20,42 @@ public class BenchmarkResult {
 
     private Long elapsedTime;
 
+    /**
+     * Elapsed time of each import mode, only filled by the import step.
+     */
+    private Map<String, Long> modeElapsedTime;
+
+    /**
+     * Number of workers the cases were spread over, only filled by the test steps.
+     */
+    private Integer threads;
+
+    /**
+     * Cases run per second, only filled by the test steps.
+     */
+    private Double throughput;
+
+    /**
+     * Latency of the service calls made by the step, by {@code Service#method}.
+     */
+    private Map<String, LatencySummary> latency;
+
+    /**
+     * Elapsed times of the measured trials when the step ran more than once.
+     * {@link #elapsedTime} is then their rounded mean, and {@link #passCnt} that of the last trial.
+     */
+    private TrialSummary trials;
+
+    /**
+     * What the database server did during the measured trials, only filled with {@code benchmark.server-stats} on.
+     */
+    private ServerStats serverStats;
+
+    /**
+     * Digest of the flight recording of the measured trials, only filled with {@code benchmark.flight-recording} on.
+     */
+    private FlightSummary flight;
+
     public BenchmarkResult(Long elapsedTime) {
         this.elapsedTime = elapsedTime;
     }
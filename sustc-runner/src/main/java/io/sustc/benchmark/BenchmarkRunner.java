@@ -13,12 +13,17 @@ import org.springframework.context.annotation.Profile;
 import org.springframework.shell.ShellApplicationRunner;
 import org.springframework.stereotype.Component;
 
+import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -43,6 +48,18 @@ public class BenchmarkRunner implements ShellApplicationRunner {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private LatencyRecorder latencyRecorder;
+
+    @Autowired
+    private DatabaseCheckpoint checkpoint;
+
+    @Autowired
+    private ServerStatsRecorder serverStatsRecorder;
+
+    @Autowired
+    private FlightRecorder flightRecorder;
+
     @Override
     @SneakyThrows
     public void run(ApplicationArguments args) {
@@ -70,27 +87,7 @@ public class BenchmarkRunner implements ShellApplicationRunner {
                                 method.getName()
                         )
                 ))
-                .map(method -> {
-                    val future = executor.submit(() -> (BenchmarkResult) method.invoke(benchmarkService));
-                    try {
-                        val res = future.get(method.getAnnotation(BenchmarkStep.class).timeout(), TimeUnit.MINUTES);
-                        if (Objects.nonNull(res)) {
-                            res.setId(method.getAnnotation(BenchmarkStep.class).order());
-                        }
-                        return res;
-                    } catch (TimeoutException e) {
-                        log.warn("Task timeout, cancelling it", e);
-                        future.cancel(true);
-                        if (method.getReturnType().equals(Void.TYPE)) {
-                            return null;
-                        }
-                        val res = new BenchmarkResult(-1L);
-                        res.setId(method.getAnnotation(BenchmarkStep.class).order());
-                        return res;
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
-                    }
-                })
+                .map(method -> runStep(executor, method, reportFile))
                 .filter(Objects::nonNull)
                 .peek(result -> log.info("{}", result))
                 .forEach(res -> {
@@ -104,5 +101,120 @@ public class BenchmarkRunner implements ShellApplicationRunner {
 
         executor.shutdownNow();
         objectMapper.writeValue(reportFile, results);
+
+        if (StringUtils.isNotBlank(benchmarkConfig.getBaselineReport())) {
+            try {
+                val comparator = new ReportComparator(benchmarkConfig.getRegressionThreshold(),
+                        benchmarkConfig.getRegressionAlpha(), benchmarkConfig.getPassRegressionThreshold());
+                val rows = comparator.compare(
+                        ReportComparator.load(objectMapper, benchmarkConfig.getBaselineReport()), List.of(results));
+                log.info("Compared with {}:\n{}", benchmarkConfig.getBaselineReport(), ReportComparator.format(rows));
+                if (ReportComparator.regressed(rows)) {
+                    log.warn("Regressions against the baseline, see above");
+                }
+            } catch (IOException e) {
+                log.error("Failed to compare with the baseline", e);
+            }
+        }
+    }
+
+    /**
+     * Runs the warmup and measured trials of a step.
+     * Steps that are not read-only start every trial after the first from a checkpoint taken before it.
+     *
+     * @return the result of the last trial, carrying the mean elapsed time when there were several;
+     * {@code null} for steps without a result
+     */
+    private BenchmarkResult runStep(ExecutorService executor, Method method, File reportFile) {
+        val step = method.getAnnotation(BenchmarkStep.class);
+        // 录制文件和报告放在一起：benchmark-xxx.json -> benchmark-xxx-step3.jfr
+        val flightFile = reportFile.toPath().resolveSibling(
+                reportFile.getName().replaceFirst("\\.json$", "") + "-step" + step.order() + ".jfr");
+        int warmup = step.repeatable() ? Math.max(0, ObjectUtils.defaultIfNull(benchmarkConfig.getWarmupIterations(), step.warmup())) : 0;
+        int iterations = step.repeatable() ? Math.max(1, ObjectUtils.defaultIfNull(benchmarkConfig.getMeasurementIterations(), step.iterations())) : 1;
+        boolean restore = !step.readOnly() && warmup + iterations > 1;
+
+        if (restore) {
+            checkpoint.save();
+        }
+        try {
+            val elapsedTimes = new ArrayList<Long>();
+            BenchmarkResult res = null;
+            for (int i = 0; i < warmup + iterations; i++) {
+                if (restore && i > 0) {
+                    checkpoint.restore();
+                }
+                // 只记录正式测量的那几轮的延迟
+                if (i == warmup) {
+                    latencyRecorder.start();
+                    serverStatsRecorder.start();
+                    flightRecorder.start("step-" + step.order());
+                }
+                if (i >= warmup) {
+                    serverStatsRecorder.beforeTrial();
+                }
+                val future = executor.submit(() -> (BenchmarkResult) method.invoke(benchmarkService));
+                try {
+                    res = future.get(step.timeout(), TimeUnit.MINUTES);
+                } catch (TimeoutException e) {
+                    log.warn("Task timeout, cancelling it", e);
+                    future.cancel(true);
+                    FlightSummary flight = null;
+                    if (i >= warmup) {
+                        latencyRecorder.stop(0, false);
+                        serverStatsRecorder.stop();
+                        flight = flightRecorder.stop(flightFile);
+                    }
+                    if (method.getReturnType().equals(Void.TYPE)) {
+                        return null;
+                    }
+                    res = new BenchmarkResult(-1L);
+                    res.setId(step.order());
+                    res.setFlight(flight);
+                    return res;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                if (i >= warmup) {
+                    serverStatsRecorder.afterTrial();
+                }
+                if (i < warmup) {
+                    log.info("Warmup {}/{}: {}", i + 1, warmup, res);
+                } else if (res != null && res.getElapsedTime() != null) {
+                    elapsedTimes.add(res.getElapsedTime());
+                    if (iterations > 1) {
+                        log.info("Trial {}/{}: {}", i - warmup + 1, iterations, res);
+                    }
+                }
+            }
+
+            val latency = latencyRecorder.stop(
+                    elapsedTimes.stream().mapToLong(Long::longValue).sum(),
+                    benchmarkConfig.isLatencyHistograms());
+            val serverStats = serverStatsRecorder.stop();
+            val flight = flightRecorder.stop(flightFile);
+            if (Objects.nonNull(res)) {
+                res.setId(step.order());
+                if (elapsedTimes.size() > 1) {
+                    val trials = TrialSummary.of(warmup, elapsedTimes);
+                    res.setTrials(trials);
+                    res.setElapsedTime(Math.round(trials.getMean()));
+                }
+                if (!latency.isEmpty()) {
+                    res.setLatency(latency);
+                }
+                res.setServerStats(serverStats);
+                res.setFlight(flight);
+            }
+            return res;
+        } finally {
+            // 正常结束时三者都已停过，这里什么也不做；步骤抛异常时要在这里停掉，否则 JFR 录制会一直开着
+            latencyRecorder.stop(0, false);
+            serverStatsRecorder.stop();
+            flightRecorder.stop(flightFile);
+            if (restore) {
+                checkpoint.discard();
+            }
+        }
     }
 }
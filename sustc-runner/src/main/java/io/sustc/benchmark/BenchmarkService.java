@@ -1,8 +1,9 @@
 package io.sustc.benchmark;
 
-import io.fury.ThreadSafeFury;
 import io.sustc.dto.*;
 import io.sustc.service.*;
+import io.sustc.snapshot.Snapshot;
+import io.sustc.snapshot.SnapshotSchema;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
@@ -14,7 +15,13 @@ import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
@@ -36,7 +43,7 @@ public class BenchmarkService {
     private ReviewService reviewService;
 
     @Autowired
-    private ThreadSafeFury fury;
+    private ChunkedSerializer serializer;
 
 //    private final Map<Long, String> sentDanmu = new ConcurrentHashMap<>();
 //
@@ -44,7 +51,7 @@ public class BenchmarkService {
 //
 //    private final Set<Long> registeredUser = new ConcurrentSkipListSet<>();
 
-    @BenchmarkStep(order = 0, description = "Drop all the tables")
+    @BenchmarkStep(order = 0, repeatable = false, description = "Drop all the tables")
     public void drop() {
         if (!config.isStudentMode()) {
             return;
@@ -53,30 +60,97 @@ public class BenchmarkService {
         databaseService.drop();
     }
 
-    @BenchmarkStep(order = 1, timeout = 35, description = "Import data")
+    @BenchmarkStep(order = 1, timeout = 35, repeatable = false, description = "Import data")
     public BenchmarkResult importData() {
-        List<ReviewRecord> reviewRecords = deserialize(BenchmarkConstants.IMPORT_DATA, BenchmarkConstants.REVIEW_RECORDS);
-        List<UserRecord> userRecords = deserialize(BenchmarkConstants.IMPORT_DATA, BenchmarkConstants.USER_RECORDS);
-        List<RecipeRecord> recipeRecords = deserialize(BenchmarkConstants.IMPORT_DATA, BenchmarkConstants.RECIPE_RECORDS);
+        List<ReviewRecord> reviewRecords = importRecords(SnapshotSchema.REVIEWS, BenchmarkConstants.REVIEW_RECORDS);
+        List<UserRecord> userRecords = importRecords(SnapshotSchema.USERS, BenchmarkConstants.USER_RECORDS);
+        List<RecipeRecord> recipeRecords = importRecords(SnapshotSchema.RECIPES, BenchmarkConstants.RECIPE_RECORDS);
+
+        val modeElapsedTime = new LinkedHashMap<String, Long>();
+        long elapsedTime = 0;
+        boolean failed = false;
+        for (val mode : config.getImportModes()) {
+            if (!modeElapsedTime.isEmpty()) {
+                databaseService.drop();
+            }
+            val startTime = System.currentTimeMillis();
+            try {
+                databaseService.importData(reviewRecords, userRecords, recipeRecords, mode);
+            } catch (Exception e) {
+                log.error("Exception encountered during importing data, you may early stop this run", e);
+                log.error("Import progress: {}", databaseService.getImportProgress());
+                failed = true;
+            }
+            val endTime = System.currentTimeMillis();
+            elapsedTime = endTime - startTime;
+            modeElapsedTime.put(mode.name(), elapsedTime);
+            log.info("Import mode {} took {} ms", mode, elapsedTime);
+            if (failed) {
+                // 下一个模式会先删表，连同检查点一起删掉，出错时就停在这里
+                log.error("Skipping the remaining import modes, the tables are left as the failed import left them");
+                break;
+            }
+        }
+        if (config.getImportMemoryBudget() != null && !failed) {
+            if (!modeElapsedTime.isEmpty()) {
+                databaseService.drop();
+            }
+            val startTime = System.currentTimeMillis();
+            try {
+                databaseService.importData(reviewRecords.stream(), userRecords.stream(), recipeRecords.stream(),
+                        config.getImportMemoryBudget().toBytes());
+            } catch (Exception e) {
+                log.error("Exception encountered during importing data, you may early stop this run", e);
+            }
+            val endTime = System.currentTimeMillis();
+            elapsedTime = endTime - startTime;
+            modeElapsedTime.put("STREAM", elapsedTime);
+            log.info("Streaming import took {} ms", elapsedTime);
+        }
+
+        val result = new BenchmarkResult(elapsedTime);
+        result.setModeElapsedTime(modeElapsedTime);
+        return result;
+    }
+
+    /**
+     * Continues an import that stopped part-way. Not a benchmark step.
+     */
+    public BenchmarkResult resumeImport() {
+        List<ReviewRecord> reviewRecords = importRecords(SnapshotSchema.REVIEWS, BenchmarkConstants.REVIEW_RECORDS);
+        List<UserRecord> userRecords = importRecords(SnapshotSchema.USERS, BenchmarkConstants.USER_RECORDS);
+        List<RecipeRecord> recipeRecords = importRecords(SnapshotSchema.RECIPES, BenchmarkConstants.RECIPE_RECORDS);
 
         val startTime = System.currentTimeMillis();
-        try {
-            databaseService.importData(reviewRecords, userRecords, recipeRecords);
-        } catch (Exception e) {
-            log.error("Exception encountered during importing data, you may early stop this run", e);
-        }
+        databaseService.resumeImport(reviewRecords, userRecords, recipeRecords);
         val endTime = System.currentTimeMillis();
+        log.info("Resumed import took {} ms", endTime - startTime);
+        return new BenchmarkResult(endTime - startTime);
+    }
 
+    /**
+     * Reloads the import data over the current tables. Not a benchmark step, the database keeps
+     * serving the other services while this runs.
+     */
+    public BenchmarkResult reloadData() {
+        List<ReviewRecord> reviewRecords = importRecords(SnapshotSchema.REVIEWS, BenchmarkConstants.REVIEW_RECORDS);
+        List<UserRecord> userRecords = importRecords(SnapshotSchema.USERS, BenchmarkConstants.USER_RECORDS);
+        List<RecipeRecord> recipeRecords = importRecords(SnapshotSchema.RECIPES, BenchmarkConstants.RECIPE_RECORDS);
+
+        val startTime = System.currentTimeMillis();
+        databaseService.reloadData(reviewRecords, userRecords, recipeRecords);
+        val endTime = System.currentTimeMillis();
+        log.info("Reload took {} ms", endTime - startTime);
         return new BenchmarkResult(endTime - startTime);
     }
 
-    @BenchmarkStep(order = 2, description = "Test RecipeService#getRecipeNameFromID(Long)")
+    @BenchmarkStep(order = 2, readOnly = true, warmup = 1, description = "Test RecipeService#getRecipeNameFromID(Long)")
     public BenchmarkResult getRecipeNameFromIDTest() {
         Map<Long, String> cases = deserialize(BenchmarkConstants.TEST_DATA, BenchmarkConstants.RECIPE_NAME);
         val pass = new AtomicLong();
 
         val startTime = System.currentTimeMillis();
-        cases.entrySet().forEach(it -> {
+        runCases(cases.entrySet(), it -> {
             try { 
                 val res = recipeService.getNameFromID(it.getKey());
                 if (Objects.equals(it.getValue(), res)) {
@@ -90,16 +164,16 @@ public class BenchmarkService {
         });
         val endTime = System.currentTimeMillis();
 
-        return new BenchmarkResult(pass, endTime - startTime);
+        return caseResult(pass, cases.size(), endTime - startTime);
     }
 
-    @BenchmarkStep(order = 3, description = "Test RecipeService#getRecipeById(long)")
+    @BenchmarkStep(order = 3, readOnly = true, warmup = 1, description = "Test RecipeService#getRecipeById(long)")
     public BenchmarkResult getRecipeByIdTest() {
         Map<Long, RecipeRecord> cases = deserialize(BenchmarkConstants.TEST_DATA, BenchmarkConstants.RECIPE_RECORD_SINGLE);
         val pass = new AtomicLong();
 
         val startTime = System.currentTimeMillis();
-        cases.entrySet().forEach(it -> {
+        runCases(cases.entrySet(), it -> {
             try {
                 val res = recipeService.getRecipeById(it.getKey());
                 if (Objects.equals(it.getValue(), res)) {
@@ -119,16 +193,16 @@ public class BenchmarkService {
         });
         val endTime = System.currentTimeMillis();
 
-        return new BenchmarkResult(pass, endTime - startTime);
+        return caseResult(pass, cases.size(), endTime - startTime);
     }
 
-    @BenchmarkStep(order = 4, description = "Test RecipeService#searchRecipes(String, String, Double, Integer, Integer, String)")
+    @BenchmarkStep(order = 4, readOnly = true, warmup = 1, description = "Test RecipeService#searchRecipes(String, String, Double, Integer, Integer, String)")
     public BenchmarkResult searchRecipesTest() {
         List<Map.Entry<Object[], PageResult<RecipeRecord>>> cases = deserialize(BenchmarkConstants.TEST_DATA, BenchmarkConstants.RECIPE_SEARCH);
         val pass = new AtomicLong();
 
         val startTime = System.currentTimeMillis();
-        cases.forEach(it -> {
+        runCases(cases, it -> {
             try {
                 val args = it.getKey();
                 val res = recipeService.searchRecipes((String) args[0], (String) args[1], (Double) args[2], (Integer) args[3], (Integer) args[4], (String) args[5]);
@@ -150,7 +224,7 @@ public class BenchmarkService {
 
         val endTime = System.currentTimeMillis();
 
-        return new BenchmarkResult(pass, endTime - startTime);
+        return caseResult(pass, cases.size(), endTime - startTime);
     }
 
     @BenchmarkStep(order = 5, description = "Test RecipeService#createRecipe(RecipeRecord, AuthInfo)")
@@ -159,7 +233,7 @@ public class BenchmarkService {
         val pass = new AtomicLong();
 
         val startTime = System.currentTimeMillis();
-        cases.forEach(it -> {
+        runCases(cases, it -> {
             val args = it.getKey();
             val dto = (RecipeRecord) args[0];
             val auth = (AuthInfo) args[1];
@@ -188,7 +262,7 @@ public class BenchmarkService {
         });
         val endTime = System.currentTimeMillis();
 
-        return new BenchmarkResult(pass, endTime - startTime);
+        return caseResult(pass, cases.size(), endTime - startTime);
     }
 
     @BenchmarkStep(order = 6, description = "Test RecipeService#deleteRecipe(long, AuthInfo)")
@@ -197,7 +271,7 @@ public class BenchmarkService {
         val pass = new AtomicLong();
 
         val startTime = System.currentTimeMillis();
-        cases.forEach(it -> {
+        runCases(cases, it -> {
             val args = it.getKey();
             val auth = (AuthInfo) args[1];
             val recipe = recipeService.getRecipeById((long) args[0]);
@@ -221,7 +295,7 @@ public class BenchmarkService {
         });
         val endTime = System.currentTimeMillis();
 
-        return new BenchmarkResult(pass, endTime - startTime);
+        return caseResult(pass, cases.size(), endTime - startTime);
     }
 
     @BenchmarkStep(order = 7, description = "Test RecipeService#updateTimes(AuthInfo, long, String, String)")
@@ -230,7 +304,7 @@ public class BenchmarkService {
         val pass = new AtomicLong();
 
         val startTime = System.currentTimeMillis();
-        cases.forEach(it -> {
+        runCases(cases, it -> {
             val args = it.getKey();
             val before = recipeService.getRecipeById((long) args[1]);
             val auth = (AuthInfo) args[0];
@@ -270,10 +344,10 @@ public class BenchmarkService {
         });
         val endTime = System.currentTimeMillis();
 
-        return new BenchmarkResult(pass, endTime - startTime);
+        return caseResult(pass, cases.size(), endTime - startTime);
     }
 
-    @BenchmarkStep(order = 8, description = "Test RecipeService#getClosestCaloriePair()")
+    @BenchmarkStep(order = 8, readOnly = true, warmup = 1, description = "Test RecipeService#getClosestCaloriePair()")
     public BenchmarkResult getClosestCaloriePairTest() {
         Map<String, Object> truth = deserialize(BenchmarkConstants.TEST_DATA, BenchmarkConstants.RECIPE_CLOSEST_CALORIE_PAIR);
         val pass = new AtomicLong();
@@ -293,7 +367,7 @@ public class BenchmarkService {
         return new BenchmarkResult(pass, endTime - startTime);
     }
 
-    @BenchmarkStep(order = 9, description = "Test RecipeService#getTop3MostComplexRecipesByIngredients()")
+    @BenchmarkStep(order = 9, readOnly = true, warmup = 1, description = "Test RecipeService#getTop3MostComplexRecipesByIngredients()")
     public BenchmarkResult getTop3MostComplexRecipesByIngredientsTest() {
         List<Map<String, Object>> truth = deserialize(BenchmarkConstants.TEST_DATA, BenchmarkConstants.RECIPE_TOP3);
         val pass = new AtomicLong();
@@ -329,7 +403,7 @@ public class BenchmarkService {
         val pass = new AtomicLong();
 
         val startTime = System.currentTimeMillis();
-        cases.forEach(it -> {
+        runCases(cases, it -> {
             val args = it.getKey();
             try {
                 long res = reviewService.addReview((AuthInfo) args[0], (long) args[1], (int) args[2], (String) args[3]);
@@ -359,7 +433,7 @@ public class BenchmarkService {
         });
         val endTime = System.currentTimeMillis();
 
-        return new BenchmarkResult(pass, endTime - startTime);
+        return caseResult(pass, cases.size(), endTime - startTime);
     }
 
     @BenchmarkStep(order = 11, description = "Test ReviewService#editReview(AuthInfo, long, long, int, String)")
@@ -368,7 +442,7 @@ public class BenchmarkService {
         val pass = new AtomicLong();
 
         val startTime = System.currentTimeMillis();
-        cases.forEach(it -> {
+        runCases(cases, it -> {
             val args = it.getKey();
             try {
                 reviewService.editReview((AuthInfo) args[0], (long) args[1], (long) args[2], (int) args[3], (String) args[4]);
@@ -398,7 +472,7 @@ public class BenchmarkService {
         });
         val endTime = System.currentTimeMillis();
 
-        return new BenchmarkResult(pass, endTime - startTime);
+        return caseResult(pass, cases.size(), endTime - startTime);
     }
 
     @BenchmarkStep(order = 12, description = "Test ReviewService#deleteReview(AuthInfo, long, long)")
@@ -407,7 +481,7 @@ public class BenchmarkService {
         val pass = new AtomicLong();
 
         val startTime = System.currentTimeMillis();
-        cases.forEach(it -> {
+        runCases(cases, it -> {
             val args = it.getKey();
             try {
                 reviewService.deleteReview((AuthInfo) args[0], (long) args[1], (long) args[2]);
@@ -437,7 +511,7 @@ public class BenchmarkService {
         });
         val endTime = System.currentTimeMillis();
 
-        return new BenchmarkResult(pass, endTime - startTime);
+        return caseResult(pass, cases.size(), endTime - startTime);
     }
 
     @BenchmarkStep(order = 13, description = "Test ReviewService#likeReview(AuthInfo, long)")
@@ -446,7 +520,7 @@ public class BenchmarkService {
         val pass = new AtomicLong();
 
         val startTime = System.currentTimeMillis();
-        cases.forEach(it -> {
+        runCases(cases, it -> {
             val args = it.getKey();
             long reviewId = (long) args[1];
             try {
@@ -472,7 +546,7 @@ public class BenchmarkService {
         });
         val endTime = System.currentTimeMillis();
 
-        return new BenchmarkResult(pass, endTime - startTime);
+        return caseResult(pass, cases.size(), endTime - startTime);
     }
 
     @BenchmarkStep(order = 14, description = "Test ReviewService#unlikeReview(long, long)")
@@ -481,7 +555,7 @@ public class BenchmarkService {
         val pass = new AtomicLong();
 
         val startTime = System.currentTimeMillis();
-        cases.forEach(it -> {
+        runCases(cases, it -> {
             val args = it.getKey();
             try {
                 val res = reviewService.unlikeReview((AuthInfo) args[0], (long) args[1]);
@@ -506,16 +580,16 @@ public class BenchmarkService {
         });
         val endTime = System.currentTimeMillis();
 
-        return new BenchmarkResult(pass, endTime - startTime);
+        return caseResult(pass, cases.size(), endTime - startTime);
     }
 
-    @BenchmarkStep(order = 15, description = "Test ReviewService#listByRecipe(long, int, int, String)")
+    @BenchmarkStep(order = 15, readOnly = true, warmup = 1, description = "Test ReviewService#listByRecipe(long, int, int, String)")
     public BenchmarkResult listByRecipeTest() {
         List<Map.Entry<Object[], PageResult<ReviewRecord>>> cases = deserialize(BenchmarkConstants.TEST_DATA, BenchmarkConstants.REVIEW_LIST);
         val pass = new AtomicLong();
 
         val startTime = System.currentTimeMillis();
-        cases.forEach(it -> {
+        runCases(cases, it -> {
             val args = it.getKey();
             try {
                 val res = reviewService.listByRecipe((long) args[0], (int) args[1], (int) args[2], (String) args[3]);
@@ -536,7 +610,7 @@ public class BenchmarkService {
         });
         val endTime = System.currentTimeMillis();
 
-        return new BenchmarkResult(pass, endTime - startTime);
+        return caseResult(pass, cases.size(), endTime - startTime);
     }
 
     @BenchmarkStep(order = 16, description = "Test UserService#register(RegisterUserReq)")
@@ -545,7 +619,7 @@ public class BenchmarkService {
         val pass = new AtomicLong();
 
         val startTime = System.currentTimeMillis();
-        cases.forEach(it -> {
+        runCases(cases, it -> {
             val args = it.getKey();
             try {
                 val res = userService.register(args);
@@ -564,7 +638,7 @@ public class BenchmarkService {
         });
         val endTime = System.currentTimeMillis();
 
-        return new BenchmarkResult(pass, endTime - startTime);
+        return caseResult(pass, cases.size(), endTime - startTime);
     }
 
     @BenchmarkStep(order = 17, description = "Test UserService#follow(AuthInfo, long)")
@@ -573,7 +647,7 @@ public class BenchmarkService {
         val pass = new AtomicLong();
 
         val startTime = System.currentTimeMillis();
-        cases.forEach(it -> {
+        runCases(cases, it -> {
             val args = it.getKey();
             try {
                 val res = userService.follow((AuthInfo) args[0], (long) args[1]);
@@ -592,7 +666,7 @@ public class BenchmarkService {
         });
         val endTime = System.currentTimeMillis();
 
-        return new BenchmarkResult(pass, endTime - startTime);
+        return caseResult(pass, cases.size(), endTime - startTime);
     }
 
     @BenchmarkStep(order = 18, description = "Test UserService#deleteAccount(AuthInfo, long)")
@@ -601,7 +675,7 @@ public class BenchmarkService {
          val pass = new AtomicLong();
 
          val startTime = System.currentTimeMillis();
-         cases.forEach(it -> {
+         runCases(cases, it -> {
              val args = it.getKey();
              try {
                  val res = userService.deleteAccount((AuthInfo) args[0], (long) args[1]);
@@ -622,16 +696,16 @@ public class BenchmarkService {
          });
          val endTime = System.currentTimeMillis();
 
-         return new BenchmarkResult(pass, endTime - startTime);
+         return caseResult(pass, cases.size(), endTime - startTime);
     }
 
-    @BenchmarkStep(order = 19, description = "Test UserService#getById(long)")
+    @BenchmarkStep(order = 19, readOnly = true, warmup = 1, description = "Test UserService#getById(long)")
     public BenchmarkResult getByIdTest() {
         List<Map.Entry<Long, UserRecord>> cases = deserialize(BenchmarkConstants.TEST_DATA, BenchmarkConstants.USER_GET_BY_ID);
         val pass = new AtomicLong();
 
         val startTime = System.currentTimeMillis();
-        cases.forEach(it -> {
+        runCases(cases, it -> {
             try {
                 val expected = it.getValue();
                 val actual = userService.getById(it.getKey());
@@ -653,7 +727,7 @@ public class BenchmarkService {
         });
         val endTime = System.currentTimeMillis();
 
-        return new BenchmarkResult(pass, endTime - startTime);
+        return caseResult(pass, cases.size(), endTime - startTime);
     }
 
     @BenchmarkStep(order = 20, description = "Test UserService#updateProfile(AuthInfo, String, Integer)")
@@ -662,7 +736,7 @@ public class BenchmarkService {
         val pass = new AtomicLong();
 
         val startTime = System.currentTimeMillis();
-        cases.forEach(it -> {
+        runCases(cases, it -> {
             val args = it.getKey();
             val userId = (AuthInfo) args[0];
             try {
@@ -691,16 +765,16 @@ public class BenchmarkService {
         });
         val endTime = System.currentTimeMillis();
 
-        return new BenchmarkResult(pass, endTime - startTime);
+        return caseResult(pass, cases.size(), endTime - startTime);
     }
 
-    @BenchmarkStep(order = 21, description = "Test UserService#login(AuthInfo)")
+    @BenchmarkStep(order = 21, readOnly = true, warmup = 1, description = "Test UserService#login(AuthInfo)")
     public BenchmarkResult loginTest() {
         List<Map.Entry<AuthInfo, Long>> cases = deserialize(BenchmarkConstants.TEST_DATA, BenchmarkConstants.USER_LOGIN);
         val pass = new AtomicLong();
 
         val startTime = System.currentTimeMillis();
-        cases.forEach(it -> {
+        runCases(cases, it -> {
             val args = it.getKey();
             try {
                 val res = userService.login(args);
@@ -714,16 +788,16 @@ public class BenchmarkService {
             }
         });
         val endTime = System.currentTimeMillis();
-        return new BenchmarkResult(pass, endTime - startTime);
+        return caseResult(pass, cases.size(), endTime - startTime);
     }
 
-    @BenchmarkStep(order = 22, description = "Test UserService#feed(AuthInfo, int, int, String)")
+    @BenchmarkStep(order = 22, readOnly = true, warmup = 1, description = "Test UserService#feed(AuthInfo, int, int, String)")
     public BenchmarkResult feedTest() {
         List<Map.Entry<Object[], PageResult<FeedItem>>> cases = deserialize(BenchmarkConstants.TEST_DATA, BenchmarkConstants.USER_FEED);
         val pass = new AtomicLong();
 
         val startTime = System.currentTimeMillis();
-        cases.forEach(it -> {
+        runCases(cases, it -> {
             val args = it.getKey();
             try {
                 val res = userService.feed((AuthInfo) args[0], (int) args[1], (int) args[2], (String) args[3]);
@@ -738,10 +812,10 @@ public class BenchmarkService {
         });
         val endTime = System.currentTimeMillis();
 
-        return new BenchmarkResult(pass, endTime - startTime);
+        return caseResult(pass, cases.size(), endTime - startTime);
     }
 
-    @BenchmarkStep(order = 23, description = "Test RecipeService#getUserWithHighestFollowRatio")
+    @BenchmarkStep(order = 23, readOnly = true, warmup = 1, description = "Test RecipeService#getUserWithHighestFollowRatio")
     public BenchmarkResult getUserWithHighestFollowRatioTest() {
         Map<String, Object> truth = deserialize(BenchmarkConstants.TEST_DATA, BenchmarkConstants.USER_HIGHEST_FOLLOW_RATIO);
         val pass = new AtomicLong();
@@ -761,11 +835,98 @@ public class BenchmarkService {
         return new BenchmarkResult(pass, endTime - startTime);
     }
 
+    /**
+     * Reads import records from their columnar snapshot if {@code db csv2ser} wrote one at least as recent as
+     * the Fury .ser file, otherwise from the .ser file. A snapshot is a lazy view: records are decoded from the mapped file as the import reads them.
+     */
+    @SneakyThrows
+    <T> List<T> importRecords(SnapshotSchema<T> schema, String serFile) {
+        val snapshot = Paths.get(config.getDataPath(), BenchmarkConstants.IMPORT_DATA, schema.getFileName());
+        val ser = Paths.get(config.getDataPath(), BenchmarkConstants.IMPORT_DATA, serFile);
+        // 只在快照不比 .ser 旧时使用，避免只重新生成了 .ser 却读到过期的快照
+        if (Files.exists(snapshot) && (!Files.exists(ser)
+                || Files.getLastModifiedTime(snapshot).compareTo(Files.getLastModifiedTime(ser)) >= 0)) {
+            log.info("Reading {} from snapshot {}", serFile, snapshot);
+            return Snapshot.open(schema, snapshot);
+        }
+        return deserialize(BenchmarkConstants.IMPORT_DATA, serFile);
+    }
+
+    /**
+     * Runs {@code test} on every case. With {@code benchmark.threads} above 1 the cases are shared out among that
+     * many workers, each taking the next case as soon as it is done with one, so the step measures throughput
+     * under contention instead of single-client latency. Cases then no longer run in file order.
+     */
+    private <E> void runCases(Collection<E> cases, Consumer<E> test) {
+        int threads = Math.max(1, config.getThreads());
+        if (threads == 1 || cases.size() <= 1) {
+            cases.forEach(test);
+            return;
+        }
+        List<E> list = new ArrayList<>(cases);
+        val next = new AtomicInteger();
+        val executor = newWorkerExecutor(threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                workers.add(executor.submit(() -> {
+                    try {
+                        for (int j = next.getAndIncrement(); j < list.size(); j = next.getAndIncrement()) {
+                            test.accept(list.get(j));
+                        }
+                    } catch (RuntimeException | Error e) {
+                        // 一个 worker 失败后其余 worker 不再领取新的 case
+                        next.set(list.size());
+                        throw e;
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            // 步骤超时被取消时也会走到这里
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private ExecutorService newWorkerExecutor(int threads) {
+        if (config.isVirtualThreads()) {
+            try {
+                // Java 21 才有虚拟线程，用反射调用以便在 Java 17 上照常编译运行
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                log.warn("Virtual threads are not available on Java {}, using platform threads", Runtime.version().feature());
+            }
+        }
+        val threadId = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> new Thread(r, "sustc-bench-worker-" + threadId.incrementAndGet()));
+    }
+
+    private BenchmarkResult caseResult(AtomicLong pass, int cases, long elapsedTime) {
+        val result = new BenchmarkResult(pass, elapsedTime);
+        result.setThreads(Math.max(1, config.getThreads()));
+        if (elapsedTime > 0) {
+            result.setThroughput(cases * 1000.0 / elapsedTime);
+        }
+        return result;
+    }
+
     @SneakyThrows
-    @SuppressWarnings("unchecked")
     private <T> T deserialize(String... path) {
         val file = Paths.get(config.getDataPath(), path);
-        return (T) fury.deserialize(Files.readAllBytes(file));
+        return serializer.read(file);
     }
 
     private static boolean collectionEquals(Collection<?> expect, Collection<?> actual) {
@@ -23,4 +23,26 @@ public @interface BenchmarkStep {
      * Description of the task.
      */
     String description() default "";
+
+    /**
+     * Unmeasured runs before the measured ones, to warm up the JIT, the connection pool and the plan caches.
+     */
+    int warmup() default 0;
+
+    /**
+     * Measured runs. With more than one, the report carries their mean and confidence interval.
+     */
+    int iterations() default 1;
+
+    /**
+     * Whether the step leaves the database as it found it.
+     * Runs of a step that does not are each started from a checkpoint of the database taken before the first one.
+     */
+    boolean readOnly() default false;
+
+    /**
+     * Whether the step may run more than once at all.
+     * The configured warmup and measurement iterations only apply to repeatable steps.
+     */
+    boolean repeatable() default true;
 }
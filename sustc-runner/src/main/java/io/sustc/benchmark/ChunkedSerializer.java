@@ -0,0 +1,312 @@
+package io.sustc.benchmark;
+
+import io.fury.ThreadSafeFury;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads and writes the benchmark's .ser data files.
+ * <p>
+ * Files are written as a header followed by independently decodable chunks: a {@link List} or a {@link Stream}
+ * is cut into chunks of {@link #CHUNK_ELEMENTS} elements, each serialized on its own, and anything else is one chunk. The chunks
+ * are encoded with a Fury that has the DTO classes registered and reference tracking off (see
+ * {@link BenchmarkConfig#chunkFury()}), so {@link #read} decodes them in parallel and {@link #stream} hands out
+ * the first elements while later chunks are still being decoded.
+ * <p>
+ * Layout: the magic {@code SUSTCFRY}, an int version, a byte that is {@code 1} for a list and {@code 0}
+ * otherwise, then per chunk an int byte length and the Fury bytes, ended by a length of {@code -1}.
+ * Files without the magic are single-object files of the legacy Fury and are still read with it.
+ */
+public class ChunkedSerializer {
+
+    static final int CHUNK_ELEMENTS = 4096;
+
+    private static final byte[] MAGIC = "SUSTCFRY".getBytes(StandardCharsets.US_ASCII);
+
+    // 2：分块改用 COMPATIBLE 模式编码，版本 1 的文件需要重新生成
+    private static final int VERSION = 2;
+
+    private static final int END_OF_CHUNKS = -1;
+
+    private final ThreadSafeFury chunkFury;
+
+    private final ThreadSafeFury legacyFury;
+
+    public ChunkedSerializer(ThreadSafeFury chunkFury, ThreadSafeFury legacyFury) {
+        this.chunkFury = chunkFury;
+        this.legacyFury = legacyFury;
+    }
+
+    /**
+     * Writes {@code data} to {@code file} in the chunked format, creating parent directories as needed.
+     */
+    public void write(Object data, Path file) throws IOException {
+        List<byte[]> chunks;
+        if (data instanceof List<?> list) {
+            int count = (list.size() + CHUNK_ELEMENTS - 1) / CHUNK_ELEMENTS;
+            // 各块互不依赖，并行编码后按顺序写出
+            chunks = IntStream.range(0, count).parallel()
+                    .mapToObj(i -> chunkFury.serialize(new ArrayList<>(
+                            list.subList(i * CHUNK_ELEMENTS, Math.min(list.size(), (i + 1) * CHUNK_ELEMENTS)))))
+                    .toList();
+        } else {
+            chunks = List.of(chunkFury.serialize(data));
+        }
+
+        try (DataOutputStream out = open(file, data instanceof List)) {
+            for (byte[] chunk : chunks) {
+                writeChunk(out, chunk);
+            }
+            out.writeInt(END_OF_CHUNKS);
+        }
+    }
+
+    /**
+     * Writes the elements of {@code elements} to {@code file} as a list, the same file {@link #write(Object, Path)}
+     * writes for a list of them. Elements are taken {@link #CHUNK_ELEMENTS} at a time and each chunk is encoded on
+     * the common pool, with at most one chunk per worker thread in flight, so the whole list is never held.
+     *
+     * @return the number of elements written
+     */
+    public long write(Stream<?> elements, Path file) throws IOException {
+        Iterator<?> it = elements.iterator();
+        int lookahead = ForkJoinPool.getCommonPoolParallelism() + 1;
+        Queue<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+        long count = 0;
+        try (DataOutputStream out = open(file, true)) {
+            while (it.hasNext()) {
+                List<Object> chunk = new ArrayList<>(CHUNK_ELEMENTS);
+                while (chunk.size() < CHUNK_ELEMENTS && it.hasNext()) {
+                    chunk.add(it.next());
+                }
+                count += chunk.size();
+                pending.add(CompletableFuture.supplyAsync(() -> chunkFury.serialize(chunk)));
+                // 编码好的块按顺序写出，在途的块数有上限
+                if (pending.size() >= lookahead) {
+                    writeChunk(out, join(pending.poll()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeChunk(out, join(pending.poll()));
+            }
+            out.writeInt(END_OF_CHUNKS);
+        }
+        return count;
+    }
+
+    private DataOutputStream open(Path file, boolean list) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        out.write(MAGIC);
+        out.writeInt(VERSION);
+        out.writeByte(list ? 1 : 0);
+        return out;
+    }
+
+    private static void writeChunk(DataOutputStream out, byte[] chunk) throws IOException {
+        out.writeInt(chunk.length);
+        out.write(chunk);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a whole file, decoding the chunks in parallel. A list comes back as one list of all elements.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T read(Path file) throws IOException {
+        if (!isChunked(file)) {
+            return (T) legacyFury.deserialize(Files.readAllBytes(file));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ChunkIndex index = ChunkIndex.scan(channel);
+            List<Object> decoded = Arrays.asList(new Object[index.size()]);
+            try {
+                IntStream.range(0, index.size()).parallel()
+                        .forEach(i -> decoded.set(i, chunkFury.deserialize(index.readChunk(channel, i))));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (!index.list()) {
+                return (T) decoded.get(0);
+            }
+            List<Object> all = new ArrayList<>(index.size() * CHUNK_ELEMENTS);
+            for (Object chunk : decoded) {
+                all.addAll((List<?>) chunk);
+            }
+            return (T) all;
+        }
+    }
+
+    /**
+     * Streams the elements of a list file in order. Chunks are decoded ahead on the common pool, up to one per
+     * worker thread, while the consumer works through the current one. The stream holds the file open and must
+     * be closed. A legacy file is read whole first.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Stream<T> stream(Path file) throws IOException {
+        if (!isChunked(file)) {
+            return ((List<T>) legacyFury.deserialize(Files.readAllBytes(file))).stream();
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        ChunkIndex index;
+        try {
+            index = ChunkIndex.scan(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (!index.list()) {
+            channel.close();
+            throw new IOException(file + " does not hold a list");
+        }
+        int lookahead = ForkJoinPool.getCommonPoolParallelism() + 1;
+        Iterator<List<T>> chunks = new Iterator<>() {
+
+            private final Queue<CompletableFuture<List<T>>> pending = new ArrayDeque<>();
+
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                fill();
+                return !pending.isEmpty();
+            }
+
+            @Override
+            public List<T> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return join(pending.poll());
+            }
+
+            private void fill() {
+                while (pending.size() < lookahead && next < index.size()) {
+                    int i = next++;
+                    pending.add(CompletableFuture.supplyAsync(() -> (List<T>) chunkFury.deserialize(index.readChunk(channel, i))));
+                }
+            }
+        };
+        Spliterator<List<T>> spliterator = Spliterators.spliterator(chunks, index.size(), Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false)
+                .flatMap(List::stream)
+                .onClose(() -> {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * @return whether {@code file} starts with the chunked format's magic
+     */
+    public static boolean isChunked(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+        }
+    }
+
+    /**
+     * Positions of the chunks of a file, found by hopping from one length prefix to the next.
+     */
+    private record ChunkIndex(boolean list, long[] offsets, int[] lengths) {
+
+        static ChunkIndex scan(FileChannel channel) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 4 + 1);
+            readFully(channel, header, 0);
+            header.position(MAGIC.length);
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported chunked file version " + version);
+            }
+            boolean list = header.get() == 1;
+
+            List<long[]> chunks = new ArrayList<>();
+            ByteBuffer length = ByteBuffer.allocate(4);
+            long position = header.capacity();
+            while (true) {
+                length.clear();
+                readFully(channel, length, position);
+                int size = length.getInt(0);
+                if (size == END_OF_CHUNKS) {
+                    break;
+                }
+                chunks.add(new long[]{position + 4, size});
+                position += 4 + size;
+            }
+            long[] offsets = new long[chunks.size()];
+            int[] lengths = new int[chunks.size()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = chunks.get(i)[0];
+                lengths[i] = (int) chunks.get(i)[1];
+            }
+            return new ChunkIndex(list, offsets, lengths);
+        }
+
+        int size() {
+            return offsets.length;
+        }
+
+        /**
+         * Reads chunk {@code i} with a positional read, so several threads can read chunks of one channel at once.
+         */
+        byte[] readChunk(FileChannel channel, int i) {
+            byte[] bytes = new byte[lengths[i]];
+            try {
+                readFully(channel, ByteBuffer.wrap(bytes), offsets[i]);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes;
+        }
+
+        private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+            while (buf.hasRemaining()) {
+                int read = channel.read(buf, position + buf.position());
+                if (read < 0) {
+                    throw new EOFException("Chunked file ends early");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package io.sustc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.sustc.service.DatabaseService;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Saves the state of the database and puts it back, so a mutating step can run several trials from the same state.
+ * How is chosen by {@link BenchmarkConfig#getCheckpointStrategy()}; after a restore the services are told to drop
+ * whatever they cached about the data.
+ */
+@Component
+@Slf4j
+public class DatabaseCheckpoint {
+
+    public enum Strategy {
+        /**
+         * Copies every table of the {@code public} schema into unlogged tables of a separate schema and notes the
+         * sequence positions; restores by truncating the tables, copying the rows back in foreign-key order and
+         * resetting the sequences. Tables are assumed to keep their columns between save and restore; tables
+         * created in between are left alone. Needs no privileges beyond those on the schema, but a restore costs
+         * about as much as rewriting the data.
+         */
+        TABLE_COPY,
+        /**
+         * Clones the whole database with {@code CREATE DATABASE ... TEMPLATE}, and restores by dropping the
+         * database and cloning it back from the template under the same name. The clone copies files, without
+         * replaying rows or rebuilding indexes, so it takes seconds. Needs the {@code CREATEDB} privilege and
+         * ownership of the database, and closes every connection to it, those of the pool included.
+         */
+        TEMPLATE
+    }
+
+    private static final String SCHEMA = "sustc_checkpoint";
+
+    /**
+     * Splits a PostgreSQL JDBC URL around the database name.
+     */
+    private static final Pattern MAINTENANCE_URL = Pattern.compile("^(jdbc:postgresql://[^/]*/)([^?]*)(.*)$");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private DatabaseService databaseService;
+
+    @Autowired
+    private BenchmarkConfig benchmarkConfig;
+
+    /**
+     * Strategy of the saved checkpoint, {@code null} if there is none.
+     */
+    private Strategy strategy;
+
+    private List<String> tables;
+
+    private List<Map<String, Object>> sequences;
+
+    private String database;
+
+    private String template;
+
+    public void save() {
+        if (strategy != null) {
+            discard();
+        }
+        strategy = benchmarkConfig.getCheckpointStrategy();
+        val start = System.currentTimeMillis();
+        switch (strategy) {
+            case TABLE_COPY -> saveTables();
+            case TEMPLATE -> saveTemplate();
+        }
+        log.info("Saved {} checkpoint in {} ms", strategy, System.currentTimeMillis() - start);
+    }
+
+    public void restore() {
+        if (strategy == null) {
+            throw new IllegalStateException("No checkpoint saved");
+        }
+        val start = System.currentTimeMillis();
+        switch (strategy) {
+            case TABLE_COPY -> restoreTables();
+            case TEMPLATE -> restoreTemplate();
+        }
+        databaseService.invalidateCaches();
+        log.info("Restored {} checkpoint in {} ms", strategy, System.currentTimeMillis() - start);
+    }
+
+    public void discard() {
+        if (strategy == null) {
+            return;
+        }
+        switch (strategy) {
+            case TABLE_COPY -> jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+            case TEMPLATE -> maintenance(this::dropTemplate);
+        }
+        strategy = null;
+        tables = null;
+        sequences = null;
+        database = null;
+        template = null;
+    }
+
+    private void saveTables() {
+        tables = insertOrder(jdbcTemplate.queryForList(
+                "SELECT tablename FROM pg_tables WHERE schemaname = 'public'", String.class));
+        sequences = jdbcTemplate.queryForList("""
+                SELECT sequencename, start_value, last_value
+                FROM pg_sequences
+                WHERE schemaname = 'public'
+                """);
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        jdbcTemplate.execute("CREATE SCHEMA " + SCHEMA);
+        for (String table : tables) {
+            jdbcTemplate.execute("CREATE UNLOGGED TABLE " + SCHEMA + "." + quote(table) + " AS TABLE public." + quote(table));
+        }
+    }
+
+    private void restoreTables() {
+        if (!tables.isEmpty()) {
+            jdbcTemplate.execute("TRUNCATE " + tables.stream().map(t -> "public." + quote(t)).collect(Collectors.joining(", ")) + " CASCADE");
+        }
+        for (String table : tables) {
+            // 主键、索引、外键都还在原表上，只搬数据
+            jdbcTemplate.execute("INSERT INTO public." + quote(table) + " OVERRIDING SYSTEM VALUE SELECT * FROM "
+                    + SCHEMA + "." + quote(table));
+        }
+        for (Map<String, Object> seq : sequences) {
+            Object last = seq.get("last_value");
+            jdbcTemplate.queryForObject("SELECT setval(?::regclass, ?, ?)", Long.class,
+                    "public." + quote((String) seq.get("sequencename")), last != null ? last : seq.get("start_value"), last != null);
+        }
+    }
+
+    private void saveTemplate() {
+        database = jdbcTemplate.queryForObject("SELECT current_database()", String.class);
+        template = database + "_checkpoint";
+        maintenance(stmt -> {
+            dropTemplate(stmt);
+            // 复制时源库上不能有其他连接
+            closeConnections(stmt, database);
+            try {
+                stmt.execute("CREATE DATABASE " + quote(template) + " TEMPLATE " + quote(database));
+            } finally {
+                stmt.execute("ALTER DATABASE " + quote(database) + " ALLOW_CONNECTIONS true");
+            }
+            // 防止有人连上模板库，否则下次就没法从它复制
+            stmt.execute("ALTER DATABASE " + quote(template) + " ALLOW_CONNECTIONS false");
+        });
+        evictPool();
+    }
+
+    private void restoreTemplate() {
+        maintenance(stmt -> {
+            closeConnections(stmt, database);
+            stmt.execute("DROP DATABASE " + quote(database));
+            stmt.execute("CREATE DATABASE " + quote(database) + " TEMPLATE " + quote(template));
+        });
+        evictPool();
+    }
+
+    /**
+     * Drops the pooled connections that {@link #closeConnections} terminated, so the next borrow opens a new one
+     * instead of failing on a dead socket.
+     */
+    private void evictPool() {
+        // 池里的连接都已被断开，丢掉它们，之后借出的连接都是新建的
+        if (dataSource instanceof HikariDataSource hikari && hikari.getHikariPoolMXBean() != null) {
+            hikari.getHikariPoolMXBean().softEvictConnections();
+        }
+    }
+
+    private void dropTemplate(Statement stmt) throws SQLException {
+        stmt.execute("DROP DATABASE IF EXISTS " + quote(template));
+    }
+
+    /**
+     * Refuses new connections to {@code name} and closes the open ones, including those held by the pool.
+     * The pool replaces its connections as they fail to validate.
+     */
+    private void closeConnections(Statement stmt, String name) throws SQLException {
+        stmt.execute("ALTER DATABASE " + quote(name) + " ALLOW_CONNECTIONS false");
+        stmt.execute("SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE datname = '"
+                + name.replace("'", "''") + "' AND pid <> pg_backend_pid()");
+    }
+
+    private interface MaintenanceTask {
+        void run(Statement stmt) throws SQLException;
+    }
+
+    /**
+     * Runs {@code task} on a connection of its own to the {@code postgres} database of the same server,
+     * as the user of the pool, since a database cannot be cloned or dropped while connected to it.
+     */
+    private void maintenance(MaintenanceTask task) {
+        if (!(dataSource instanceof HikariDataSource hikari)) {
+            throw new IllegalStateException("The TEMPLATE checkpoint needs a Hikari data source, got " + dataSource.getClass());
+        }
+        val url = MAINTENANCE_URL.matcher(hikari.getJdbcUrl()).replaceFirst("$1postgres$3");
+        try (Connection conn = DriverManager.getConnection(url, hikari.getUsername(), hikari.getPassword());
+             Statement stmt = conn.createStatement()) {
+            task.run(stmt);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Orders {@code tables} so every table comes after the tables its foreign keys point to.
+     */
+    private List<String> insertOrder(List<String> tables) {
+        Map<String, Set<String>> parents = new LinkedHashMap<>();
+        tables.forEach(t -> parents.put(t, new LinkedHashSet<>()));
+        jdbcTemplate.query("""
+                SELECT c.conrelid::regclass::text AS child, c.confrelid::regclass::text AS parent
+                FROM pg_constraint c
+                WHERE c.contype = 'f' AND c.connamespace = 'public'::regnamespace
+                """, rs -> {
+            String child = unquote(rs.getString("child"));
+            String parent = unquote(rs.getString("parent"));
+            if (parents.containsKey(child) && parents.containsKey(parent) && !child.equals(parent)) {
+                parents.get(child).add(parent);
+            }
+        });
+        List<String> order = new ArrayList<>();
+        Set<String> placed = new LinkedHashSet<>();
+        while (order.size() < tables.size()) {
+            boolean progress = false;
+            for (String t : tables) {
+                if (!placed.contains(t) && placed.containsAll(parents.get(t))) {
+                    order.add(t);
+                    placed.add(t);
+                    progress = true;
+                }
+            }
+            if (!progress) {
+                throw new IllegalStateException("Foreign keys form a cycle among " + parents.keySet());
+            }
+        }
+        return order;
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String unquote(String regclass) {
+        return regclass.startsWith("\"") ? regclass.substring(1, regclass.length() - 1).replace("\"\"", "\"") : regclass;
+    }
+}
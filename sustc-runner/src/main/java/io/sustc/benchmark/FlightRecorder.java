@@ -0,0 +1,160 @@
+package io.sustc.benchmark;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Records a step with Java Flight Recorder, writes the recording next to the report and digests it for the report.
+ * <p>
+ * The recording covers the measured trials, and any checkpoint restores between them, of the whole JVM.
+ * The default {@code profile} settings sample execution every 10 ms and allocations up to 300 times a second, so the
+ * numbers are estimates: fine for telling which methods dominate, not for exact counts.
+ */
+@Profile("benchmark")
+@Component
+@Slf4j
+public class FlightRecorder {
+
+    private static final List<String> JDK_PACKAGES = List.of("java.", "javax.", "jdk.", "sun.", "com.sun.");
+
+    @Autowired
+    private BenchmarkConfig benchmarkConfig;
+
+    private Recording recording;
+
+    public void start(String name) {
+        if (!benchmarkConfig.isFlightRecording()) {
+            return;
+        }
+        try {
+            recording = new Recording(Configuration.getConfiguration(benchmarkConfig.getFlightRecordingSettings()));
+        } catch (IOException | ParseException e) {
+            throw new RuntimeException(e);
+        }
+        recording.setName(name);
+        recording.setToDisk(true);
+        recording.start();
+    }
+
+    /**
+     * Stops the recording and writes it to {@code file}.
+     *
+     * @return the digest of the recording, {@code null} if not recording
+     */
+    public FlightSummary stop(Path file) {
+        if (recording == null) {
+            return null;
+        }
+        try (Recording r = recording) {
+            r.stop();
+            r.dump(file);
+        } catch (IOException e) {
+            log.error("Failed to write flight recording {}", file, e);
+            return null;
+        } finally {
+            recording = null;
+        }
+
+        try {
+            return summarize(file, benchmarkConfig.getFlightRecordingTop());
+        } catch (IOException e) {
+            log.error("Failed to read flight recording {}", file, e);
+            return FlightSummary.builder().file(file.toString()).build();
+        }
+    }
+
+    static FlightSummary summarize(Path file, int top) throws IOException {
+        Map<String, Long> hotMethods = new HashMap<>();
+        Map<String, Long> allocationSites = new HashMap<>();
+        Map<String, Long> allocatedClasses = new HashMap<>();
+        long samples = 0;
+        long gcCount = 0;
+        Duration gcPauseTotal = Duration.ZERO;
+        Duration gcPauseMax = Duration.ZERO;
+
+        try (RecordingFile recordingFile = new RecordingFile(file)) {
+            while (recordingFile.hasMoreEvents()) {
+                RecordedEvent event = recordingFile.readEvent();
+                switch (event.getEventType().getName()) {
+                    case "jdk.ExecutionSample" -> {
+                        samples++;
+                        val frames = frames(event.getStackTrace());
+                        if (!frames.isEmpty()) {
+                            hotMethods.merge(name(frames.get(0), false), 1L, Long::sum);
+                        }
+                    }
+                    case "jdk.ObjectAllocationSample" -> {
+                        long weight = event.getLong("weight");
+                        allocatedClasses.merge(event.getClass("objectClass").getName(), weight, Long::sum);
+                        val frames = frames(event.getStackTrace());
+                        // 分配点记到第一个不在 JDK 里的调用者身上
+                        frames.stream()
+                                .filter(f -> JDK_PACKAGES.stream().noneMatch(f.getMethod().getType().getName()::startsWith))
+                                .findFirst()
+                                .or(() -> frames.stream().findFirst())
+                                .ifPresent(f -> allocationSites.merge(name(f, true), weight, Long::sum));
+                    }
+                    case "jdk.GarbageCollection" -> {
+                        gcCount++;
+                        gcPauseTotal = gcPauseTotal.plus(event.getDuration("sumOfPauses"));
+                        Duration longest = event.getDuration("longestPause");
+                        if (longest.compareTo(gcPauseMax) > 0) {
+                            gcPauseMax = longest;
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        return FlightSummary.builder()
+                .file(file.toString())
+                .gcCount(gcCount)
+                .gcPauseTotal(gcPauseTotal.toNanos() / 1e6)
+                .gcPauseMax(gcPauseMax.toNanos() / 1e6)
+                .executionSamples(samples)
+                .hotMethods(top(hotMethods, top))
+                .allocationSites(top(allocationSites, top))
+                .allocatedClasses(top(allocatedClasses, top))
+                .build();
+    }
+
+    private static List<RecordedFrame> frames(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return List.of();
+        }
+        return stackTrace.getFrames().stream().filter(RecordedFrame::isJavaFrame).collect(Collectors.toList());
+    }
+
+    private static String name(RecordedFrame frame, boolean withLine) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                + (withLine && frame.getLineNumber() > 0 ? ":" + frame.getLineNumber() : "");
+    }
+
+    private static List<FlightSummary.Entry> top(Map<String, Long> counts, int n) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(n)
+                .map(e -> new FlightSummary.Entry(e.getKey(), e.getValue()))
+                .collect(Collectors.toList());
+    }
+}
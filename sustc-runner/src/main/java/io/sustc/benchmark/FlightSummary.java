@@ -0,0 +1,63 @@
+package io.sustc.benchmark;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Digest of the flight recording of a benchmark step. Open the recording itself in JDK Mission Control for more.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlightSummary {
+
+    /**
+     * Path of the {@code .jfr} file.
+     */
+    private String file;
+
+    private long gcCount;
+
+    /**
+     * Time the application was paused by GC, in milliseconds.
+     */
+    private double gcPauseTotal;
+
+    private double gcPauseMax;
+
+    /**
+     * Number of execution samples taken, the base of {@link #hotMethods}.
+     */
+    private long executionSamples;
+
+    /**
+     * Methods on top of the stack in the most execution samples, by samples.
+     */
+    private List<Entry> hotMethods;
+
+    /**
+     * Methods outside the JDK that allocated the most, by estimated bytes.
+     * An allocation inside the JDK, e.g. in {@code ArrayList.grow}, is charged to the first caller outside it.
+     */
+    private List<Entry> allocationSites;
+
+    /**
+     * Classes allocated the most, by estimated bytes.
+     */
+    private List<Entry> allocatedClasses;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+
+        private String name;
+
+        private long value;
+    }
+}
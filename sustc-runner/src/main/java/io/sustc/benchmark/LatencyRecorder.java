@@ -0,0 +1,126 @@
+package io.sustc.benchmark;
+
+import io.sustc.service.RecipeService;
+import io.sustc.service.ReviewService;
+import io.sustc.service.UserService;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Times every call to the user, recipe and review services into one HDR histogram per method.
+ * <p>
+ * The service beans are wrapped in a proxy that records the time of each call, including calls that throw,
+ * while a step is being recorded ({@link #start()} to {@link #stop}) and adds nothing but a volatile read
+ * otherwise. It wraps whatever the container built, so a {@code @Transactional} call is timed with its transaction.
+ */
+@Profile("benchmark")
+@Component
+@Slf4j
+public class LatencyRecorder implements BeanPostProcessor {
+
+    private static final Class<?>[] SERVICES = {UserService.class, RecipeService.class, ReviewService.class};
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private volatile Map<String, Histogram> current;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        Class<?>[] services = Stream.of(SERVICES).filter(s -> s.isInstance(bean)).toArray(Class<?>[]::new);
+        if (services.length == 0) {
+            return bean;
+        }
+        log.debug("Timing calls to {}", beanName);
+        return Proxy.newProxyInstance(getClass().getClassLoader(), services, (proxy, method, args) -> {
+            Map<String, Histogram> histograms = current;
+            if (histograms == null || method.getDeclaringClass() == Object.class) {
+                return invoke(bean, method, args);
+            }
+            long start = System.nanoTime();
+            try {
+                return invoke(bean, method, args);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                histograms.computeIfAbsent(method.getDeclaringClass().getSimpleName() + "#" + method.getName(),
+                        k -> new ConcurrentHistogram(SIGNIFICANT_DIGITS)).recordValue(elapsed);
+            }
+        });
+    }
+
+    /**
+     * Starts recording into fresh histograms.
+     */
+    public void start() {
+        current = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Stops recording and summarizes the calls made since {@link #start()}.
+     *
+     * @param elapsedTime wall-clock time of the step in milliseconds, for the throughput
+     * @param withHistogram whether to attach the full histograms
+     * @return the summary of each method called, by {@code Service#method}
+     */
+    public Map<String, LatencySummary> stop(long elapsedTime, boolean withHistogram) {
+        Map<String, Histogram> histograms = current;
+        current = null;
+        Map<String, LatencySummary> summaries = new TreeMap<>();
+        if (histograms == null) {
+            return summaries;
+        }
+        histograms.forEach((name, h) -> summaries.put(name, summarize(h, elapsedTime, withHistogram)));
+        return summaries;
+    }
+
+    /**
+     * Summarizes a histogram of nanoseconds.
+     *
+     * @param elapsedTime wall-clock time the values were recorded over in milliseconds, for the throughput
+     */
+    static LatencySummary summarize(Histogram h, long elapsedTime, boolean withHistogram) {
+        // 计时用纳秒，报告里用微秒
+        val summary = LatencySummary.builder()
+                .count(h.getTotalCount())
+                .p50(micros(h.getValueAtPercentile(50)))
+                .p90(micros(h.getValueAtPercentile(90)))
+                .p99(micros(h.getValueAtPercentile(99)))
+                .p999(micros(h.getValueAtPercentile(99.9)))
+                .max(micros(h.getMaxValue()))
+                .throughput(elapsedTime > 0 ? h.getTotalCount() * 1000.0 / elapsedTime : null);
+        if (withHistogram) {
+            ByteBuffer buf = ByteBuffer.allocate(h.getNeededByteBufferCapacity());
+            int length = h.encodeIntoCompressedByteBuffer(buf);
+            summary.histogram(Base64.getEncoder().encodeToString(Arrays.copyOf(buf.array(), length)));
+        }
+        return summary.build();
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package io.sustc.benchmark;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Latency of the calls to one service method during a benchmark step.
+ * Percentiles and max are in microseconds.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LatencySummary {
+
+    private long count;
+
+    private long p50;
+
+    private long p90;
+
+    private long p99;
+
+    private long p999;
+
+    private long max;
+
+    /**
+     * Calls per second over the whole step.
+     */
+    private Double throughput;
+
+    /**
+     * The full histogram in nanoseconds, compressed and Base64 encoded, only filled with
+     * {@code benchmark.latency-histograms} on. Decode it with
+     * {@code Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(Base64.getDecoder().decode(histogram)), 0)}.
+     */
+    private String histogram;
+}
@@ -0,0 +1,108 @@
+package io.sustc.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * One-sided Mann-Whitney U test, for telling whether one set of benchmark runs is slower than another without
+ * assuming the timings are normally distributed.
+ * <p>
+ * Small samples without ties use the exact distribution of U; anything else the normal approximation with tie and
+ * continuity corrections.
+ */
+final class MannWhitney {
+
+    private static final int EXACT_LIMIT = 20;
+
+    private MannWhitney() {
+    }
+
+    /**
+     * @return the p-value of the hypothesis that values in {@code y} tend to be greater than those in {@code x}
+     */
+    static double pGreater(double[] x, double[] y) {
+        int m = y.length;
+        int n = x.length;
+        double u = 0;
+        for (double b : y) {
+            for (double a : x) {
+                u += b > a ? 1 : b == a ? 0.5 : 0;
+            }
+        }
+        double[] all = new double[m + n];
+        System.arraycopy(x, 0, all, 0, n);
+        System.arraycopy(y, 0, all, n, m);
+        Arrays.sort(all);
+        double ties = 0;
+        boolean tied = false;
+        for (int i = 0; i < all.length; ) {
+            int j = i;
+            while (j < all.length && all[j] == all[i]) {
+                j++;
+            }
+            double t = j - i;
+            ties += t * t * t - t;
+            tied |= t > 1;
+            i = j;
+        }
+
+        if (!tied && m <= EXACT_LIMIT && n <= EXACT_LIMIT) {
+            return exactUpperTail(m, n, (int) u);
+        }
+        double total = m + n;
+        double variance = m * n / 12.0 * ((total + 1) - ties / (total * (total - 1)));
+        if (variance <= 0) {
+            return 1;
+        }
+        double z = (u - m * n / 2.0 - 0.5) / Math.sqrt(variance);
+        return 0.5 * erfc(z / Math.sqrt(2));
+    }
+
+    /**
+     * P(U >= u) when all orderings of {@code m + n} distinct values are equally likely.
+     */
+    private static double exactUpperTail(int m, int n, int u) {
+        // counts[i][j][k]：i 个 y、j 个 x 时 U = k 的排列数
+        double[][][] counts = new double[m + 1][n + 1][];
+        for (int i = 0; i <= m; i++) {
+            for (int j = 0; j <= n; j++) {
+                double[] c = new double[i * j + 1];
+                if (i == 0 || j == 0) {
+                    c[0] = 1;
+                } else {
+                    // 最大的值属于 y 时它比 j 个 x 都大，属于 x 时不贡献
+                    double[] yLargest = counts[i - 1][j];
+                    double[] xLargest = counts[i][j - 1];
+                    for (int k = 0; k < yLargest.length; k++) {
+                        c[k + j] += yLargest[k];
+                    }
+                    for (int k = 0; k < xLargest.length; k++) {
+                        c[k] += xLargest[k];
+                    }
+                }
+                counts[i][j] = c;
+            }
+        }
+        double[] c = counts[m][n];
+        double tail = 0;
+        double all = 0;
+        for (int k = 0; k < c.length; k++) {
+            all += c[k];
+            if (k >= u) {
+                tail += c[k];
+            }
+        }
+        return tail / all;
+    }
+
+    /**
+     * Complementary error function, with a fractional error below 1.2e-7 (Numerical Recipes, {@code erfcc}).
+     */
+    private static double erfc(double x) {
+        double z = Math.abs(x);
+        double t = 1 / (1 + 0.5 * z);
+        double r = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+                + t * (-0.82215223 + t * 0.17087277)))))))));
+        return x >= 0 ? r : 2 - r;
+    }
+}
@@ -0,0 +1,258 @@
+package io.sustc.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares benchmark reports of a baseline against those of a current version, step by step.
+ * <p>
+ * Each side may hold several runs, one report file each, and a run may have repeated a step several times. The
+ * elapsed times of a step over all measured trials, and the p99 latency of each service method when the reports
+ * carry it, are compared with a one-sided {@link MannWhitney} test over those samples:
+ * a change counts when the medians differ by more than {@code threshold} and the test agrees at level
+ * {@code alpha}. A change above the threshold with fewer than two runs on either side cannot be tested and is
+ * reported as {@link Verdict#SUSPECT}. A step whose median pass count drops by more than {@code passThreshold}
+ * is a regression whatever the timings say.
+ */
+public class ReportComparator {
+
+    public enum Verdict {
+        UNCHANGED, IMPROVED, REGRESSED, SUSPECT
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Row {
+
+        private int step;
+
+        /**
+         * {@code elapsed} for the step's wall-clock time, otherwise {@code Service#method p99}.
+         */
+        private String metric;
+
+        private int baselineRuns;
+
+        private int currentRuns;
+
+        private double baselineMedian;
+
+        private double currentMedian;
+
+        /**
+         * Relative change of the median, {@code 0.1} being 10% slower.
+         */
+        private double change;
+
+        /**
+         * p-value of the test in the direction of the change, {@code null} if there were too few runs.
+         */
+        private Double pValue;
+
+        private Long baselinePass;
+
+        private Long currentPass;
+
+        private Verdict verdict;
+    }
+
+    private static final TypeReference<List<BenchmarkResult>> REPORT = new TypeReference<>() {
+    };
+
+    private final double threshold;
+
+    private final double alpha;
+
+    private final long passThreshold;
+
+    public ReportComparator(double threshold, double alpha, long passThreshold) {
+        this.threshold = threshold;
+        this.alpha = alpha;
+        this.passThreshold = passThreshold;
+    }
+
+    /**
+     * Reads the reports listed in {@code spec}, comma separated. A directory stands for all the
+     * {@code benchmark-*.json} files in it.
+     */
+    public static List<List<BenchmarkResult>> load(ObjectMapper objectMapper, String spec) throws IOException {
+        List<List<BenchmarkResult>> runs = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            Path path = Paths.get(part.trim());
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.list(path)) {
+                    for (Path file : files.filter(f -> f.getFileName().toString().matches("benchmark-.*\\.json")).sorted().toList()) {
+                        runs.add(objectMapper.readValue(file.toFile(), REPORT));
+                    }
+                }
+            } else {
+                runs.add(objectMapper.readValue(path.toFile(), REPORT));
+            }
+        }
+        if (runs.isEmpty()) {
+            throw new IOException("No benchmark reports in " + spec);
+        }
+        return runs;
+    }
+
+    public List<Row> compare(List<List<BenchmarkResult>> baseline, List<List<BenchmarkResult>> current) {
+        Map<Integer, List<BenchmarkResult>> base = byStep(baseline);
+        Map<Integer, List<BenchmarkResult>> cur = byStep(current);
+        List<Row> rows = new ArrayList<>();
+        for (int step : new TreeSet<>(base.keySet())) {
+            if (!cur.containsKey(step)) {
+                continue;
+            }
+            List<BenchmarkResult> b = base.get(step);
+            List<BenchmarkResult> c = cur.get(step);
+            Row row = compare(step, "elapsed", elapsed(b), elapsed(c));
+            if (row != null) {
+                double[] basePass = values(b, BenchmarkResult::getPassCnt);
+                double[] curPass = values(c, BenchmarkResult::getPassCnt);
+                if (basePass.length > 0 && curPass.length > 0) {
+                    row.setBaselinePass((long) median(basePass));
+                    row.setCurrentPass((long) median(curPass));
+                    if (row.getCurrentPass() < row.getBaselinePass() - passThreshold) {
+                        row.setVerdict(Verdict.REGRESSED);
+                    }
+                }
+                rows.add(row);
+            }
+            for (String method : methods(b)) {
+                Row p99 = compare(step, method + " p99", p99(b, method), p99(c, method));
+                if (p99 != null) {
+                    rows.add(p99);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return whether any row is a regression
+     */
+    public static boolean regressed(List<Row> rows) {
+        return rows.stream().anyMatch(r -> r.getVerdict() == Verdict.REGRESSED);
+    }
+
+    public static String format(List<Row> rows) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-4s %-36s %5s %12s %12s %8s %8s %13s  %s%n",
+                "step", "metric", "runs", "baseline", "current", "change", "p", "pass", "verdict"));
+        for (Row r : rows) {
+            String pass = r.getBaselinePass() == null ? "" : r.getBaselinePass() + "->" + r.getCurrentPass();
+            sb.append(String.format("%-4d %-36s %2d/%-2d %12.1f %12.1f %+7.1f%% %8s %13s  %s%n",
+                    r.getStep(), r.getMetric(), r.getBaselineRuns(), r.getCurrentRuns(),
+                    r.getBaselineMedian(), r.getCurrentMedian(), r.getChange() * 100,
+                    r.getPValue() == null ? "-" : String.format("%.4f", r.getPValue()), pass, r.getVerdict()));
+        }
+        long regressed = rows.stream().filter(r -> r.getVerdict() == Verdict.REGRESSED).count();
+        long suspect = rows.stream().filter(r -> r.getVerdict() == Verdict.SUSPECT).count();
+        long improved = rows.stream().filter(r -> r.getVerdict() == Verdict.IMPROVED).count();
+        sb.append(String.format("%d regressed, %d suspect, %d improved, %d compared%n", regressed, suspect, improved, rows.size()));
+        return sb.toString();
+    }
+
+    private Row compare(int step, String metric, double[] base, double[] cur) {
+        if (base.length == 0 || cur.length == 0) {
+            return null;
+        }
+        double baseMedian = median(base);
+        double curMedian = median(cur);
+        // 基线为 0 时无法算相对变化，按没有变化处理
+        double change = baseMedian > 0 ? curMedian / baseMedian - 1 : 0;
+        Double p = null;
+        Verdict verdict = Verdict.UNCHANGED;
+        if (base.length >= 2 && cur.length >= 2) {
+            p = change >= 0 ? MannWhitney.pGreater(base, cur) : MannWhitney.pGreater(cur, base);
+            if (Math.abs(change) > threshold && p < alpha) {
+                verdict = change > 0 ? Verdict.REGRESSED : Verdict.IMPROVED;
+            }
+        } else if (change > threshold) {
+            verdict = Verdict.SUSPECT;
+        }
+        return Row.builder()
+                .step(step)
+                .metric(metric)
+                .baselineRuns(base.length)
+                .currentRuns(cur.length)
+                .baselineMedian(baseMedian)
+                .currentMedian(curMedian)
+                .change(change)
+                .pValue(p)
+                .verdict(verdict)
+                .build();
+    }
+
+    private static Map<Integer, List<BenchmarkResult>> byStep(List<List<BenchmarkResult>> runs) {
+        return runs.stream()
+                .flatMap(List::stream)
+                .filter(r -> r.getId() != null)
+                .collect(Collectors.groupingBy(BenchmarkResult::getId, TreeMap::new, Collectors.toList()));
+    }
+
+    /**
+     * Values of one field over the runs, skipping runs without it and timed-out runs ({@code -1}).
+     */
+    private static double[] values(List<BenchmarkResult> results, Function<BenchmarkResult, Long> field) {
+        return results.stream()
+                .map(field)
+                .filter(Objects::nonNull)
+                .filter(v -> v >= 0)
+                .mapToDouble(Long::doubleValue)
+                .toArray();
+    }
+
+    /**
+     * Elapsed times over the runs, taking every measured trial of a run that repeated the step as a sample of its own.
+     */
+    private static double[] elapsed(List<BenchmarkResult> results) {
+        return results.stream()
+                .flatMap(r -> r.getTrials() != null ? r.getTrials().getElapsedTimes().stream() : Stream.ofNullable(r.getElapsedTime()))
+                .filter(v -> v >= 0)
+                .mapToDouble(Long::doubleValue)
+                .toArray();
+    }
+
+    private static TreeSet<String> methods(List<BenchmarkResult> results) {
+        TreeSet<String> methods = new TreeSet<>();
+        results.stream().map(BenchmarkResult::getLatency).filter(Objects::nonNull).forEach(l -> methods.addAll(l.keySet()));
+        return methods;
+    }
+
+    private static double[] p99(List<BenchmarkResult> results, String method) {
+        return results.stream()
+                .map(BenchmarkResult::getLatency)
+                .filter(l -> l != null && l.containsKey(method))
+                .mapToDouble(l -> l.get(method).getP99())
+                .toArray();
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int mid = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2;
+    }
+}
@@ -0,0 +1,69 @@
+package io.sustc.benchmark;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What PostgreSQL did during the measured trials of a benchmark step, as deltas of its statistics views.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ServerStats {
+
+    /**
+     * Counters of {@code pg_stat_database} for the benchmark database, by column, e.g. {@code blks_hit}.
+     */
+    private Map<String, Long> database;
+
+    /**
+     * Counters of {@code pg_stat_user_tables}, by table and column, only for the tables touched.
+     */
+    private Map<String, Map<String, Long>> tables;
+
+    /**
+     * Statements executed, summed over all distinct statements; {@code null} without {@code pg_stat_statements}.
+     */
+    private Long calls;
+
+    /**
+     * Number of distinct statements executed.
+     */
+    private Integer statements;
+
+    /**
+     * The statements with the largest total execution time, slowest first.
+     */
+    private List<Statement> topStatements;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Statement {
+
+        /**
+         * Normalized text, with constants replaced by {@code $n}.
+         */
+        private String query;
+
+        private long calls;
+
+        /**
+         * Total execution time in milliseconds.
+         */
+        private double totalTime;
+
+        private long rows;
+
+        private long sharedBlksHit;
+
+        private long sharedBlksRead;
+    }
+}
@@ -0,0 +1,205 @@
+package io.sustc.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Snapshots the PostgreSQL statistics views around each measured trial of a step and sums up the deltas.
+ * <p>
+ * Deltas are taken per trial rather than over the whole step, because a {@link DatabaseCheckpoint.Strategy#TEMPLATE}
+ * restore between trials recreates the database and resets its counters. {@code pg_stat_statements} is optional;
+ * without the extension only the database and table counters are reported.
+ */
+@Profile("benchmark")
+@Component
+@Slf4j
+public class ServerStatsRecorder {
+
+    private static final List<String> DATABASE_COLUMNS = List.of(
+            "xact_commit", "xact_rollback", "blks_read", "blks_hit",
+            "tup_returned", "tup_fetched", "tup_inserted", "tup_updated", "tup_deleted", "temp_bytes");
+
+    private static final List<String> TABLE_COLUMNS = List.of(
+            "seq_scan", "seq_tup_read", "idx_scan", "idx_tup_fetch", "n_tup_ins", "n_tup_upd", "n_tup_del", "n_tup_hot_upd");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BenchmarkConfig benchmarkConfig;
+
+    /**
+     * Text of the {@code pg_stat_statements} query, {@code ""} if the extension is missing, {@code null} before
+     * the first look.
+     */
+    private String statementsQuery;
+
+    private Snapshot before;
+
+    private Map<String, Long> database;
+
+    private Map<String, Map<String, Long>> tables;
+
+    private Map<Long, ServerStats.Statement> statements;
+
+    private record Snapshot(Map<String, Long> database,
+                            Map<String, Map<String, Long>> tables,
+                            Map<Long, ServerStats.Statement> statements) {
+    }
+
+    /**
+     * Clears the sums for a new step.
+     */
+    public void start() {
+        if (!benchmarkConfig.isServerStats()) {
+            return;
+        }
+        database = new TreeMap<>();
+        tables = new TreeMap<>();
+        statements = new HashMap<>();
+    }
+
+    public void beforeTrial() {
+        if (database != null) {
+            before = snapshot();
+        }
+    }
+
+    public void afterTrial() {
+        if (database == null || before == null) {
+            return;
+        }
+        val after = snapshot();
+        add(database, after.database(), before.database());
+        after.tables().forEach((table, counters) ->
+                add(tables.computeIfAbsent(table, k -> new TreeMap<>()), counters, before.tables().getOrDefault(table, Map.of())));
+        after.statements().forEach((id, s) -> {
+            val b = before.statements().get(id);
+            long calls = s.getCalls() - (b == null ? 0 : b.getCalls());
+            // 被 pg_stat_statements 淘汰后又出现的语句，计数从零开始，没法算差值
+            if (calls <= 0) {
+                return;
+            }
+            val sum = statements.computeIfAbsent(id, k -> ServerStats.Statement.builder().query(s.getQuery()).build());
+            sum.setCalls(sum.getCalls() + calls);
+            sum.setTotalTime(sum.getTotalTime() + s.getTotalTime() - (b == null ? 0 : b.getTotalTime()));
+            sum.setRows(sum.getRows() + s.getRows() - (b == null ? 0 : b.getRows()));
+            sum.setSharedBlksHit(sum.getSharedBlksHit() + s.getSharedBlksHit() - (b == null ? 0 : b.getSharedBlksHit()));
+            sum.setSharedBlksRead(sum.getSharedBlksRead() + s.getSharedBlksRead() - (b == null ? 0 : b.getSharedBlksRead()));
+        });
+        before = null;
+    }
+
+    /**
+     * @return the sums since {@link #start()}, {@code null} if disabled
+     */
+    public ServerStats stop() {
+        if (database == null) {
+            return null;
+        }
+        tables.values().removeIf(counters -> counters.values().stream().allMatch(v -> v == 0));
+        boolean withStatements = statementsQuery != null && !statementsQuery.isEmpty();
+        val stats = ServerStats.builder()
+                .database(database)
+                .tables(tables)
+                .calls(withStatements ? statements.values().stream().mapToLong(ServerStats.Statement::getCalls).sum() : null)
+                .statements(withStatements ? statements.size() : null)
+                .topStatements(withStatements ? statements.values().stream()
+                        .sorted(Comparator.comparingDouble(ServerStats.Statement::getTotalTime).reversed())
+                        .limit(benchmarkConfig.getServerStatsTopStatements())
+                        .collect(Collectors.toList()) : null)
+                .build();
+        database = null;
+        tables = null;
+        statements = null;
+        before = null;
+        return stats;
+    }
+
+    private Snapshot snapshot() {
+        try {
+            // pg_stat_database 和 pg_stat_user_tables 的计数由各个后端延迟上报，先等它们刷新
+            Thread.sleep(benchmarkConfig.getServerStatsSettle().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        val db = jdbcTemplate.queryForMap("SELECT " + String.join(", ", DATABASE_COLUMNS)
+                + " FROM pg_stat_database WHERE datname = current_database()");
+        Map<String, Long> databaseCounters = new TreeMap<>();
+        DATABASE_COLUMNS.forEach(c -> databaseCounters.put(c, asLong(db.get(c))));
+
+        Map<String, Map<String, Long>> tableCounters = new HashMap<>();
+        jdbcTemplate.query("SELECT relname, " + String.join(", ", TABLE_COLUMNS)
+                + " FROM pg_stat_user_tables WHERE schemaname = 'public'", rs -> {
+            Map<String, Long> counters = new TreeMap<>();
+            for (String c : TABLE_COLUMNS) {
+                counters.put(c, rs.getLong(c));
+            }
+            tableCounters.put(rs.getString("relname"), counters);
+        });
+
+        Map<Long, ServerStats.Statement> statementCounters = new HashMap<>();
+        if (statementsQuery().isEmpty()) {
+            return new Snapshot(databaseCounters, tableCounters, statementCounters);
+        }
+        jdbcTemplate.query(statementsQuery, rs -> {
+            statementCounters.put(rs.getLong("queryid"), ServerStats.Statement.builder()
+                    .query(rs.getString("query"))
+                    .calls(rs.getLong("calls"))
+                    .totalTime(rs.getDouble("total_time"))
+                    .rows(rs.getLong("rows"))
+                    .sharedBlksHit(rs.getLong("shared_blks_hit"))
+                    .sharedBlksRead(rs.getLong("shared_blks_read"))
+                    .build());
+        });
+        return new Snapshot(databaseCounters, tableCounters, statementCounters);
+    }
+
+    private String statementsQuery() {
+        if (statementsQuery != null) {
+            return statementsQuery;
+        }
+        val installed = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_extension WHERE extname = 'pg_stat_statements'", Long.class);
+        if (installed == null || installed == 0) {
+            log.warn("pg_stat_statements is not installed in this database, statements will not be reported");
+            statementsQuery = "";
+            return statementsQuery;
+        }
+        // PostgreSQL 13 把 total_time 改名为 total_exec_time
+        val version = jdbcTemplate.queryForObject("SELECT current_setting('server_version_num')::int", Integer.class);
+        val totalTime = version != null && version >= 130000 ? "total_exec_time" : "total_time";
+        // 同一条语句在顶层和嵌套调用下各有一行，这里合并；统计查询自身也排除掉
+        statementsQuery = """
+                SELECT queryid, min(query) AS query, sum(calls) AS calls, sum(%s) AS total_time, sum(rows) AS rows,
+                       sum(shared_blks_hit) AS shared_blks_hit, sum(shared_blks_read) AS shared_blks_read
+                FROM pg_stat_statements
+                WHERE dbid = (SELECT oid FROM pg_database WHERE datname = current_database())
+                  AND queryid IS NOT NULL
+                  AND query NOT LIKE '%%pg_stat%%'
+                GROUP BY queryid
+                """.formatted(totalTime);
+        return statementsQuery;
+    }
+
+    private static void add(Map<String, Long> sum, Map<String, Long> after, Map<String, Long> before) {
+        after.forEach((c, v) -> sum.merge(c, v - before.getOrDefault(c, 0L), Long::sum));
+    }
+
+    private static long asLong(Object value) {
+        return value instanceof Number n ? n.longValue() : 0;
+    }
+}
@@ -0,0 +1,65 @@
+package io.sustc.benchmark;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Elapsed times of the measured trials of a step that ran more than once, in milliseconds.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrialSummary {
+
+    /**
+     * Two-sided 97.5% quantiles of Student's t distribution for 1 to 30 degrees of freedom.
+     */
+    private static final double[] T_975 = {
+            12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+    };
+
+    /**
+     * Unmeasured trials run before these.
+     */
+    private int warmup;
+
+    private List<Long> elapsedTimes;
+
+    private double mean;
+
+    /**
+     * Sample standard deviation.
+     */
+    private double stddev;
+
+    /**
+     * Lower bound of the 95% confidence interval of the mean.
+     */
+    private double ciLow;
+
+    private double ciHigh;
+
+    static TrialSummary of(int warmup, List<Long> elapsedTimes) {
+        int n = elapsedTimes.size();
+        double mean = elapsedTimes.stream().mapToLong(Long::longValue).average().orElse(0);
+        double squares = elapsedTimes.stream().mapToDouble(t -> (t - mean) * (t - mean)).sum();
+        double stddev = n > 1 ? Math.sqrt(squares / (n - 1)) : 0;
+        double t = n > 1 ? (n - 1 <= T_975.length ? T_975[n - 2] : 1.96) : 0;
+        double halfWidth = n > 1 ? t * stddev / Math.sqrt(n) : 0;
+        return TrialSummary.builder()
+                .warmup(warmup)
+                .elapsedTimes(elapsedTimes)
+                .mean(mean)
+                .stddev(stddev)
+                .ciLow(mean - halfWidth)
+                .ciHigh(mean + halfWidth)
+                .build();
+    }
+}
@@ -0,0 +1,66 @@
+package io.sustc.benchmark;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Outcome of one open-loop workload stage at a fixed target rate.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkloadReport {
+
+    /**
+     * Operations started per second, as scheduled.
+     */
+    private double targetRate;
+
+    /**
+     * Operations completed per second. Falls behind the target once the service layer is saturated.
+     */
+    private double achievedRate;
+
+    private long elapsedTime;
+
+    /**
+     * Operations not finished when the stage gave up waiting for them.
+     */
+    private long unfinished;
+
+    /**
+     * Per operation, by service method name.
+     */
+    private Map<String, OperationStats> operations;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class OperationStats {
+
+        private long count;
+
+        private long errors;
+
+        /**
+         * Number of errors by exception class.
+         */
+        private Map<String, Long> errorTypes;
+
+        /**
+         * Measured from the scheduled start, so time spent queued behind a saturated service layer counts.
+         */
+        private LatencySummary latency;
+
+        /**
+         * Measured from the moment a worker picked the operation up.
+         */
+        private LatencySummary serviceTime;
+    }
+}
@@ -0,0 +1,327 @@
+package io.sustc.benchmark;
+
+import io.sustc.dto.AuthInfo;
+import io.sustc.dto.RecipeRecord;
+import io.sustc.dto.ReviewRecord;
+import io.sustc.dto.UserRecord;
+import io.sustc.service.RecipeService;
+import io.sustc.service.ReviewService;
+import io.sustc.service.UserService;
+import io.sustc.snapshot.SnapshotSchema;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the services with a mix of operations, open-loop, at a fixed target rate.
+ * <p>
+ * Operations are started on schedule whether or not earlier ones have finished, the way independent clients
+ * would send them, and handed to a fixed pool of workers. Once the services cannot keep up, operations queue
+ * for a worker and their latency, measured from the scheduled start, grows without bound; running stages at
+ * increasing rates shows where that happens.
+ * <p>
+ * Users, recipes and reviews are drawn from Zipfian distributions over the import data, so a few keys are hot
+ * and most are cold. The keys are shuffled with a fixed seed first, so the hot ones are not simply the lowest
+ * ids and two runs hit the same keys. {@code addReview} and {@code likeReview} write to the database.
+ */
+@Service
+@Slf4j
+public class WorkloadService {
+
+    public enum Operation {
+        GET_RECIPE_BY_ID("getRecipeById"),
+        SEARCH_RECIPES("searchRecipes"),
+        FEED("feed"),
+        LIKE_REVIEW("likeReview"),
+        ADD_REVIEW("addReview");
+
+        /**
+         * Name of the service method, used in mixes and reports.
+         */
+        private final String method;
+
+        Operation(String method) {
+            this.method = method;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        static Operation of(String method) {
+            for (Operation op : values()) {
+                if (op.method.equals(method)) {
+                    return op;
+                }
+            }
+            throw new IllegalArgumentException("Unknown operation " + method);
+        }
+    }
+
+    private static final String[] KEYWORDS = {
+            "chicken", "cake", "salad", "soup", "bread", "beef", "pasta", "cookies", "pie", "rice"
+    };
+
+    private static final long SHUFFLE_SEED = 307;
+
+    /**
+     * How long a stage waits for the operations still queued or running after the last one was scheduled.
+     */
+    private static final long DRAIN_SECONDS = 60;
+
+    @Autowired
+    private BenchmarkService benchmarkService;
+
+    @Autowired(required = false)
+    private UserService userService;
+
+    @Autowired(required = false)
+    private RecipeService recipeService;
+
+    @Autowired(required = false)
+    private ReviewService reviewService;
+
+    private Keys cachedKeys;
+
+    /**
+     * Parses a mix such as {@code getRecipeById=60,searchRecipes=20,feed=10,likeReview=5,addReview=5}.
+     * Weights are relative and need not add up to 100.
+     */
+    public static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split("=");
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Expected operation=weight, got " + part);
+            }
+            int weight = Integer.parseInt(kv[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight for " + kv[0]);
+            }
+            weights.put(Operation.of(kv[0].trim()), weight);
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("The mix has no operation with a positive weight");
+        }
+        return weights;
+    }
+
+    /**
+     * Runs one stage at {@code rate} operations per second for {@code durationSeconds}.
+     *
+     * @param threads number of workers calling the services
+     * @param theta   skew of the key distributions, in {@code (0, 1)}
+     */
+    public WorkloadReport run(Map<Operation, Integer> mix, double rate, int durationSeconds, int threads, double theta)
+            throws InterruptedException {
+        Keys keys = keys(theta);
+        Operation[] table = weightTable(mix);
+        Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+        mix.keySet().forEach(op -> stats.put(op, new Stats()));
+
+        val threadId = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "sustc-workload-" + threadId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        val lastCompletion = new AtomicLong();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        long scheduled = 0;
+        try {
+            for (long i = 0; ; i++) {
+                long intended = start + (long) (i * 1e9 / rate);
+                if (intended >= end) {
+                    break;
+                }
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                Operation op = table[ThreadLocalRandom.current().nextInt(table.length)];
+                Stats s = stats.get(op);
+                workers.execute(() -> {
+                    long begin = System.nanoTime();
+                    try {
+                        call(op, keys, ThreadLocalRandom.current());
+                    } catch (Exception e) {
+                        s.errors.computeIfAbsent(e.getClass().getSimpleName(), k -> new LongAdder()).increment();
+                    } finally {
+                        long done = System.nanoTime();
+                        s.latency.recordValue(done - intended);
+                        s.serviceTime.recordValue(done - begin);
+                        lastCompletion.accumulateAndGet(done, Math::max);
+                    }
+                });
+                scheduled++;
+            }
+            workers.shutdown();
+            if (!workers.awaitTermination(DRAIN_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Operations still pending {} s after the stage ended, abandoning them", DRAIN_SECONDS);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        long completed = stats.values().stream().mapToLong(s -> s.latency.getTotalCount()).sum();
+        long elapsedTime = TimeUnit.NANOSECONDS.toMillis(Math.max(lastCompletion.get(), end) - start);
+        Map<String, WorkloadReport.OperationStats> operations = new LinkedHashMap<>();
+        stats.forEach((op, s) -> {
+            Map<String, Long> errorTypes = new LinkedHashMap<>();
+            s.errors.forEach((type, count) -> errorTypes.put(type, count.sum()));
+            operations.put(op.getMethod(), WorkloadReport.OperationStats.builder()
+                    .count(s.latency.getTotalCount())
+                    .errors(errorTypes.values().stream().mapToLong(Long::longValue).sum())
+                    .errorTypes(errorTypes)
+                    .latency(LatencyRecorder.summarize(s.latency, elapsedTime, false))
+                    .serviceTime(LatencyRecorder.summarize(s.serviceTime, elapsedTime, false))
+                    .build());
+        });
+        return WorkloadReport.builder()
+                .targetRate(rate)
+                .achievedRate(elapsedTime > 0 ? completed * 1000.0 / elapsedTime : 0)
+                .elapsedTime(elapsedTime)
+                .unfinished(scheduled - completed)
+                .operations(operations)
+                .build();
+    }
+
+    private void call(Operation op, Keys keys, Random random) {
+        switch (op) {
+            case GET_RECIPE_BY_ID -> recipeService.getRecipeById(keys.recipe(random));
+            case SEARCH_RECIPES -> recipeService.searchRecipes(
+                    KEYWORDS[(int) keys.keywords.next(random)], null, null, 1, 10, "rating_desc");
+            case FEED -> userService.feed(keys.user(random), 1, 10, null);
+            case LIKE_REVIEW -> {
+                AuthInfo auth = keys.user(random);
+                int review = keys.review(random);
+                // 不能给自己的评论点赞，换一个用户
+                if (keys.reviewAuthors[review] == auth.getAuthorId()) {
+                    auth = keys.user(random);
+                }
+                reviewService.likeReview(auth, keys.reviewIds[review]);
+            }
+            case ADD_REVIEW -> reviewService.addReview(keys.user(random), keys.recipe(random),
+                    1 + random.nextInt(5), "workload review " + random.nextInt(1_000_000));
+        }
+    }
+
+    /**
+     * Lays the operations out by weight, so a uniform index into the table picks one with the mix's probabilities.
+     */
+    private static Operation[] weightTable(Map<Operation, Integer> mix) {
+        List<Operation> table = new ArrayList<>();
+        mix.forEach((op, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                table.add(op);
+            }
+        });
+        return table.toArray(Operation[]::new);
+    }
+
+    /**
+     * Loads the keys from the import data on first use; the Zipfian tables are rebuilt when {@code theta} changes.
+     */
+    private synchronized Keys keys(double theta) {
+        if (cachedKeys == null || cachedKeys.theta != theta) {
+            List<UserRecord> users = benchmarkService.importRecords(SnapshotSchema.USERS, BenchmarkConstants.USER_RECORDS);
+            List<RecipeRecord> recipes = benchmarkService.importRecords(SnapshotSchema.RECIPES, BenchmarkConstants.RECIPE_RECORDS);
+            List<ReviewRecord> reviews = benchmarkService.importRecords(SnapshotSchema.REVIEWS, BenchmarkConstants.REVIEW_RECORDS);
+            cachedKeys = new Keys(users, recipes, reviews, theta);
+            log.info("Workload keys: {} users, {} recipes, {} reviews, theta {}",
+                    cachedKeys.auths.length, cachedKeys.recipeIds.length, cachedKeys.reviewIds.length, theta);
+        }
+        return cachedKeys;
+    }
+
+    private static final class Stats {
+
+        final Histogram latency = new ConcurrentHistogram(3);
+
+        final Histogram serviceTime = new ConcurrentHistogram(3);
+
+        final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    }
+
+    private static final class Keys {
+
+        final double theta;
+
+        final AuthInfo[] auths;
+
+        final long[] recipeIds;
+
+        final long[] reviewIds;
+
+        final long[] reviewAuthors;
+
+        final ZipfianGenerator users;
+
+        final ZipfianGenerator recipes;
+
+        final ZipfianGenerator reviews;
+
+        final ZipfianGenerator keywords;
+
+        Keys(List<UserRecord> userRecords, List<RecipeRecord> recipeRecords, List<ReviewRecord> reviewRecords, double theta) {
+            this.theta = theta;
+            Random random = new Random(SHUFFLE_SEED);
+            List<AuthInfo> auths = new ArrayList<>();
+            for (UserRecord u : userRecords) {
+                if (!u.isDeleted()) {
+                    auths.add(new AuthInfo(u.getAuthorId(), u.getPassword()));
+                }
+            }
+            Collections.shuffle(auths, random);
+            this.auths = auths.toArray(AuthInfo[]::new);
+
+            List<Long> recipes = new ArrayList<>(recipeRecords.size());
+            recipeRecords.forEach(r -> recipes.add(r.getRecipeId()));
+            Collections.shuffle(recipes, random);
+            this.recipeIds = recipes.stream().mapToLong(Long::longValue).toArray();
+
+            List<ReviewRecord> reviews = new ArrayList<>(reviewRecords);
+            Collections.shuffle(reviews, random);
+            this.reviewIds = reviews.stream().mapToLong(ReviewRecord::getReviewId).toArray();
+            this.reviewAuthors = reviews.stream().mapToLong(ReviewRecord::getAuthorId).toArray();
+
+            this.users = new ZipfianGenerator(this.auths.length, theta);
+            this.recipes = new ZipfianGenerator(recipeIds.length, theta);
+            this.reviews = new ZipfianGenerator(reviewIds.length, theta);
+            this.keywords = new ZipfianGenerator(KEYWORDS.length, theta);
+        }
+
+        AuthInfo user(Random random) {
+            return auths[(int) users.next(random)];
+        }
+
+        long recipe(Random random) {
+            return recipeIds[(int) recipes.next(random)];
+        }
+
+        int review(Random random) {
+            return (int) reviews.next(random);
+        }
+    }
+}
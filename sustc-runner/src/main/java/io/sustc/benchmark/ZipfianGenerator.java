@@ -0,0 +1,62 @@
+package io.sustc.benchmark;
+
+import java.util.Random;
+
+/**
+ * Draws ranks in {@code [0, n)} with a Zipfian distribution: rank {@code k} comes up with a probability
+ * proportional to {@code 1 / (k + 1)^theta}, so rank 0 is the hottest.
+ * <p>
+ * Uses the rejection-free method of Gray et al., "Quickly Generating Billion-Record Synthetic Databases", as
+ * YCSB does: the normalization constant is computed once, in {@code O(n)}, and every draw is {@code O(1)}.
+ * Instances are immutable and can be shared between threads, each passing its own random source.
+ */
+final class ZipfianGenerator {
+
+    private final long n;
+
+    private final double theta;
+
+    private final double alpha;
+
+    private final double zetan;
+
+    private final double eta;
+
+    /**
+     * @param theta skew in {@code (0, 1)}; YCSB uses 0.99
+     */
+    ZipfianGenerator(long n, double theta) {
+        if (n < 1) {
+            throw new IllegalArgumentException("Zipfian over an empty range");
+        }
+        if (!(theta > 0 && theta < 1)) {
+            throw new IllegalArgumentException("theta must be in (0, 1), got " + theta);
+        }
+        this.n = n;
+        this.theta = theta;
+        this.alpha = 1 / (1 - theta);
+        this.zetan = zeta(n, theta);
+        double zeta2 = zeta(Math.min(n, 2), theta);
+        this.eta = n < 2 ? 0 : (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta2 / zetan);
+    }
+
+    long next(Random random) {
+        double u = random.nextDouble();
+        double uz = u * zetan;
+        if (uz < 1 || n == 1) {
+            return 0;
+        }
+        if (uz < 1 + Math.pow(0.5, theta)) {
+            return 1;
+        }
+        return Math.min(n - 1, (long) (n * Math.pow(eta * u - eta + 1, alpha)));
+    }
+
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
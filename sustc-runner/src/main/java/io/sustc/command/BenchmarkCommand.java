@@ -0,0 +1,92 @@
+package io.sustc.command;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.sustc.benchmark.BenchmarkConfig;
+import io.sustc.benchmark.LatencySummary;
+import io.sustc.benchmark.ReportComparator;
+import io.sustc.benchmark.WorkloadReport;
+import io.sustc.benchmark.WorkloadService;
+import io.sustc.service.DatabaseService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.ObjectUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@ShellComponent
+@ConditionalOnBean(DatabaseService.class)
+public class BenchmarkCommand {
+
+    @Autowired
+    private WorkloadService workloadService;
+
+    @Autowired
+    private BenchmarkConfig config;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @ShellMethod(key = "benchmark workload", value = "Run a mixed open-loop workload at one or more target rates against the imported data")
+    public void workload(@ShellOption(defaultValue = "getRecipeById=60,searchRecipes=20,feed=10,likeReview=5,addReview=5") String mix,
+                         @ShellOption(defaultValue = "100,200,400", help = "operations per second, one stage per rate") String rates,
+                         @ShellOption(defaultValue = "30", help = "seconds per stage") int duration,
+                         @ShellOption(defaultValue = "64") int threads,
+                         @ShellOption(defaultValue = "0.99", help = "Zipfian skew of the keys") double theta) throws InterruptedException, IOException {
+        Map<WorkloadService.Operation, Integer> weights = WorkloadService.parseMix(mix);
+        List<WorkloadReport> reports = new ArrayList<>();
+        for (double rate : Arrays.stream(rates.split(",")).map(String::trim).mapToDouble(Double::parseDouble).toArray()) {
+            WorkloadReport report = workloadService.run(weights, rate, duration, threads, theta);
+            reports.add(report);
+            print(report);
+        }
+
+        File reportFile = Paths.get(ObjectUtils.defaultIfNull(config.getReportPath(), ""))
+                .resolve(String.format("workload-%d.json", System.currentTimeMillis()))
+                .toAbsolutePath()
+                .toFile();
+        objectMapper.writeValue(reportFile, reports);
+        System.out.println("Report written to " + reportFile);
+    }
+
+    @ShellMethod(key = "benchmark compare", value = "Compare benchmark reports of the current version against a baseline, step by step")
+    public String compare(@ShellOption(help = "baseline report files or directories, comma separated") String baseline,
+                          @ShellOption(help = "current report files or directories, comma separated") String current,
+                          @ShellOption(defaultValue = ShellOption.NULL) Double threshold,
+                          @ShellOption(defaultValue = ShellOption.NULL) Double alpha,
+                          @ShellOption(defaultValue = ShellOption.NULL) Long passThreshold) throws IOException {
+        ReportComparator comparator = new ReportComparator(
+                ObjectUtils.defaultIfNull(threshold, config.getRegressionThreshold()),
+                ObjectUtils.defaultIfNull(alpha, config.getRegressionAlpha()),
+                ObjectUtils.defaultIfNull(passThreshold, config.getPassRegressionThreshold()));
+        List<ReportComparator.Row> rows = comparator.compare(
+                ReportComparator.load(objectMapper, baseline), ReportComparator.load(objectMapper, current));
+        return ReportComparator.format(rows);
+    }
+
+    private static void print(WorkloadReport report) {
+        System.out.printf("target %.0f/s, achieved %.1f/s, %d unfinished%n",
+                report.getTargetRate(), report.getAchievedRate(), report.getUnfinished());
+        // 延迟从计划开始时间算起，单位微秒
+        System.out.printf("  %-16s %8s %7s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "errors", "p50(us)", "p90(us)", "p99(us)", "p999(us)", "max(us)");
+        report.getOperations().forEach((name, stats) -> {
+            LatencySummary l = stats.getLatency();
+            System.out.printf("  %-16s %8d %7d %10d %10d %10d %10d %10d%n",
+                    name, stats.getCount(), stats.getErrors(), l.getP50(), l.getP90(), l.getP99(), l.getP999(), l.getMax());
+            if (!stats.getErrorTypes().isEmpty()) {
+                System.out.println("    errors: " + stats.getErrorTypes());
+            }
+        });
+    }
+}
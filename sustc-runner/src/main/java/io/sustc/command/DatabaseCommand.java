@@ -1,39 +1,39 @@
 package io.sustc.command;
 
-import com.opencsv.CSVReaderBuilder;
-import com.opencsv.RFC4180ParserBuilder;
-import io.fury.ThreadSafeFury;
 import io.sustc.benchmark.BenchmarkConfig;
 import io.sustc.benchmark.BenchmarkConstants;
 import io.sustc.benchmark.BenchmarkService;
+import io.sustc.benchmark.ChunkedSerializer;
+import io.sustc.csv.CsvSource;
+import io.sustc.csv.FieldParsers;
+import io.sustc.csv.LegacyFieldParsers;
+import io.sustc.csv.MappedCsvParser;
 import io.sustc.dto.*;
 import io.sustc.service.DatabaseService;
 import io.sustc.service.RecipeService;
 import io.sustc.service.ReviewService;
 import io.sustc.service.UserService;
+import io.sustc.snapshot.Snapshot;
+import io.sustc.snapshot.SnapshotSchema;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.shell.standard.ShellComponent;
 import org.springframework.shell.standard.ShellMethod;
-import com.opencsv.CSVReader;
+import org.springframework.shell.standard.ShellOption;
 import com.opencsv.exceptions.CsvException;
 
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 
-import java.sql.Timestamp;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.time.Instant;
 import java.util.*;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
-import java.io.FileReader;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 
 //在Spring Shell应用中Java类需要使用注解@ShellComponent来修饰，
@@ -43,6 +43,9 @@ import java.util.List;
 @ConditionalOnBean(DatabaseService.class)
 public class DatabaseCommand {
 
+    // 未配置 benchmark.import-memory-budget 时流式导入使用的缓冲上限
+    private static final long DEFAULT_IMPORT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
     @Autowired
     private DatabaseService databaseService;
 
@@ -59,7 +62,7 @@ public class DatabaseCommand {
     private UserService userService;
 
     @Autowired
-    private ThreadSafeFury fury;
+    private ChunkedSerializer serializer;
 
     @Autowired
     private BenchmarkConfig config;
@@ -70,11 +73,25 @@ public class DatabaseCommand {
     }
 
     @ShellMethod(key = "db import", value = "Drop all the tables. Then import data from csv")
-    public void importData() {
+    public void importData(
+            @ShellOption(defaultValue = "false", help = "Only show the progress of the running or interrupted import, also of one running in another process") boolean status,
+            @ShellOption(defaultValue = "false", help = "Continue an interrupted import instead of starting over") boolean resume,
+            @ShellOption(defaultValue = "false", help = "Stream data/csv/*.csv into the database instead of importing the .ser files") boolean csv) throws IOException {
+        if (status) {
+            printImportProgress(databaseService.getImportProgress());
+            return;
+        }
         long startTime = System.currentTimeMillis();
 
-        databaseService.drop();
-        benchmarkService.importData();
+        if (csv) {
+            databaseService.drop();
+            importCsv(Paths.get(System.getProperty("user.dir"), "data", "csv"));
+        } else if (resume) {
+            benchmarkService.resumeImport();
+        } else {
+            databaseService.drop();
+            benchmarkService.importData();
+        }
 
         long endTime = System.currentTimeMillis();
         long duration = endTime - startTime;
@@ -82,6 +99,51 @@ public class DatabaseCommand {
         System.out.println("importData time: " + duration + " ms");
     }
 
+    @ShellMethod(key = "db import-csv", value = "Drop all the tables. Then stream csv files straight into the database, without .ser files")
+    public void importCsvData(@ShellOption(defaultValue = "data/csv", help = "Directory holding users.csv, recipes.csv and reviews.csv") String dir) throws IOException {
+        long startTime = System.currentTimeMillis();
+        databaseService.drop();
+        importCsv(Paths.get(dir));
+        System.out.println("importData time: " + (System.currentTimeMillis() - startTime) + " ms");
+    }
+
+    /**
+     * Parses the CSV files while the import consumes them, so no record list is ever built.
+     * Parsing, row encoding and COPY overlap as stages of the streaming import.
+     */
+    private void importCsv(Path dir) throws IOException {
+        long budget = config.getImportMemoryBudget() != null ? config.getImportMemoryBudget().toBytes() : DEFAULT_IMPORT_MEMORY_BUDGET;
+        try (Stream<ReviewRecord> reviews = CsvSource.REVIEWS.stream(dir.resolve(CsvSource.REVIEWS.getFileName()));
+             Stream<UserRecord> users = CsvSource.USERS.stream(dir.resolve(CsvSource.USERS.getFileName()));
+             Stream<RecipeRecord> recipes = CsvSource.RECIPES.stream(dir.resolve(CsvSource.RECIPES.getFileName()))) {
+            databaseService.importData(reviews, users, recipes, budget);
+        }
+    }
+
+    private static void printImportProgress(ImportProgress progress) {
+        System.out.printf("phase: %s, elapsed: %d ms%n", progress.getPhase(), progress.getElapsedMillis());
+        System.out.printf("%-16s %12s %12s %8s %12s %10s %8s %8s%n", "table", "rows", "total", "chunks", "rows/s", "MB/s", "ETA(s)", "batch");
+        for (ImportProgress.TableProgress t : progress.getTables()) {
+            System.out.printf("%-16s %12d %12d %8d %12.0f %10.2f %8s %8s%n", t.getTable(), t.getRowsDone(), t.getRowsTotal(),
+                    t.getChunksDone(), t.getRowsPerSecond(), t.getBytesPerSecond() / (1024 * 1024),
+                    t.getEtaSeconds() < 0 ? "-" : String.valueOf(t.getEtaSeconds()),
+                    t.getInsertBatchSize() == 0 ? "-" : String.valueOf(t.getInsertBatchSize()));
+        }
+        if (!progress.getCompletedStages().isEmpty()) {
+            System.out.println("stages done: " + String.join(", ", progress.getCompletedStages()));
+        }
+        if (progress.getCounterDrift() != null && !progress.getCounterDrift().isEmpty()) {
+            System.out.println("counter drift (rows): " + progress.getCounterDrift());
+        }
+    }
+
+    @ShellMethod(key = "db reload", value = "Import data from csv into staging tables, then swap them in")
+    public void reloadData() {
+        long duration = benchmarkService.reloadData().getElapsedTime();
+
+        System.out.println("reloadData time: " + duration + " ms");
+    }
+
     @ShellMethod(key = "db drop", value = "Drop all the tables")
     public void drop() {
         databaseService.drop();
@@ -92,275 +154,242 @@ public class DatabaseCommand {
         return databaseService.sum(a, b);
     }
 
-    @ShellMethod(key = "db csv2ser", value = "Generate .ser files from .csv files")
-    public void csv2ser() {
+    @ShellMethod(key = "db import-delta", value = "Upsert users.csv, recipes.csv and reviews.csv of a delta directory into the imported data")
+    public void importDelta(@ShellOption(help = "Directory holding the delta csv files, missing files are treated as empty") String dir) throws IOException, CsvException {
+        Path base = Paths.get(dir);
+        List<UserRecord> users = Files.exists(base.resolve("users.csv")) ? loadUsers(base.resolve("users.csv").toString()) : List.of();
+        List<RecipeRecord> recipes = Files.exists(base.resolve("recipes.csv")) ? loadRecipes(base.resolve("recipes.csv").toString()) : List.of();
+        List<ReviewRecord> reviews = Files.exists(base.resolve("reviews.csv")) ? loadReviews(base.resolve("reviews.csv").toString()) : List.of();
+
+        long startTime = System.currentTimeMillis();
+        databaseService.importDelta(reviews, users, recipes);
+        long duration = System.currentTimeMillis() - startTime;
+
+        System.out.println("importDelta time: " + duration + " ms (" + users.size() + " users, "
+                + recipes.size() + " recipes, " + reviews.size() + " reviews)");
+    }
+
+    @ShellMethod(key = "db csv2ser", value = "Generate .ser files and/or columnar .snap snapshots from .csv files")
+    public void csv2ser(@ShellOption(defaultValue = "both", help = "ser, snapshot or both") String format) {
+        boolean ser = "ser".equals(format) || "both".equals(format);
+        boolean snapshot = "snapshot".equals(format) || "both".equals(format);
+        if (!ser && !snapshot) {
+            System.out.println("Unknown format " + format + ", expected ser, snapshot or both");
+            return;
+        }
         try {
             // 获取项目根目录
             String projectRoot = System.getProperty("user.dir");
             System.out.println("projectRoot:" + projectRoot);
 
-            List<UserRecord> users = loadUsers(projectRoot + "/data/csv/users.csv");
-            List<RecipeRecord> recipes = loadRecipes(projectRoot + "/data/csv/recipes.csv");
-            List<ReviewRecord> reviews = loadReviews(projectRoot + "/data/csv/reviews.csv");
-
-            // 序列化数据
-            serializeData(users, projectRoot + "/data/import/users.ser");
-            serializeData(recipes, projectRoot + "/data/import/recipes.ser");
-            serializeData(reviews, projectRoot + "/data/import/reviews.ser");
+            Path csvDir = Paths.get(projectRoot, "data", "csv");
+            Path importDir = Paths.get(projectRoot, "data", "import");
+            // 一次只处理一张表
+            long users = convertCsv(CsvSource.USERS, SnapshotSchema.USERS, BenchmarkConstants.USER_RECORDS, csvDir, importDir, ser, snapshot);
+            long recipes = convertCsv(CsvSource.RECIPES, SnapshotSchema.RECIPES, BenchmarkConstants.RECIPE_RECORDS, csvDir, importDir, ser, snapshot);
+            long reviews = convertCsv(CsvSource.REVIEWS, SnapshotSchema.REVIEWS, BenchmarkConstants.REVIEW_RECORDS, csvDir, importDir, ser, snapshot);
 
             System.out.println("Data loading and serialization have been completed!");
-            System.out.println("user count: " + users.size());
-            System.out.println("recipe count: " + recipes.size());
-            System.out.println("review count: " + reviews.size());
+            System.out.println("user count: " + users);
+            System.out.println("recipe count: " + recipes);
+            System.out.println("review count: " + reviews);
 
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    private static String[] parseCsvList(String listStr) {
-        if (listStr == null || listStr.trim().isEmpty() || "null".equalsIgnoreCase(listStr.trim())) {
-            return new String[0];
-        }
-
-        String trimmed = listStr.trim();
-
-        // 检查是否是 c("item1", "item2", ...) 格式
-        if (trimmed.startsWith("c(") && trimmed.endsWith(")")) {
-            // 提取括号内的内容
-            String content = trimmed.substring(2, trimmed.length() - 1).trim();
-
-            // 使用更简单的正则表达式匹配所有引号内的内容
-            Pattern pattern = Pattern.compile("\"([^\"]*)\"");
-            Matcher matcher = pattern.matcher(content);
-
-            List<String> items = new ArrayList<>();
-            while (matcher.find()) {
-                items.add(matcher.group(1));
-            }
-
-            // 如果找到了引号内的项目，返回它们
-            if (!items.isEmpty()) {
-                return items.toArray(new String[0]);
+    /**
+     * Converts one csv file. The .ser file is written while the csv is parsed, chunk by chunk, so no record list
+     * is built for it; a snapshot is laid out column by column and needs the whole table in memory.
+     *
+     * @return the number of records
+     */
+    private <T> long convertCsv(CsvSource<T> source, SnapshotSchema<T> schema, String serName, Path csvDir, Path importDir,
+                                boolean ser, boolean snapshot) throws IOException {
+        Path csv = csvDir.resolve(source.getFileName());
+        long count = 0;
+        if (ser) {
+            try (Stream<T> records = source.stream(csv)) {
+                count = serializer.write(records, importDir.resolve(serName));
             }
-
-            // 如果没有找到引号内容，尝试按逗号分割括号内的内容
-            return Arrays.stream(content.split("\\s*,\\s*"))
-                    .map(String::trim)
-                    .filter(s -> !s.isEmpty())
-                    .toArray(String[]::new);
-        }
-
-        // 如果不是 c(...) 格式，尝试直接按逗号分割
-        return Arrays.stream(trimmed.split("\\s*,\\s*"))
-                .map(String::trim)
-                .filter(s -> !s.isEmpty())
-                .toArray(String[]::new);
-    }
-
-    // 辅助方法：解析("123", "456")格式的字符串为long数组
-    private static long[] parseCsvLongList(String listStr) {
-        // 处理空值或空字符串
-        if (listStr == null || listStr.trim().isEmpty() || "null".equalsIgnoreCase(listStr.trim())) {
-            return new long[0];
         }
-
-        String trimmedStr = listStr.trim();
-        // 移除开头的括号和结尾的引号“
-        if(trimmedStr.length()>=2) {
-            trimmedStr = trimmedStr.substring(1, trimmedStr.length() - 1);
+        if (snapshot) {
+            List<T> records = source.readAllParallel(csv);
+            Snapshot.write(schema, records, importDir.resolve(schema.getFileName()));
+            count = records.size();
         }
+        return count;
+    }
 
-        // 如果字符串已经是空字符串，返回空数组
-        if (trimmedStr.isEmpty()) {
-            return new long[0];
+    @ShellMethod(key = "db ser-rechunk", value = "Rewrite legacy .ser files under the data path in the chunked format")
+    public void serRechunk() throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(Paths.get(config.getDataPath()))) {
+            files = walk.filter(f -> f.toString().endsWith(".ser")).sorted().toList();
         }
-
-        // 使用逗号分割字符串，并去除每个部分的前后空格
-        String[] stringArray = trimmedStr.split("\\s*,\\s*");
-        long[] longArray = new long[stringArray.length];
-
-        for (int i = 0; i < stringArray.length; i++) {
-            try {
-                longArray[i] = Long.parseLong(stringArray[i].trim());
-            } catch (NumberFormatException e) {
-                longArray[i] = 0L; // 解析失败设为0
+        for (Path file : files) {
+            if (ChunkedSerializer.isChunked(file)) {
+                continue;
             }
+            long before = Files.size(file);
+            Object data = serializer.read(file);
+            // 先写临时文件再替换，写到一半失败也不会损坏原文件
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            serializer.write(data, tmp);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.out.printf("%s: %d -> %d bytes%n", file, before, Files.size(file));
         }
+    }
 
-        return longArray;
+    @ShellMethod(key = "db ser2snapshot", value = "Convert the import .ser files into columnar .snap snapshots")
+    public void ser2snapshot() throws IOException {
+        Path importDir = Paths.get(config.getDataPath(), BenchmarkConstants.IMPORT_DATA);
+        convertToSnapshot(importDir, BenchmarkConstants.USER_RECORDS, SnapshotSchema.USERS);
+        convertToSnapshot(importDir, BenchmarkConstants.RECIPE_RECORDS, SnapshotSchema.RECIPES);
+        convertToSnapshot(importDir, BenchmarkConstants.REVIEW_RECORDS, SnapshotSchema.REVIEWS);
     }
 
-    // 辅助方法：解析时间戳
-    private static Timestamp parseTimestamp(String timestampStr) {
-        if (timestampStr == null || timestampStr.trim().isEmpty() || "null".equalsIgnoreCase(timestampStr.trim())) {
-            return null;
+    @SuppressWarnings("unchecked")
+    private <T> void convertToSnapshot(Path importDir, String serFile, SnapshotSchema<T> schema) throws IOException {
+        Path source = importDir.resolve(serFile);
+        if (!Files.exists(source)) {
+            System.out.println(serFile + " not found, skipped");
+            return;
         }
+        List<T> records = serializer.read(source);
+        Path target = importDir.resolve(schema.getFileName());
+        Snapshot.write(schema, records, target);
+        System.out.printf("%s -> %s: %d records, %d -> %d bytes%n", serFile, schema.getFileName(), records.size(),
+                Files.size(source), Files.size(target));
+    }
 
-        // 尝试多种日期格式
-        String[] dateFormats = {"yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd'T'HH:mm:ss", "yyyy-MM-dd", "MM/dd/yyyy HH:mm:ss", "MM/dd/yyyy"};
-
-        for (String format : dateFormats) {
-            try {
-                SimpleDateFormat sdf = new SimpleDateFormat(format);
-                Date date = sdf.parse(timestampStr.trim());
-                return new Timestamp(date.getTime());
-            } catch (ParseException e) {
-                // 尝试下一种格式
+    @ShellMethod(key = "db csv-bench", value = "Compare OpenCSV and memory-mapped parallel parsing of the csv files")
+    public void csvBench(@ShellOption(defaultValue = "data/csv") String dir,
+                         @ShellOption(defaultValue = "5") int rounds) throws IOException, CsvException {
+        Path base = Paths.get(dir);
+        System.out.printf("%-12s %10s %14s %14s %8s%n", "file", "records", "opencsv(ms)", "mapped(ms)", "speedup");
+        for (CsvSource<?> source : List.of(CsvSource.USERS, CsvSource.RECIPES, CsvSource.REVIEWS)) {
+            Path file = base.resolve(source.getFileName());
+            if (!Files.exists(file)) {
+                System.out.printf("%-12s skipped, %s not found%n", source.getFileName(), file);
+                continue;
             }
+            List<?> expected = source.readAll(file);
+            List<?> actual = source.readAllParallel(file);
+            if (!expected.equals(actual)) {
+                System.out.printf("%-12s parsers disagree: %d vs %d records%n", source.getFileName(), expected.size(), actual.size());
+                continue;
+            }
+            // 第一轮已用于校验结果并预热，下面取多轮中的最小值
+            long openCsv = Long.MAX_VALUE;
+            long mapped = Long.MAX_VALUE;
+            for (int i = 0; i < rounds; i++) {
+                long start = System.nanoTime();
+                source.readAll(file);
+                openCsv = Math.min(openCsv, System.nanoTime() - start);
+                start = System.nanoTime();
+                source.readAllParallel(file);
+                mapped = Math.min(mapped, System.nanoTime() - start);
+            }
+            System.out.printf("%-12s %10d %14.1f %14.1f %7.2fx%n", source.getFileName(), expected.size(),
+                    openCsv / 1e6, mapped / 1e6, (double) openCsv / mapped);
         }
-
-        return null; // 所有格式都解析失败
     }
 
-    // 辅助方法：解析浮点数，处理空值和异常
-    private static float parseFloat(String floatStr) {
-        if (floatStr == null || floatStr.trim().isEmpty() || "null".equalsIgnoreCase(floatStr.trim())) {
-            return 0.0f;
-        }
-
-        try {
-            return Float.parseFloat(floatStr.trim());
-        } catch (NumberFormatException e) {
-            return 0.0f;
+    private static volatile int fieldBenchSink;
+
+    @ShellMethod(key = "db field-bench", value = "Compare the legacy and the scanning field parsers on the csv files")
+    public void fieldBench(@ShellOption(defaultValue = "data/csv") String dir,
+                           @ShellOption(defaultValue = "5") int rounds) throws IOException {
+        Path base = Paths.get(dir);
+        // 按列取出原始字段，只测字段解析本身
+        Map<String, List<String>> columns = new LinkedHashMap<>();
+        columns.put("id lists", new ArrayList<>());
+        columns.put("c() lists", new ArrayList<>());
+        columns.put("timestamps", new ArrayList<>());
+        collectColumns(base.resolve("users.csv"), columns.get("id lists"), 6, 7);
+        collectColumns(base.resolve("reviews.csv"), columns.get("id lists"), 8);
+        collectColumns(base.resolve("recipes.csv"), columns.get("c() lists"), 10);
+        collectColumns(base.resolve("recipes.csv"), columns.get("timestamps"), 7);
+        collectColumns(base.resolve("reviews.csv"), columns.get("timestamps"), 6, 7);
+
+        Map<String, Function<String, Object>> legacy = Map.of(
+                "id lists", LegacyFieldParsers::parseCsvLongList,
+                "c() lists", LegacyFieldParsers::parseCsvList,
+                "timestamps", LegacyFieldParsers::parseTimestamp);
+        Map<String, Function<String, Object>> scanning = Map.of(
+                "id lists", FieldParsers::parseLongList,
+                "c() lists", FieldParsers::parseStringList,
+                "timestamps", FieldParsers::parseTimestamp);
+
+        System.out.printf("%-12s %10s %14s %14s %8s%n", "fields", "count", "legacy(ms)", "scanning(ms)", "speedup");
+        for (Map.Entry<String, List<String>> column : columns.entrySet()) {
+            List<String> values = column.getValue();
+            if (values.isEmpty()) {
+                continue;
+            }
+            long legacyNanos = Long.MAX_VALUE;
+            long scanningNanos = Long.MAX_VALUE;
+            for (int i = 0; i <= rounds; i++) {
+                long l = timeFieldParser(values, legacy.get(column.getKey()));
+                long n = timeFieldParser(values, scanning.get(column.getKey()));
+                // 第 0 轮只做预热
+                if (i > 0) {
+                    legacyNanos = Math.min(legacyNanos, l);
+                    scanningNanos = Math.min(scanningNanos, n);
+                }
+            }
+            System.out.printf("%-12s %10d %14.1f %14.1f %7.2fx%n", column.getKey(), values.size(),
+                    legacyNanos / 1e6, scanningNanos / 1e6, (double) legacyNanos / scanningNanos);
         }
     }
 
-    // 辅助方法：解析整数，处理空值和异常
-    private static int parseInt(String intStr) {
-        if (intStr == null || intStr.trim().isEmpty() || "null".equalsIgnoreCase(intStr.trim())) {
-            return 0;
+    private static void collectColumns(Path file, List<String> sink, int... indexes) throws IOException {
+        if (!Files.exists(file)) {
+            return;
         }
-
-        try {
-            return Integer.parseInt(intStr.trim());
-        } catch (NumberFormatException e) {
-            return 0;
+        for (String[] fields : MappedCsvParser.parse(file, 1, Function.identity(), ForkJoinPool.commonPool())) {
+            for (int index : indexes) {
+                if (index < fields.length) {
+                    sink.add(fields[index]);
+                }
+            }
         }
     }
 
-    // 辅助方法：解析长整型，处理空值和异常
-    private static long parseLong(String longStr) {
-        if (longStr == null || longStr.trim().isEmpty() || "null".equalsIgnoreCase(longStr.trim())) {
-            return 0L;
-        }
-
-        try {
-            return Long.parseLong(longStr.trim());
-        } catch (NumberFormatException e) {
-            return 0L;
+    private static long timeFieldParser(List<String> values, Function<String, Object> parser) {
+        long start = System.nanoTime();
+        int nonNull = 0;
+        for (String value : values) {
+            if (parser.apply(value) != null) {
+                nonNull++;
+            }
         }
+        long nanos = System.nanoTime() - start;
+        // 写到 volatile 字段里，防止解析结果被 JIT 当作无用代码消除
+        fieldBenchSink = nonNull;
+        return nanos;
     }
 
     // 加载用户数据
     public static List<UserRecord> loadUsers(String filePath) throws IOException, CsvException {
-        List<UserRecord> users = new ArrayList<>();
-
-        try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
-            List<String[]> records = reader.readAll();
-
-            // 跳过标题行
-            for (int i = 1; i < records.size(); i++) {
-                String[] fields = records.get(i);
-
-                if (fields.length >= 9) {
-                    UserRecord user = UserRecord.builder().authorId(parseLong(fields[0])).authorName(fields[1] != null ? fields[1].trim() : "").gender(fields[2] != null ? fields[2].trim() : "").age(parseInt(fields[3])).
-                            followers(parseInt(fields[4])).
-                            following(parseInt(fields[5])).
-                            followerUsers(parseCsvLongList(fields[6])).
-                            followingUsers(parseCsvLongList(fields[7])).
-                            password(fields[8] != null ? fields[8].trim() : "").build();
-
-                    users.add(user);
-                }
-            }
-        }
-
-        return users;
+        return CsvSource.USERS.readAll(Paths.get(filePath));
     }
 
     //加载食谱数据
     public static List<RecipeRecord> loadRecipes(String filePath) throws IOException, CsvException {
-        List<RecipeRecord> recipes = new ArrayList<>();
-
-        // 使用 RFC4180Parser 创建 CSVReader
-        try (CSVReader reader = new CSVReaderBuilder(new FileReader(filePath))
-                .withCSVParser(new RFC4180ParserBuilder().build())
-                .build()) {
-
-            List<String[]> records = reader.readAll();
-
-            // 跳过标题行
-            for (int i = 1; i < records.size(); i++) {
-                String[] fields = records.get(i);
-
-                if (fields.length >= 24) {
-                    RecipeRecord recipe = RecipeRecord.builder()
-                            .RecipeId(parseLong(fields[0]))
-                            .name(fields[1] != null ? fields[1].trim() : "")
-                            .authorId(parseLong(fields[2]))
-                            .authorName(fields[3] != null ? fields[3].trim() : "")
-                            .cookTime(fields[4] != null ? fields[4].trim() : "")
-                            .prepTime(fields[5] != null ? fields[5].trim() : "")
-                            .totalTime(fields[6] != null ? fields[6].trim() : "")
-                            .datePublished(parseTimestamp(fields[7]))
-                            .description(fields[8] != null ? fields[8].trim() : "")
-                            .recipeCategory(fields[9] != null ? fields[9].trim() : "")
-                            .recipeIngredientParts(parseCsvList(fields[10]))
-                            .aggregatedRating(parseFloat(fields[11]))
-                            .reviewCount((int)parseFloat(fields[12]))
-                            .calories(parseFloat(fields[13]))
-                            .fatContent(parseFloat(fields[14]))
-                            .saturatedFatContent(parseFloat(fields[15]))
-                            .cholesterolContent(parseFloat(fields[16]))
-                            .sodiumContent(parseFloat(fields[17]))
-                            .carbohydrateContent(parseFloat(fields[18]))
-                            .fiberContent(parseFloat(fields[19]))
-                            .sugarContent(parseFloat(fields[20]))
-                            .proteinContent(parseFloat(fields[21]))
-                            .recipeServings((int)parseFloat(fields[22]))
-                            .recipeYield(fields[23] != null ? fields[23].trim() : "")
-                            .build();
-
-                    recipes.add(recipe);
-                }
-            }
-        }
-
-        return recipes;
+        return CsvSource.RECIPES.readAll(Paths.get(filePath));
     }
 
     // 加载评论数据
     public static List<ReviewRecord> loadReviews(String filePath) throws IOException, CsvException {
-        List<ReviewRecord> reviews = new ArrayList<>();
-
-        try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
-            List<String[]> records = reader.readAll();
-
-            // 跳过标题行
-            for (int i = 1; i < records.size(); i++) {
-                String[] fields = records.get(i);
-
-                if (fields.length >= 9) {
-                    ReviewRecord review = ReviewRecord.builder().reviewId(parseLong(fields[0])).
-                            recipeId(parseLong(fields[1])).authorId(parseLong(fields[2])).
-                            authorName(fields[3] != null ? fields[3].trim() : "").
-                            rating(parseFloat(fields[4])).review(fields[5] != null ? fields[5].trim() : "").
-                            dateSubmitted(parseTimestamp(fields[6])).dateModified(parseTimestamp(fields[7])).
-                            likes(parseCsvLongList(fields[8])).build();
-
-                    reviews.add(review);
-                }
-            }
-        }
-
-        return reviews;
+        return CsvSource.REVIEWS.readAll(Paths.get(filePath));
     }
 
     @SneakyThrows
     public void serializeData(List<?> data, String outputFilePath) throws IOException {
-        byte[] serializedData = fury.serialize(data);
-        Files.write(Paths.get(outputFilePath), serializedData);
+        serializer.write(data, Paths.get(outputFilePath));
     }
 
     @SneakyThrows
@@ -369,14 +398,8 @@ public class DatabaseCommand {
         // 获取文件路径
         var file = Paths.get(config.getDataPath(), path);
 
-        // 序列化对象
-        byte[] serializedData = fury.serialize(object);
-
-        // 确保目录存在
-        Files.createDirectories(file.getParent());
-
-        // 将序列化后的数据写入文件
-        Files.write(file, serializedData);
+        // 分块序列化并写入文件，目录不存在时会自动创建
+        serializer.write(object, file);
 
         log.info("serialize path {}", file);
     }
@@ -0,0 +1,64 @@
+package io.sustc.csv;
+
+import io.sustc.dto.RecipeRecord;
+import io.sustc.dto.ReviewRecord;
+import io.sustc.dto.UserRecord;
+
+import static io.sustc.csv.FieldParsers.*;
+
+/**
+ * Builds the import records from the fields of one CSV row, using {@link FieldParsers}.
+ * Malformed numbers become {@code 0} and unparsable timestamps {@code null}, as before.
+ */
+final class CsvRecords {
+
+    private CsvRecords() {
+    }
+
+    static UserRecord toUser(String[] fields) {
+        return UserRecord.builder().authorId(parseLong(fields[0])).authorName(fields[1] != null ? fields[1].trim() : "").gender(fields[2] != null ? fields[2].trim() : "").age(parseInt(fields[3])).
+                followers(parseInt(fields[4])).
+                following(parseInt(fields[5])).
+                followerUsers(parseLongList(fields[6])).
+                followingUsers(parseLongList(fields[7])).
+                password(fields[8] != null ? fields[8].trim() : "").build();
+    }
+
+    static RecipeRecord toRecipe(String[] fields) {
+        return RecipeRecord.builder()
+                .RecipeId(parseLong(fields[0]))
+                .name(fields[1] != null ? fields[1].trim() : "")
+                .authorId(parseLong(fields[2]))
+                .authorName(fields[3] != null ? fields[3].trim() : "")
+                .cookTime(fields[4] != null ? fields[4].trim() : "")
+                .prepTime(fields[5] != null ? fields[5].trim() : "")
+                .totalTime(fields[6] != null ? fields[6].trim() : "")
+                .datePublished(parseTimestamp(fields[7]))
+                .description(fields[8] != null ? fields[8].trim() : "")
+                .recipeCategory(fields[9] != null ? fields[9].trim() : "")
+                .recipeIngredientParts(parseStringList(fields[10]))
+                .aggregatedRating(parseFloat(fields[11]))
+                .reviewCount((int)parseFloat(fields[12]))
+                .calories(parseFloat(fields[13]))
+                .fatContent(parseFloat(fields[14]))
+                .saturatedFatContent(parseFloat(fields[15]))
+                .cholesterolContent(parseFloat(fields[16]))
+                .sodiumContent(parseFloat(fields[17]))
+                .carbohydrateContent(parseFloat(fields[18]))
+                .fiberContent(parseFloat(fields[19]))
+                .sugarContent(parseFloat(fields[20]))
+                .proteinContent(parseFloat(fields[21]))
+                .recipeServings((int)parseFloat(fields[22]))
+                .recipeYield(fields[23] != null ? fields[23].trim() : "")
+                .build();
+    }
+
+    static ReviewRecord toReview(String[] fields) {
+        return ReviewRecord.builder().reviewId(parseLong(fields[0])).
+                recipeId(parseLong(fields[1])).authorId(parseLong(fields[2])).
+                authorName(fields[3] != null ? fields[3].trim() : "").
+                rating(parseFloat(fields[4])).review(fields[5] != null ? fields[5].trim() : "").
+                dateSubmitted(parseTimestamp(fields[6])).dateModified(parseTimestamp(fields[7])).
+                likes(parseLongList(fields[8])).build();
+    }
+}
@@ -0,0 +1,163 @@
+package io.sustc.csv;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.RFC4180ParserBuilder;
+import com.opencsv.exceptions.CsvException;
+import io.sustc.dto.RecipeRecord;
+import io.sustc.dto.ReviewRecord;
+import io.sustc.dto.UserRecord;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * One of the dataset CSV files, read row by row.
+ * <p>
+ * Rows are parsed with {@link CSVReader#readNext()} and turned into records immediately, so only the current
+ * batch is ever held in memory, whatever the file size. The first line is a header and skipped; rows with
+ * fewer than {@code minFields} fields are ignored.
+ *
+ * @param <T> the record type built from each row
+ */
+public final class CsvSource<T> {
+
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    public static final CsvSource<UserRecord> USERS = new CsvSource<>("users.csv", 9, false, CsvRecords::toUser);
+
+    // 与原来的加载方法一致：recipes.csv 用 RFC4180 解析器，其余文件用 OpenCSV 默认解析器
+    public static final CsvSource<RecipeRecord> RECIPES = new CsvSource<>("recipes.csv", 24, true, CsvRecords::toRecipe);
+
+    public static final CsvSource<ReviewRecord> REVIEWS = new CsvSource<>("reviews.csv", 9, false, CsvRecords::toReview);
+
+    private final String fileName;
+
+    private final int minFields;
+
+    private final boolean rfc4180;
+
+    private final Function<String[], T> builder;
+
+    private CsvSource(String fileName, int minFields, boolean rfc4180, Function<String[], T> builder) {
+        this.fileName = fileName;
+        this.minFields = minFields;
+        this.rfc4180 = rfc4180;
+        this.builder = builder;
+    }
+
+    /**
+     * @return the usual name of this file in a data directory
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Parses {@code file} and hands the records to {@code sink} in batches of up to {@code batchSize}.
+     * A batch list is not reused after it was passed to the sink.
+     *
+     * @return number of records read
+     */
+    public long forEachBatch(Path file, int batchSize, Consumer<List<T>> sink) throws IOException, CsvException {
+        long count = 0;
+        try (CSVReader reader = open(file)) {
+            List<T> batch = new ArrayList<>(batchSize);
+            String[] fields;
+            while ((fields = reader.readNext()) != null) {
+                if (fields.length < minFields) {
+                    continue;
+                }
+                batch.add(builder.apply(fields));
+                if (batch.size() == batchSize) {
+                    sink.accept(batch);
+                    count += batch.size();
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                sink.accept(batch);
+                count += batch.size();
+            }
+        }
+        return count;
+    }
+
+    public List<T> readAll(Path file) throws IOException, CsvException {
+        List<T> records = new ArrayList<>();
+        forEachBatch(file, DEFAULT_BATCH_SIZE, records::addAll);
+        return records;
+    }
+
+    /**
+     * Like {@link #readAll(Path)}, but memory-maps the file and parses it in parallel on {@code pool}.
+     * Meant for files read in full anyway, such as when converting to .ser.
+     *
+     * @see MappedCsvParser
+     */
+    public List<T> readAllParallel(Path file, ForkJoinPool pool) throws IOException {
+        return MappedCsvParser.parse(file, minFields, builder, pool);
+    }
+
+    public List<T> readAllParallel(Path file) throws IOException {
+        return readAllParallel(file, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * A lazy, sequential stream of the records in {@code file}, parsed as it is consumed.
+     * The stream holds the file open and must be closed.
+     */
+    public Stream<T> stream(Path file) throws IOException {
+        CSVReader reader = open(file);
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    String[] fields;
+                    do {
+                        fields = reader.readNext();
+                        if (fields == null) {
+                            return false;
+                        }
+                    } while (fields.length < minFields);
+                    action.accept(builder.apply(fields));
+                    return true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (CsvException e) {
+                    throw new IllegalStateException("Malformed row in " + file, e);
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false).onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private CSVReader open(Path file) throws IOException {
+        // 与 FileReader 一样按默认字符集解码，非法字节替换而不是报错
+        CSVReaderBuilder builder = new CSVReaderBuilder(new InputStreamReader(Files.newInputStream(file), Charset.defaultCharset()))
+                .withSkipLines(1);
+        if (rfc4180) {
+            builder.withCSVParser(new RFC4180ParserBuilder().build());
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,403 @@
+package io.sustc.csv;
+
+import java.sql.Timestamp;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Parsers for the list, number and timestamp fields of the dataset CSV files.
+ * <p>
+ * They return the same values as {@link LegacyFieldParsers}, but scan the field in place instead of going
+ * through regular expressions, {@code split} and {@code trim}. Ids are collected in a per-thread {@code long[]}
+ * that is reused from one field to the next, so the only allocation per list is the array returned.
+ * Well-formed input never throws internally; odd input (non-ASCII digits, lenient dates, ...) takes the slow
+ * path of the legacy helpers so the results stay identical. All methods are thread-safe.
+ * <p>
+ * Timestamps are read in the JVM's default time zone as of class initialization.
+ */
+public final class FieldParsers {
+
+    private static final long[] NO_LONGS = new long[0];
+
+    private static final String[] NO_STRINGS = new String[0];
+
+    // 不是纯 ASCII 数字时的返回值，18 位以内的数字不可能得到它
+    private static final long NOT_SIMPLE = Long.MIN_VALUE;
+
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private static final int MAX_INT_DIGITS = 9;
+
+    private static final String[] DATE_FORMATS = {"yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd'T'HH:mm:ss", "yyyy-MM-dd", "MM/dd/yyyy HH:mm:ss", "MM/dd/yyyy"};
+
+    // 早于 1970 年的时区历史（LMT 等）TimeZone 与 ZoneRules 处理不一致，交给 SimpleDateFormat
+    private static final int MIN_FAST_YEAR = 1970;
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private static final ZoneRules RULES = ZONE.getRules();
+
+    private static final class Scratch {
+
+        long[] longs = new long[64];
+
+        String[] strings = new String[32];
+
+        // SimpleDateFormat 不是线程安全的，每个线程一份
+        SimpleDateFormat[] formats;
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private FieldParsers() {
+    }
+
+    /**
+     * Parses an R-style {@code c("a", "b")} list: the texts between pairs of quotes, or, if there are none,
+     * the non-blank comma-separated items. A value that is not wrapped in {@code c(...)} is split on commas.
+     */
+    public static String[] parseStringList(String s) {
+        if (s == null) {
+            return NO_STRINGS;
+        }
+        int start = trimStart(s, 0, s.length());
+        int end = trimEnd(s, start, s.length());
+        if (start == end || isNullLiteral(s, start, end)) {
+            return NO_STRINGS;
+        }
+
+        if (s.startsWith("c(", start) && s.charAt(end - 1) == ')') {
+            int from = trimStart(s, start + 2, end - 1);
+            int to = trimEnd(s, from, end - 1);
+            Scratch scratch = SCRATCH.get();
+            int count = 0;
+            int i = from;
+            while (true) {
+                int open = indexOf(s, '"', i, to);
+                int close = open < 0 ? -1 : indexOf(s, '"', open + 1, to);
+                if (close < 0) {
+                    break;
+                }
+                scratch.strings = grow(scratch.strings, count);
+                scratch.strings[count++] = s.substring(open + 1, close);
+                i = close + 1;
+            }
+            if (count > 0) {
+                return takeStrings(scratch, count);
+            }
+            return splitNonBlank(s, from, to);
+        }
+        return splitNonBlank(s, start, end);
+    }
+
+    /**
+     * Parses an id list such as {@code (1, 2, 3)} or {@code "1,2,3"}: the first and last character are
+     * dropped and the rest split on commas. Items that are not numbers become {@code 0}, and blank items at
+     * the end are dropped.
+     */
+    public static long[] parseLongList(String s) {
+        if (s == null) {
+            return NO_LONGS;
+        }
+        int start = trimStart(s, 0, s.length());
+        int end = trimEnd(s, start, s.length());
+        if (start == end || isNullLiteral(s, start, end)) {
+            return NO_LONGS;
+        }
+        if (end - start >= 2) {
+            start++;
+            end--;
+        }
+        if (start == end) {
+            return NO_LONGS;
+        }
+
+        Scratch scratch = SCRATCH.get();
+        long[] buf = scratch.longs;
+        int count = 0;
+        // 与 split 一致：有逗号时，末尾的空白项不算
+        int kept = 0;
+        boolean hasComma = false;
+        int i = start;
+        while (true) {
+            int comma = indexOf(s, ',', i, end);
+            int tokenEnd = comma < 0 ? end : comma;
+            if (count == buf.length) {
+                buf = scratch.longs = Arrays.copyOf(buf, count << 1);
+            }
+            buf[count++] = parseLong(s, i, tokenEnd);
+            if (!isRegexBlank(s, i, tokenEnd)) {
+                kept = count;
+            }
+            if (comma < 0) {
+                break;
+            }
+            hasComma = true;
+            i = comma + 1;
+        }
+        int size = hasComma ? kept : count;
+        return size == 0 ? NO_LONGS : Arrays.copyOf(buf, size);
+    }
+
+    public static long parseLong(String s) {
+        return s == null ? 0L : parseLong(s, 0, s.length());
+    }
+
+    public static int parseInt(String s) {
+        if (s == null) {
+            return 0;
+        }
+        int start = trimStart(s, 0, s.length());
+        int end = trimEnd(s, start, s.length());
+        if (start == end || isNullLiteral(s, start, end)) {
+            return 0;
+        }
+        long value = scanAscii(s, start, end, MAX_INT_DIGITS);
+        if (value != NOT_SIMPLE) {
+            return (int) value;
+        }
+        try {
+            return Integer.parseInt(s.substring(start, end));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public static float parseFloat(String s) {
+        return LegacyFieldParsers.parseFloat(s);
+    }
+
+    /**
+     * Parses a timestamp in one of the formats {@link LegacyFieldParsers#parseTimestamp} accepts, in local time.
+     * Text after a complete timestamp (such as a trailing {@code Z}) is ignored, as {@link SimpleDateFormat} does.
+     *
+     * @return the timestamp, or {@code null} if the field is empty or matches no format
+     */
+    public static Timestamp parseTimestamp(String s) {
+        if (s == null) {
+            return null;
+        }
+        int start = trimStart(s, 0, s.length());
+        int end = trimEnd(s, start, s.length());
+        if (start == end || isNullLiteral(s, start, end)) {
+            return null;
+        }
+        long millis = parseIsoLocal(s, start, end);
+        if (millis != NOT_SIMPLE) {
+            return new Timestamp(millis);
+        }
+        return parseWithFormats(s.substring(start, end));
+    }
+
+    /**
+     * @return epoch millis of {@code yyyy-MM-dd[ T]HH:mm:ss...} or a bare {@code yyyy-MM-dd}, or
+     * {@link #NOT_SIMPLE} if the text is anything else or relies on lenient field values
+     */
+    private static long parseIsoLocal(String s, int start, int end) {
+        int len = end - start;
+        if (len < 10 || s.charAt(start + 4) != '-' || s.charAt(start + 7) != '-') {
+            return NOT_SIMPLE;
+        }
+        int year = digits(s, start, 4);
+        int month = digits(s, start + 5, 2);
+        int day = digits(s, start + 8, 2);
+        if (year < MIN_FAST_YEAR || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return NOT_SIMPLE;
+        }
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        if (len > 10) {
+            char sep = s.charAt(start + 10);
+            if (len < 19 || (sep != ' ' && sep != 'T') || s.charAt(start + 13) != ':' || s.charAt(start + 16) != ':') {
+                return NOT_SIMPLE;
+            }
+            // 秒后面紧跟数字时 SimpleDateFormat 会把它们都读进秒里
+            if (len > 19 && isDigit(s.charAt(start + 19))) {
+                return NOT_SIMPLE;
+            }
+            hour = digits(s, start + 11, 2);
+            minute = digits(s, start + 14, 2);
+            second = digits(s, start + 17, 2);
+            if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+                return NOT_SIMPLE;
+            }
+        }
+        LocalDateTime local = LocalDateTime.of(year, month, day, hour, minute, second);
+        // 与 GregorianCalendar 一致：夏令时重叠的时刻取标准时间，跳过的时刻顺延
+        ZoneOffsetTransition transition = RULES.getTransition(local);
+        ZoneOffset offset;
+        if (transition == null) {
+            offset = RULES.getOffset(local);
+        } else {
+            offset = transition.isOverlap() ? transition.getOffsetAfter() : transition.getOffsetBefore();
+        }
+        return local.toEpochSecond(offset) * 1000L;
+    }
+
+    private static Timestamp parseWithFormats(String text) {
+        Scratch scratch = SCRATCH.get();
+        if (scratch.formats == null) {
+            scratch.formats = new SimpleDateFormat[DATE_FORMATS.length];
+            for (int i = 0; i < DATE_FORMATS.length; i++) {
+                scratch.formats[i] = new SimpleDateFormat(DATE_FORMATS[i]);
+                scratch.formats[i].setTimeZone(TimeZone.getTimeZone(ZONE));
+            }
+        }
+        for (SimpleDateFormat format : scratch.formats) {
+            // 失败时返回 null 而不是抛 ParseException
+            Date date = format.parse(text, new ParsePosition(0));
+            if (date != null) {
+                return new Timestamp(date.getTime());
+            }
+        }
+        return null;
+    }
+
+    private static long parseLong(String s, int start, int end) {
+        start = trimStart(s, start, end);
+        end = trimEnd(s, start, end);
+        if (start == end || isNullLiteral(s, start, end)) {
+            return 0L;
+        }
+        long value = scanAscii(s, start, end, MAX_LONG_DIGITS);
+        if (value != NOT_SIMPLE) {
+            return value;
+        }
+        try {
+            return Long.parseLong(s.substring(start, end));
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * @return the value of an optionally signed run of at most {@code maxDigits} ASCII digits, otherwise {@link #NOT_SIMPLE}
+     */
+    private static long scanAscii(String s, int start, int end, int maxDigits) {
+        boolean negative = false;
+        char first = s.charAt(start);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            start++;
+        }
+        if (start == end || end - start > maxDigits) {
+            return NOT_SIMPLE;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c)) {
+                return NOT_SIMPLE;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private static String[] splitNonBlank(String s, int start, int end) {
+        Scratch scratch = SCRATCH.get();
+        int count = 0;
+        int i = start;
+        while (i <= end) {
+            int comma = indexOf(s, ',', i, end);
+            int tokenEnd = comma < 0 ? end : comma;
+            int from = trimStart(s, i, tokenEnd);
+            int to = trimEnd(s, from, tokenEnd);
+            if (from < to) {
+                scratch.strings = grow(scratch.strings, count);
+                scratch.strings[count++] = s.substring(from, to);
+            }
+            if (comma < 0) {
+                break;
+            }
+            i = comma + 1;
+        }
+        return count == 0 ? NO_STRINGS : takeStrings(scratch, count);
+    }
+
+    private static String[] takeStrings(Scratch scratch, int count) {
+        String[] result = Arrays.copyOf(scratch.strings, count);
+        // 不让复用的缓冲区一直引用这些字符串
+        Arrays.fill(scratch.strings, 0, count, null);
+        return result;
+    }
+
+    private static String[] grow(String[] buf, int count) {
+        return count < buf.length ? buf : Arrays.copyOf(buf, buf.length << 1);
+    }
+
+    private static int indexOf(String s, char c, int from, int end) {
+        int i = s.indexOf(c, from);
+        return i < end ? i : -1;
+    }
+
+    /**
+     * Same characters {@link String#trim()} removes.
+     */
+    private static int trimStart(String s, int start, int end) {
+        while (start < end && s.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(String s, int start, int end) {
+        while (end > start && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Whether the range is empty or only holds characters the regex {@code \s} matches.
+     */
+    private static boolean isRegexBlank(String s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\u000B' && c != '\f' && c != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNullLiteral(String s, int start, int end) {
+        return end - start == 4 && s.regionMatches(true, start, "null", 0, 4);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @return the number formed by {@code count} ASCII digits at {@code from}, or {@code -1} if one is not a digit
+     */
+    private static int digits(String s, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+}
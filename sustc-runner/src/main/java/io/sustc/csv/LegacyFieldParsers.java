@@ -0,0 +1,156 @@
+package io.sustc.csv;
+
+import java.sql.Timestamp;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The original field helpers of the CSV loaders, built on regular expressions, {@code split} and a fresh
+ * {@link SimpleDateFormat} per attempt. {@link FieldParsers} replaces them for parsing; they stay as the
+ * reference its results are checked against and the baseline of the parser benchmarks.
+ */
+public final class LegacyFieldParsers {
+
+    private LegacyFieldParsers() {
+    }
+
+    public static String[] parseCsvList(String listStr) {
+        if (listStr == null || listStr.trim().isEmpty() || "null".equalsIgnoreCase(listStr.trim())) {
+            return new String[0];
+        }
+
+        String trimmed = listStr.trim();
+
+        // 检查是否是 c("item1", "item2", ...) 格式
+        if (trimmed.startsWith("c(") && trimmed.endsWith(")")) {
+            // 提取括号内的内容
+            String content = trimmed.substring(2, trimmed.length() - 1).trim();
+
+            // 使用更简单的正则表达式匹配所有引号内的内容
+            Pattern pattern = Pattern.compile("\"([^\"]*)\"");
+            Matcher matcher = pattern.matcher(content);
+
+            List<String> items = new ArrayList<>();
+            while (matcher.find()) {
+                items.add(matcher.group(1));
+            }
+
+            // 如果找到了引号内的项目，返回它们
+            if (!items.isEmpty()) {
+                return items.toArray(new String[0]);
+            }
+
+            // 如果没有找到引号内容，尝试按逗号分割括号内的内容
+            return Arrays.stream(content.split("\\s*,\\s*"))
+                    .map(String::trim)
+                    .filter(s -> !s.isEmpty())
+                    .toArray(String[]::new);
+        }
+
+        // 如果不是 c(...) 格式，尝试直接按逗号分割
+        return Arrays.stream(trimmed.split("\\s*,\\s*"))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    // 辅助方法：解析("123", "456")格式的字符串为long数组
+    public static long[] parseCsvLongList(String listStr) {
+        // 处理空值或空字符串
+        if (listStr == null || listStr.trim().isEmpty() || "null".equalsIgnoreCase(listStr.trim())) {
+            return new long[0];
+        }
+
+        String trimmedStr = listStr.trim();
+        // 移除开头的括号和结尾的引号“
+        if(trimmedStr.length()>=2) {
+            trimmedStr = trimmedStr.substring(1, trimmedStr.length() - 1);
+        }
+
+        // 如果字符串已经是空字符串，返回空数组
+        if (trimmedStr.isEmpty()) {
+            return new long[0];
+        }
+
+        // 使用逗号分割字符串，并去除每个部分的前后空格
+        String[] stringArray = trimmedStr.split("\\s*,\\s*");
+        long[] longArray = new long[stringArray.length];
+
+        for (int i = 0; i < stringArray.length; i++) {
+            try {
+                longArray[i] = Long.parseLong(stringArray[i].trim());
+            } catch (NumberFormatException e) {
+                longArray[i] = 0L; // 解析失败设为0
+            }
+        }
+
+        return longArray;
+    }
+
+    // 辅助方法：解析时间戳
+    public static Timestamp parseTimestamp(String timestampStr) {
+        if (timestampStr == null || timestampStr.trim().isEmpty() || "null".equalsIgnoreCase(timestampStr.trim())) {
+            return null;
+        }
+
+        // 尝试多种日期格式
+        String[] dateFormats = {"yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd'T'HH:mm:ss", "yyyy-MM-dd", "MM/dd/yyyy HH:mm:ss", "MM/dd/yyyy"};
+
+        for (String format : dateFormats) {
+            try {
+                SimpleDateFormat sdf = new SimpleDateFormat(format);
+                Date date = sdf.parse(timestampStr.trim());
+                return new Timestamp(date.getTime());
+            } catch (ParseException e) {
+                // 尝试下一种格式
+            }
+        }
+
+        return null; // 所有格式都解析失败
+    }
+
+    // 辅助方法：解析浮点数，处理空值和异常
+    public static float parseFloat(String floatStr) {
+        if (floatStr == null || floatStr.trim().isEmpty() || "null".equalsIgnoreCase(floatStr.trim())) {
+            return 0.0f;
+        }
+
+        try {
+            return Float.parseFloat(floatStr.trim());
+        } catch (NumberFormatException e) {
+            return 0.0f;
+        }
+    }
+
+    // 辅助方法：解析整数，处理空值和异常
+    public static int parseInt(String intStr) {
+        if (intStr == null || intStr.trim().isEmpty() || "null".equalsIgnoreCase(intStr.trim())) {
+            return 0;
+        }
+
+        try {
+            return Integer.parseInt(intStr.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // 辅助方法：解析长整型，处理空值和异常
+    public static long parseLong(String longStr) {
+        if (longStr == null || longStr.trim().isEmpty() || "null".equalsIgnoreCase(longStr.trim())) {
+            return 0L;
+        }
+
+        try {
+            return Long.parseLong(longStr.trim());
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+}
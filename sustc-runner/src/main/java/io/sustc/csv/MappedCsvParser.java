@@ -0,0 +1,213 @@
+package io.sustc.csv;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * Parses a CSV file in parallel over a memory-mapped view of it.
+ * <p>
+ * A first sequential pass only tracks whether each byte is inside quotes, and cuts the file into
+ * byte ranges that end right after a record's newline outside quotes. So a quoted field spanning
+ * several lines (as review texts do) never straddles two ranges. The ranges are then parsed as
+ * {@link ForkJoinPool} tasks, each into its own list, and the lists are concatenated in file order.
+ * <p>
+ * Fields follow RFC 4180: {@code ,} separates fields, {@code "} quotes a field, and {@code ""} inside quotes is
+ * one quote. As with OpenCSV's line-based reading, a line break inside quotes comes out as {@code \n}. Backslashes
+ * are not escapes, which matches OpenCSV's default parser on the dataset files (they contain none).
+ * Field bytes are decoded with the default charset, like the OpenCSV loaders.
+ */
+public final class MappedCsvParser {
+
+    private static final byte COMMA = ',';
+
+    private static final byte QUOTE = '"';
+
+    private static final byte LF = '\n';
+
+    private static final byte CR = '\r';
+
+    // 单次映射不超过 1GB，更大的文件按窗口扫描
+    private static final long MAX_WINDOW_BYTES = 1L << 30;
+
+    private static final long MIN_CHUNK_BYTES = 1L << 20;
+
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    private MappedCsvParser() {
+    }
+
+    /**
+     * Parses {@code file}, skipping its first record (the header) and records with fewer than {@code minFields} fields.
+     *
+     * @return the records in file order
+     */
+    public static <T> List<T> parse(Path file, int minFields, Function<String[], T> builder, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int chunks = (int) Math.max(1, Math.min((long) pool.getParallelism() * 4, size / MIN_CHUNK_BYTES));
+            chunks = (int) Math.max(chunks, size / MAX_WINDOW_BYTES + 1);
+            long[] bounds = recordBoundaries(channel, size, chunks);
+
+            List<RecursiveTask<List<T>>> tasks = new ArrayList<>(bounds.length - 1);
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                tasks.add(new RecursiveTask<>() {
+                    @Override
+                    protected List<T> compute() {
+                        try {
+                            return parseRange(channel, start, end, minFields, builder);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+            }
+            pool.invoke(new RecursiveTask<Void>() {
+                @Override
+                protected Void compute() {
+                    ForkJoinTask.invokeAll(tasks);
+                    return null;
+                }
+            });
+
+            List<T> records = new ArrayList<>();
+            for (RecursiveTask<List<T>> task : tasks) {
+                records.addAll(task.join());
+            }
+            return records;
+        }
+    }
+
+    /**
+     * Scans the quote parity of the whole file and returns the start offsets of up to {@code chunks}
+     * byte ranges (plus {@code size} as the last element). The first range starts after the header record.
+     */
+    private static long[] recordBoundaries(FileChannel channel, long size, int chunks) throws IOException {
+        long[] bounds = new long[chunks + 1];
+        int count = 0;
+        boolean inQuotes = false;
+        boolean headerSeen = false;
+        int nextTarget = 1;
+        for (long windowStart = 0; windowStart < size; windowStart += MAX_WINDOW_BYTES) {
+            long windowSize = Math.min(MAX_WINDOW_BYTES, size - windowStart);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+            for (int i = 0; i < windowSize; i++) {
+                byte b = window.get(i);
+                if (b == QUOTE) {
+                    inQuotes = !inQuotes;
+                } else if (b == LF && !inQuotes) {
+                    long recordEnd = windowStart + i + 1;
+                    if (!headerSeen) {
+                        headerSeen = true;
+                        bounds[count++] = recordEnd;
+                    } else if (nextTarget < chunks && recordEnd >= size * nextTarget / chunks && recordEnd < size) {
+                        bounds[count++] = recordEnd;
+                        nextTarget++;
+                        // 一条超长记录可能跨过多个目标位置
+                        while (nextTarget < chunks && recordEnd >= size * nextTarget / chunks) {
+                            nextTarget++;
+                        }
+                    }
+                }
+            }
+        }
+        if (!headerSeen) {
+            bounds[count++] = size;
+        }
+        bounds[count++] = size;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    private static <T> List<T> parseRange(FileChannel channel, long start, long end, int minFields,
+                                          Function<String[], T> builder) throws IOException {
+        List<T> records = new ArrayList<>();
+        if (start >= end) {
+            return records;
+        }
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        int limit = (int) (end - start);
+        byte[] scratch = new byte[256];
+        List<String> fields = new ArrayList<>();
+
+        int pos = 0;
+        while (pos < limit) {
+            fields.clear();
+            boolean endOfRecord = false;
+            while (!endOfRecord) {
+                int len = 0;
+                if (pos < limit && buf.get(pos) == QUOTE) {
+                    pos++;
+                    while (pos < limit) {
+                        byte b = buf.get(pos);
+                        if (b == QUOTE) {
+                            if (pos + 1 < limit && buf.get(pos + 1) == QUOTE) {
+                                scratch = append(scratch, len++, QUOTE);
+                                pos += 2;
+                                continue;
+                            }
+                            pos++;
+                            break;
+                        }
+                        if (b == CR) {
+                            // 与按行读取的 OpenCSV 一致，引号内的换行统一成 \n
+                            scratch = append(scratch, len++, LF);
+                            pos += pos + 1 < limit && buf.get(pos + 1) == LF ? 2 : 1;
+                            continue;
+                        }
+                        scratch = append(scratch, len++, b);
+                        pos++;
+                    }
+                }
+                // 未加引号的字段，或引号之后到分隔符之前的残余字符
+                while (pos < limit) {
+                    byte b = buf.get(pos);
+                    if (b == COMMA || b == LF || b == CR) {
+                        break;
+                    }
+                    scratch = append(scratch, len++, b);
+                    pos++;
+                }
+                fields.add(new String(scratch, 0, len, CHARSET));
+
+                if (pos >= limit) {
+                    endOfRecord = true;
+                } else {
+                    byte b = buf.get(pos++);
+                    if (b == CR) {
+                        if (pos < limit && buf.get(pos) == LF) {
+                            pos++;
+                        }
+                        endOfRecord = true;
+                    } else if (b == LF) {
+                        endOfRecord = true;
+                    }
+                }
+            }
+            if (fields.size() >= minFields) {
+                records.add(builder.apply(fields.toArray(new String[0])));
+            }
+        }
+        return records;
+    }
+
+    private static byte[] append(byte[] scratch, int index, byte b) {
+        if (index == scratch.length) {
+            scratch = Arrays.copyOf(scratch, scratch.length << 1);
+        }
+        scratch[index] = b;
+        return scratch;
+    }
+}
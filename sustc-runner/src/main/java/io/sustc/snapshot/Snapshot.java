@@ -0,0 +1,199 @@
+package io.sustc.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A columnar, memory-mapped file of records, and a read-only list view over it.
+ * <p>
+ * The file starts with a small header: the magic {@code SUSTCSNP}, the format version, the schema id, the row
+ * count and, per column, its kind, name, offset and length. The columns follow, each starting at a multiple of
+ * 8 bytes, laid out as described in {@link SnapshotColumn}. Numbers are fixed-width, strings and arrays are
+ * pools indexed by offset arrays, so any field of any row is found with a couple of reads.
+ * <p>
+ * {@link #get(int)} decodes a single record from the mapped file each time it is called; nothing is decoded
+ * up front and the records are not kept, so a snapshot costs next to no heap however large the file is.
+ * Callers that walk the list once (an import, a stream) never hold more than the record at hand. Reads only
+ * use absolute positions, so the view can be shared between threads. Files are limited to 2 GB.
+ *
+ * @param <T> the record type
+ */
+public final class Snapshot<T> extends AbstractList<T> implements RandomAccess {
+
+    static final int VERSION = 1;
+
+    private static final byte[] MAGIC = "SUSTCSNP".getBytes(StandardCharsets.US_ASCII);
+
+    private final SnapshotSchema<T> schema;
+
+    private final ByteBuffer buf;
+
+    private final int rows;
+
+    private final int[] bases;
+
+    private Snapshot(SnapshotSchema<T> schema, ByteBuffer buf, int rows, int[] bases) {
+        this.schema = schema;
+        this.buf = buf;
+        this.rows = rows;
+        this.bases = bases;
+    }
+
+    /**
+     * Maps {@code file}, checking that it was written with {@code schema}.
+     */
+    public static <T> Snapshot<T> open(SnapshotSchema<T> schema, Path file) throws IOException {
+        MappedByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + file + " is larger than 2 GB");
+            }
+            // 映射在通道关闭后依然有效
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer header = buf.duplicate();
+        byte[] magic = new byte[MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException(file + " is not a snapshot");
+        }
+        int version = header.getInt();
+        int schemaId = header.getInt();
+        if (version != VERSION || schemaId != schema.id()) {
+            throw new IOException(file + " has version " + version + " and schema " + schemaId
+                    + ", expected version " + VERSION + " and schema " + schema.id());
+        }
+        int rows = header.getInt();
+        int columnCount = header.getInt();
+        List<SnapshotColumn<T>> columns = schema.columns();
+        if (columnCount != columns.size()) {
+            throw new IOException(file + " has " + columnCount + " columns, expected " + columns.size());
+        }
+        int[] bases = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            SnapshotColumn.Kind kind = SnapshotColumn.Kind.values()[header.getInt()];
+            byte[] name = new byte[header.getShort()];
+            header.get(name);
+            bases[i] = (int) header.getLong();
+            header.getLong();
+            SnapshotColumn<T> column = columns.get(i);
+            if (kind != column.kind() || !column.name().equals(new String(name, StandardCharsets.UTF_8))) {
+                throw new IOException(file + " column " + i + " does not match " + column.name());
+            }
+        }
+        return new Snapshot<>(schema, buf, rows, bases);
+    }
+
+    /**
+     * Writes {@code records} to {@code file} in snapshot format, replacing it if it exists.
+     */
+    public static <T> void write(SnapshotSchema<T> schema, List<T> records, Path file) throws IOException {
+        List<SnapshotColumn<T>> columns = schema.columns();
+        List<byte[]> data = new ArrayList<>(columns.size());
+        for (SnapshotColumn<T> column : columns) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                column.write(records, out);
+            }
+            data.add(bytes.toByteArray());
+        }
+
+        // 头部长度与偏移量的取值无关，先用 0 占位算出长度
+        long[] offsets = new long[columns.size()];
+        long position = SnapshotColumn.align8(header(schema, records.size(), offsets, data).length);
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = position;
+            position = SnapshotColumn.align8((int) (position + data.get(i).length));
+            if (position > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot of " + records.size() + " records would exceed 2 GB");
+            }
+        }
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            byte[] header = header(schema, records.size(), offsets, data);
+            out.write(header);
+            long written = pad(out, header.length);
+            for (byte[] column : data) {
+                out.write(column);
+                written = pad(out, written + column.length);
+            }
+        }
+    }
+
+    /**
+     * @return whether {@code file} starts with the snapshot magic
+     */
+    public static boolean isSnapshot(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+        }
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= rows) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + rows);
+        }
+        T record = schema.newRecord();
+        List<SnapshotColumn<T>> columns = schema.columns();
+        for (int i = 0; i < bases.length; i++) {
+            columns.get(i).read(buf, bases[i], rows, index, record);
+        }
+        return record;
+    }
+
+    @Override
+    public int size() {
+        return rows;
+    }
+
+    private static <T> byte[] header(SnapshotSchema<T> schema, int rows, long[] offsets, List<byte[]> data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.write(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(schema.id());
+            out.writeInt(rows);
+            out.writeInt(schema.columns().size());
+            for (int i = 0; i < offsets.length; i++) {
+                SnapshotColumn<T> column = schema.columns().get(i);
+                byte[] name = column.name().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(column.kind().ordinal());
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeLong(offsets[i]);
+                out.writeLong(data.get(i).length);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Pads the output from {@code position} up to the next multiple of 8 bytes.
+     *
+     * @return the position after padding
+     */
+    private static long pad(OutputStream out, long position) throws IOException {
+        long aligned = (position + 7) & ~7L;
+        for (long i = position; i < aligned; i++) {
+            out.write(0);
+        }
+        return aligned;
+    }
+}
@@ -0,0 +1,338 @@
+package io.sustc.snapshot;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * One column of a {@link Snapshot}: how a record field is laid out in the file and read back.
+ * <p>
+ * Layouts, all big-endian, with {@code n} the number of rows:
+ * <ul>
+ *     <li>{@code LONG}, {@code INT}, {@code FLOAT}, {@code BOOLEAN}: {@code n} values of 8, 4, 4 and 1 bytes;</li>
+ *     <li>{@code TIMESTAMP}: null bitmap, {@code n} epoch millis, {@code n} nano-of-second ints;</li>
+ *     <li>{@code STRING}: null bitmap, {@code n + 1} byte offsets into the pool, then the UTF-8 pool;</li>
+ *     <li>{@code LONG_ARRAY}: null bitmap, {@code n + 1} element offsets, then the elements;</li>
+ *     <li>{@code STRING_ARRAY}: null bitmap, {@code n + 1} element offsets, then a {@code STRING} layout of all elements.</li>
+ * </ul>
+ * A null bitmap has one bit per row, set for {@code null}, padded to a multiple of 8 bytes, so the offset
+ * arrays that follow stay aligned.
+ *
+ * @param <T> the record type
+ */
+abstract class SnapshotColumn<T> {
+
+    enum Kind {
+        LONG, INT, FLOAT, BOOLEAN, TIMESTAMP, STRING, LONG_ARRAY, STRING_ARRAY
+    }
+
+    interface FloatGetter<T> {
+        float get(T record);
+    }
+
+    interface FloatSetter<T> {
+        void set(T record, float value);
+    }
+
+    interface BooleanGetter<T> {
+        boolean get(T record);
+    }
+
+    interface BooleanSetter<T> {
+        void set(T record, boolean value);
+    }
+
+    private final String name;
+
+    private final Kind kind;
+
+    private SnapshotColumn(String name, Kind kind) {
+        this.name = name;
+        this.kind = kind;
+    }
+
+    String name() {
+        return name;
+    }
+
+    Kind kind() {
+        return kind;
+    }
+
+    /**
+     * Encodes this field of every record, in order.
+     */
+    abstract void write(List<T> records, DataOutputStream out) throws IOException;
+
+    /**
+     * Sets this field of {@code target} from row {@code row} of the column starting at {@code base}.
+     */
+    abstract void read(ByteBuffer buf, int base, int rows, int row, T target);
+
+    static <T> SnapshotColumn<T> longs(String name, ToLongFunction<T> getter, ObjLongConsumer<T> setter) {
+        return new SnapshotColumn<>(name, Kind.LONG) {
+            @Override
+            void write(List<T> records, DataOutputStream out) throws IOException {
+                for (T record : records) {
+                    out.writeLong(getter.applyAsLong(record));
+                }
+            }
+
+            @Override
+            void read(ByteBuffer buf, int base, int rows, int row, T target) {
+                setter.accept(target, buf.getLong(base + row * 8));
+            }
+        };
+    }
+
+    static <T> SnapshotColumn<T> ints(String name, ToIntFunction<T> getter, ObjIntConsumer<T> setter) {
+        return new SnapshotColumn<>(name, Kind.INT) {
+            @Override
+            void write(List<T> records, DataOutputStream out) throws IOException {
+                for (T record : records) {
+                    out.writeInt(getter.applyAsInt(record));
+                }
+            }
+
+            @Override
+            void read(ByteBuffer buf, int base, int rows, int row, T target) {
+                setter.accept(target, buf.getInt(base + row * 4));
+            }
+        };
+    }
+
+    static <T> SnapshotColumn<T> floats(String name, FloatGetter<T> getter, FloatSetter<T> setter) {
+        return new SnapshotColumn<>(name, Kind.FLOAT) {
+            @Override
+            void write(List<T> records, DataOutputStream out) throws IOException {
+                for (T record : records) {
+                    out.writeFloat(getter.get(record));
+                }
+            }
+
+            @Override
+            void read(ByteBuffer buf, int base, int rows, int row, T target) {
+                setter.set(target, buf.getFloat(base + row * 4));
+            }
+        };
+    }
+
+    static <T> SnapshotColumn<T> booleans(String name, BooleanGetter<T> getter, BooleanSetter<T> setter) {
+        return new SnapshotColumn<>(name, Kind.BOOLEAN) {
+            @Override
+            void write(List<T> records, DataOutputStream out) throws IOException {
+                for (T record : records) {
+                    out.writeBoolean(getter.get(record));
+                }
+            }
+
+            @Override
+            void read(ByteBuffer buf, int base, int rows, int row, T target) {
+                setter.set(target, buf.get(base + row) != 0);
+            }
+        };
+    }
+
+    static <T> SnapshotColumn<T> timestamps(String name, Function<T, Timestamp> getter, BiConsumer<T, Timestamp> setter) {
+        return new SnapshotColumn<>(name, Kind.TIMESTAMP) {
+            @Override
+            void write(List<T> records, DataOutputStream out) throws IOException {
+                int n = records.size();
+                writeBitmap(out, n, i -> getter.apply(records.get(i)));
+                for (T record : records) {
+                    Timestamp ts = getter.apply(record);
+                    out.writeLong(ts == null ? 0L : ts.getTime());
+                }
+                for (T record : records) {
+                    Timestamp ts = getter.apply(record);
+                    out.writeInt(ts == null ? 0 : ts.getNanos());
+                }
+            }
+
+            @Override
+            void read(ByteBuffer buf, int base, int rows, int row, T target) {
+                if (isNull(buf, base, row)) {
+                    setter.accept(target, null);
+                    return;
+                }
+                int millisBase = base + bitmapBytes(rows);
+                Timestamp ts = new Timestamp(buf.getLong(millisBase + row * 8));
+                ts.setNanos(buf.getInt(millisBase + rows * 8 + row * 4));
+                setter.accept(target, ts);
+            }
+        };
+    }
+
+    static <T> SnapshotColumn<T> strings(String name, Function<T, String> getter, BiConsumer<T, String> setter) {
+        return new SnapshotColumn<>(name, Kind.STRING) {
+            @Override
+            void write(List<T> records, DataOutputStream out) throws IOException {
+                writeStrings(out, records.size(), i -> getter.apply(records.get(i)));
+            }
+
+            @Override
+            void read(ByteBuffer buf, int base, int rows, int row, T target) {
+                setter.accept(target, readString(buf, base, rows, row));
+            }
+        };
+    }
+
+    static <T> SnapshotColumn<T> longArrays(String name, Function<T, long[]> getter, BiConsumer<T, long[]> setter) {
+        return new SnapshotColumn<>(name, Kind.LONG_ARRAY) {
+            @Override
+            void write(List<T> records, DataOutputStream out) throws IOException {
+                int n = records.size();
+                writeBitmap(out, n, i -> getter.apply(records.get(i)));
+                long offset = 0;
+                out.writeLong(offset);
+                for (T record : records) {
+                    long[] values = getter.apply(record);
+                    offset += values == null ? 0 : values.length;
+                    out.writeLong(offset);
+                }
+                for (T record : records) {
+                    long[] values = getter.apply(record);
+                    if (values != null) {
+                        for (long v : values) {
+                            out.writeLong(v);
+                        }
+                    }
+                }
+            }
+
+            @Override
+            void read(ByteBuffer buf, int base, int rows, int row, T target) {
+                if (isNull(buf, base, row)) {
+                    setter.accept(target, null);
+                    return;
+                }
+                int offsets = base + bitmapBytes(rows);
+                int from = (int) buf.getLong(offsets + row * 8);
+                int to = (int) buf.getLong(offsets + (row + 1) * 8);
+                int elements = offsets + (rows + 1) * 8;
+                long[] values = new long[to - from];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = buf.getLong(elements + (from + i) * 8);
+                }
+                setter.accept(target, values);
+            }
+        };
+    }
+
+    static <T> SnapshotColumn<T> stringArrays(String name, Function<T, String[]> getter, BiConsumer<T, String[]> setter) {
+        return new SnapshotColumn<>(name, Kind.STRING_ARRAY) {
+            @Override
+            void write(List<T> records, DataOutputStream out) throws IOException {
+                int n = records.size();
+                writeBitmap(out, n, i -> getter.apply(records.get(i)));
+                int[] starts = new int[n + 1];
+                out.writeLong(0);
+                for (int i = 0; i < n; i++) {
+                    String[] values = getter.apply(records.get(i));
+                    starts[i + 1] = starts[i] + (values == null ? 0 : values.length);
+                    out.writeLong(starts[i + 1]);
+                }
+                // 所有元素连成一个字符串列，按元素序号定位到所属的行
+                writeStrings(out, starts[n], e -> {
+                    int row = rowOf(starts, e);
+                    return getter.apply(records.get(row))[e - starts[row]];
+                });
+            }
+
+            @Override
+            void read(ByteBuffer buf, int base, int rows, int row, T target) {
+                if (isNull(buf, base, row)) {
+                    setter.accept(target, null);
+                    return;
+                }
+                int offsets = base + bitmapBytes(rows);
+                int from = (int) buf.getLong(offsets + row * 8);
+                int to = (int) buf.getLong(offsets + (row + 1) * 8);
+                int elementCount = (int) buf.getLong(offsets + rows * 8);
+                int elements = offsets + (rows + 1) * 8;
+                String[] values = new String[to - from];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = readString(buf, elements, elementCount, from + i);
+                }
+                setter.accept(target, values);
+            }
+        };
+    }
+
+    static int bitmapBytes(int rows) {
+        return align8((rows + 7) / 8);
+    }
+
+    static int align8(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    private static void writeBitmap(DataOutputStream out, int rows, IntFunction<Object> valueAt) throws IOException {
+        byte[] bitmap = new byte[bitmapBytes(rows)];
+        for (int i = 0; i < rows; i++) {
+            if (valueAt.apply(i) == null) {
+                bitmap[i >>> 3] |= (byte) (1 << (i & 7));
+            }
+        }
+        out.write(bitmap);
+    }
+
+    private static boolean isNull(ByteBuffer buf, int base, int row) {
+        return (buf.get(base + (row >>> 3)) & (1 << (row & 7))) != 0;
+    }
+
+    private static void writeStrings(DataOutputStream out, int n, IntFunction<String> valueAt) throws IOException {
+        writeBitmap(out, n, valueAt::apply);
+        byte[][] encoded = new byte[n][];
+        long offset = 0;
+        out.writeLong(offset);
+        for (int i = 0; i < n; i++) {
+            String value = valueAt.apply(i);
+            encoded[i] = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+            offset += encoded[i].length;
+            out.writeLong(offset);
+        }
+        for (byte[] bytes : encoded) {
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer buf, int base, int rows, int row) {
+        if (isNull(buf, base, row)) {
+            return null;
+        }
+        int offsets = base + bitmapBytes(rows);
+        int from = (int) buf.getLong(offsets + row * 8);
+        int to = (int) buf.getLong(offsets + (row + 1) * 8);
+        byte[] bytes = new byte[to - from];
+        buf.get(offsets + (rows + 1) * 8 + from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the row whose elements {@code [starts[row], starts[row + 1])} contain {@code element}
+     */
+    private static int rowOf(int[] starts, int element) {
+        int lo = 0;
+        int hi = starts.length - 2;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (starts[mid] <= element) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+}
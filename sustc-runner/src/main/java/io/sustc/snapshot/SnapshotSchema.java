@@ -0,0 +1,105 @@
+package io.sustc.snapshot;
+
+import io.sustc.dto.RecipeRecord;
+import io.sustc.dto.ReviewRecord;
+import io.sustc.dto.UserRecord;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static io.sustc.snapshot.SnapshotColumn.*;
+
+/**
+ * The columns of one record type in a {@link Snapshot}, in file order.
+ * Adding, removing or reordering columns changes the format; bump {@link Snapshot#VERSION} when doing so.
+ *
+ * @param <T> the record type
+ */
+public final class SnapshotSchema<T> {
+
+    public static final SnapshotSchema<UserRecord> USERS = new SnapshotSchema<>(1, "users.snap", UserRecord::new, List.of(
+            longs("author_id", UserRecord::getAuthorId, UserRecord::setAuthorId),
+            strings("author_name", UserRecord::getAuthorName, UserRecord::setAuthorName),
+            strings("gender", UserRecord::getGender, UserRecord::setGender),
+            ints("age", UserRecord::getAge, UserRecord::setAge),
+            ints("followers", UserRecord::getFollowers, UserRecord::setFollowers),
+            ints("following", UserRecord::getFollowing, UserRecord::setFollowing),
+            longArrays("follower_users", UserRecord::getFollowerUsers, UserRecord::setFollowerUsers),
+            longArrays("following_users", UserRecord::getFollowingUsers, UserRecord::setFollowingUsers),
+            strings("password", UserRecord::getPassword, UserRecord::setPassword),
+            booleans("is_deleted", UserRecord::isDeleted, UserRecord::setDeleted)
+    ));
+
+    public static final SnapshotSchema<RecipeRecord> RECIPES = new SnapshotSchema<>(2, "recipes.snap", RecipeRecord::new, List.of(
+            longs("recipe_id", RecipeRecord::getRecipeId, RecipeRecord::setRecipeId),
+            strings("name", RecipeRecord::getName, RecipeRecord::setName),
+            longs("author_id", RecipeRecord::getAuthorId, RecipeRecord::setAuthorId),
+            strings("author_name", RecipeRecord::getAuthorName, RecipeRecord::setAuthorName),
+            strings("cook_time", RecipeRecord::getCookTime, RecipeRecord::setCookTime),
+            strings("prep_time", RecipeRecord::getPrepTime, RecipeRecord::setPrepTime),
+            strings("total_time", RecipeRecord::getTotalTime, RecipeRecord::setTotalTime),
+            timestamps("date_published", RecipeRecord::getDatePublished, RecipeRecord::setDatePublished),
+            strings("description", RecipeRecord::getDescription, RecipeRecord::setDescription),
+            strings("recipe_category", RecipeRecord::getRecipeCategory, RecipeRecord::setRecipeCategory),
+            stringArrays("recipe_ingredient_parts", RecipeRecord::getRecipeIngredientParts, RecipeRecord::setRecipeIngredientParts),
+            floats("aggregated_rating", RecipeRecord::getAggregatedRating, RecipeRecord::setAggregatedRating),
+            ints("review_count", RecipeRecord::getReviewCount, RecipeRecord::setReviewCount),
+            floats("calories", RecipeRecord::getCalories, RecipeRecord::setCalories),
+            floats("fat_content", RecipeRecord::getFatContent, RecipeRecord::setFatContent),
+            floats("saturated_fat_content", RecipeRecord::getSaturatedFatContent, RecipeRecord::setSaturatedFatContent),
+            floats("cholesterol_content", RecipeRecord::getCholesterolContent, RecipeRecord::setCholesterolContent),
+            floats("sodium_content", RecipeRecord::getSodiumContent, RecipeRecord::setSodiumContent),
+            floats("carbohydrate_content", RecipeRecord::getCarbohydrateContent, RecipeRecord::setCarbohydrateContent),
+            floats("fiber_content", RecipeRecord::getFiberContent, RecipeRecord::setFiberContent),
+            floats("sugar_content", RecipeRecord::getSugarContent, RecipeRecord::setSugarContent),
+            floats("protein_content", RecipeRecord::getProteinContent, RecipeRecord::setProteinContent),
+            ints("recipe_servings", RecipeRecord::getRecipeServings, RecipeRecord::setRecipeServings),
+            strings("recipe_yield", RecipeRecord::getRecipeYield, RecipeRecord::setRecipeYield)
+    ));
+
+    public static final SnapshotSchema<ReviewRecord> REVIEWS = new SnapshotSchema<>(3, "reviews.snap", ReviewRecord::new, List.of(
+            longs("review_id", ReviewRecord::getReviewId, ReviewRecord::setReviewId),
+            longs("recipe_id", ReviewRecord::getRecipeId, ReviewRecord::setRecipeId),
+            longs("author_id", ReviewRecord::getAuthorId, ReviewRecord::setAuthorId),
+            strings("author_name", ReviewRecord::getAuthorName, ReviewRecord::setAuthorName),
+            floats("rating", ReviewRecord::getRating, ReviewRecord::setRating),
+            strings("review", ReviewRecord::getReview, ReviewRecord::setReview),
+            timestamps("date_submitted", ReviewRecord::getDateSubmitted, ReviewRecord::setDateSubmitted),
+            timestamps("date_modified", ReviewRecord::getDateModified, ReviewRecord::setDateModified),
+            longArrays("likes", ReviewRecord::getLikes, ReviewRecord::setLikes)
+    ));
+
+    private final int id;
+
+    private final String fileName;
+
+    private final Supplier<T> factory;
+
+    private final List<SnapshotColumn<T>> columns;
+
+    private SnapshotSchema(int id, String fileName, Supplier<T> factory, List<SnapshotColumn<T>> columns) {
+        this.id = id;
+        this.fileName = fileName;
+        this.factory = factory;
+        this.columns = columns;
+    }
+
+    /**
+     * @return the usual name of a snapshot of this type in a data directory
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    int id() {
+        return id;
+    }
+
+    T newRecord() {
+        return factory.get();
+    }
+
+    List<SnapshotColumn<T>> columns() {
+        return columns;
+    }
+}
@@ -0,0 +1,149 @@
+package io.sustc.benchmark;
+
+import io.fury.Fury;
+import io.fury.ThreadSafeFury;
+import io.fury.config.CompatibleMode;
+import io.fury.config.Language;
+import io.sustc.dto.UserRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkedSerializerTest {
+
+    private final ThreadSafeFury legacyFury = Fury.builder()
+            .requireClassRegistration(false)
+            .withLanguage(Language.JAVA)
+            .withRefTracking(true)
+            .withCompatibleMode(CompatibleMode.COMPATIBLE)
+            .buildThreadSafeFury();
+
+    private final ChunkedSerializer serializer = new ChunkedSerializer(BenchmarkConfig.chunkFury(), legacyFury);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void listOfSeveralChunksRoundTrips() throws IOException {
+        // 跨过块边界，最后一块不满
+        List<UserRecord> users = users(2 * ChunkedSerializer.CHUNK_ELEMENTS + 7);
+        Path file = dir.resolve("nested/users.ser");
+
+        serializer.write(users, file);
+
+        assertTrue(ChunkedSerializer.isChunked(file));
+        assertEquals(users, serializer.read(file));
+    }
+
+    @Test
+    void streamKeepsListOrder() throws IOException {
+        List<UserRecord> users = users(3 * ChunkedSerializer.CHUNK_ELEMENTS + 1);
+        Path file = dir.resolve("users.ser");
+        serializer.write(users, file);
+
+        try (Stream<UserRecord> stream = serializer.stream(file)) {
+            assertEquals(users, stream.toList());
+        }
+    }
+
+    @Test
+    void streamedWriteRoundTrips() throws IOException {
+        // 块数多于编码线程数，最后一块不满
+        List<UserRecord> users = users((ForkJoinPool.getCommonPoolParallelism() + 3) * ChunkedSerializer.CHUNK_ELEMENTS + 3);
+        Path file = dir.resolve("nested/users.ser");
+
+        assertEquals(users.size(), serializer.write(users.stream(), file));
+
+        assertTrue(ChunkedSerializer.isChunked(file));
+        assertEquals(users, serializer.read(file));
+        try (Stream<UserRecord> stream = serializer.stream(file)) {
+            assertEquals(users, stream.toList());
+        }
+    }
+
+    @Test
+    void emptyStreamIsAnEmptyList() throws IOException {
+        Path file = dir.resolve("empty.ser");
+
+        assertEquals(0, serializer.write(Stream.empty(), file));
+
+        assertEquals(List.of(), serializer.read(file));
+    }
+
+    @Test
+    void failingStreamFailsTheWrite() {
+        Stream<UserRecord> failing = Stream.concat(users(ChunkedSerializer.CHUNK_ELEMENTS + 1).stream(), Stream.generate(() -> {
+            throw new IllegalStateException("bad csv line");
+        }));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> serializer.write(failing, dir.resolve("users.ser")));
+        assertEquals("bad csv line", e.getMessage());
+    }
+
+    @Test
+    void emptyListRoundTrips() throws IOException {
+        Path file = dir.resolve("empty.ser");
+
+        serializer.write(List.of(), file);
+
+        assertEquals(List.of(), serializer.read(file));
+        try (Stream<Object> stream = serializer.stream(file)) {
+            assertEquals(0, stream.count());
+        }
+    }
+
+    @Test
+    void nonListIsOneChunk() throws IOException {
+        Map<String, Long> cases = new HashMap<>(Map.of("a", 1L, "b", 2L));
+        Path file = dir.resolve("cases.ser");
+
+        serializer.write(cases, file);
+
+        assertEquals(cases, serializer.read(file));
+        assertThrows(IOException.class, () -> serializer.stream(file));
+    }
+
+    @Test
+    void legacyFilesAreStillRead() throws IOException {
+        List<String> names = IntStream.range(0, 10).mapToObj(i -> "user" + i).collect(Collectors.toCollection(ArrayList::new));
+        Path file = dir.resolve("legacy.ser");
+        Files.write(file, legacyFury.serialize(names));
+
+        assertFalse(ChunkedSerializer.isChunked(file));
+        assertEquals(names, serializer.read(file));
+        try (Stream<String> stream = serializer.stream(file)) {
+            assertEquals(names, stream.toList());
+        }
+    }
+
+    private static List<UserRecord> users(int n) {
+        List<UserRecord> users = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            users.add(UserRecord.builder()
+                    .authorId(i)
+                    .authorName(i % 100 == 0 ? null : "user" + i)
+                    .gender(i % 2 == 0 ? "Male" : "Female")
+                    .age(20 + i % 50)
+                    .followers(i % 3)
+                    .followingUsers(new long[]{i + 1L, i + 2L})
+                    .build());
+        }
+        return users;
+    }
+}
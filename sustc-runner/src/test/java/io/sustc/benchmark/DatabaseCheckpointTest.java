@@ -0,0 +1,141 @@
+package io.sustc.benchmark;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.sustc.service.DatabaseService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+
+/**
+ * The {@link DatabaseCheckpoint.Strategy#TABLE_COPY} checkpoint on two tables of its own, a parent with a serial
+ * key and a child with an identity key pointing to it.
+ * <p>
+ * The database is taken from {@code SUSTC_TEST_URL}, {@code SUSTC_TEST_USERNAME} and {@code SUSTC_TEST_PASSWORD},
+ * like the tests of sustc-api. A restore rewrites every table of its {@code public} schema.
+ */
+@Tag("db")
+@SpringJUnitConfig(DatabaseCheckpointTest.Config.class)
+class DatabaseCheckpointTest {
+
+    @Autowired
+    private DatabaseCheckpoint checkpoint;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DatabaseService databaseService;
+
+    @BeforeEach
+    void createTables() {
+        dropTables();
+        jdbcTemplate.execute("CREATE TABLE checkpoint_parent (id SERIAL PRIMARY KEY, name TEXT)");
+        jdbcTemplate.execute("""
+                CREATE TABLE checkpoint_child (
+                        id        INT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+                        parent_id INT NOT NULL REFERENCES checkpoint_parent (id)
+                )
+                """);
+        jdbcTemplate.update("INSERT INTO checkpoint_parent (name) VALUES ('a'), ('b')");
+        jdbcTemplate.update("INSERT INTO checkpoint_child (parent_id) VALUES (1), (2), (2)");
+        reset(databaseService);
+    }
+
+    @AfterEach
+    void dropTables() {
+        checkpoint.discard();
+        jdbcTemplate.execute("DROP TABLE IF EXISTS checkpoint_child, checkpoint_parent");
+    }
+
+    @Test
+    void restoreUndoesEveryChange() {
+        checkpoint.save();
+
+        jdbcTemplate.update("DELETE FROM checkpoint_child WHERE parent_id = 2");
+        jdbcTemplate.update("UPDATE checkpoint_parent SET name = 'changed' WHERE id = 1");
+        jdbcTemplate.update("INSERT INTO checkpoint_parent (name) VALUES ('c'), ('d')");
+        checkpoint.restore();
+
+        assertEquals(List.of("a", "b"), jdbcTemplate.queryForList("SELECT name FROM checkpoint_parent ORDER BY id", String.class));
+        assertEquals(List.of(2, 2), jdbcTemplate.queryForList("SELECT parent_id FROM checkpoint_child WHERE id > 1 ORDER BY id", Integer.class));
+        // 序列回到保存时的位置，新行不会和恢复的行冲突，也不会跳号
+        assertEquals(3, jdbcTemplate.queryForObject("INSERT INTO checkpoint_parent (name) VALUES ('e') RETURNING id", Integer.class));
+        assertEquals(4, jdbcTemplate.queryForObject("INSERT INTO checkpoint_child (parent_id) VALUES (1) RETURNING id", Integer.class));
+        verify(databaseService).invalidateCaches();
+    }
+
+    @Test
+    void checkpointCanBeRestoredRepeatedly() {
+        checkpoint.save();
+
+        for (int trial = 0; trial < 3; trial++) {
+            jdbcTemplate.update("DELETE FROM checkpoint_child");
+            checkpoint.restore();
+            assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM checkpoint_child", Integer.class));
+        }
+    }
+
+    @Test
+    void restoreNeedsASavedCheckpoint() {
+        assertThrows(IllegalStateException.class, () -> checkpoint.restore());
+
+        checkpoint.save();
+        checkpoint.discard();
+
+        assertThrows(IllegalStateException.class, () -> checkpoint.restore());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_namespace WHERE nspname = 'sustc_checkpoint'", Integer.class));
+    }
+
+    @Configuration
+    @Import(DatabaseCheckpoint.class)
+    static class Config {
+
+        @Bean(destroyMethod = "close")
+        DataSource dataSource() {
+            HikariConfig config = new HikariConfig();
+            config.setJdbcUrl(env("SUSTC_TEST_URL", "jdbc:postgresql://localhost:5432/sustc"));
+            config.setUsername(env("SUSTC_TEST_USERNAME", "sustc"));
+            config.setPassword(env("SUSTC_TEST_PASSWORD", "sustc"));
+            return new HikariDataSource(config);
+        }
+
+        @Bean
+        JdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new JdbcTemplate(dataSource);
+        }
+
+        @Bean
+        DatabaseService databaseService() {
+            return mock(DatabaseService.class);
+        }
+
+        @Bean
+        BenchmarkConfig benchmarkConfig() {
+            // 默认就是 TABLE_COPY
+            return new BenchmarkConfig();
+        }
+
+        private static String env(String name, String defaultValue) {
+            String value = System.getenv(name);
+            return value == null || value.isBlank() ? defaultValue : value;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package io.sustc.benchmark;
+
+import io.sustc.dto.AuthInfo;
+import io.sustc.service.UserService;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LatencyRecorderTest {
+
+    private final LatencyRecorder recorder = new LatencyRecorder();
+
+    @Test
+    void leavesOtherBeansAlone() {
+        Object bean = new Object();
+
+        assertSame(bean, recorder.postProcessAfterInitialization(bean, "other"));
+    }
+
+    @Test
+    void timesCallsOnlyWhileRecording() {
+        UserService target = mock(UserService.class);
+        when(target.login(any())).thenReturn(7L);
+        when(target.getById(-1)).thenThrow(new IllegalArgumentException("no such user"));
+        UserService service = (UserService) recorder.postProcessAfterInitialization(target, "userService");
+
+        assertEquals(7L, service.login(new AuthInfo()));
+        recorder.start();
+        service.login(new AuthInfo());
+        service.login(new AuthInfo());
+        // 抛出的异常原样传出，这次调用也要计时
+        assertThrows(IllegalArgumentException.class, () -> service.getById(-1));
+        Map<String, LatencySummary> summaries = recorder.stop(1000, false);
+        service.login(new AuthInfo());
+
+        assertEquals(2, summaries.size());
+        assertEquals(2, summaries.get("UserService#login").getCount());
+        assertEquals(1, summaries.get("UserService#getById").getCount());
+        assertNull(summaries.get("UserService#login").getHistogram());
+        assertTrue(recorder.stop(1000, false).isEmpty());
+    }
+
+    @Test
+    void summarizesInMicroseconds() throws DataFormatException {
+        Histogram h = new Histogram(3);
+        for (int i = 1; i <= 1000; i++) {
+            h.recordValue(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        LatencySummary summary = LatencyRecorder.summarize(h, 2000, true);
+
+        assertEquals(1000, summary.getCount());
+        assertEquals(500, summary.getP50(), 1);
+        assertEquals(990, summary.getP99(), 1);
+        assertEquals(1000, summary.getMax(), 1);
+        assertEquals(500.0, summary.getThroughput());
+        Histogram decoded = Histogram.decodeFromCompressedByteBuffer(
+                ByteBuffer.wrap(Base64.getDecoder().decode(summary.getHistogram())), 0);
+        assertEquals(h.getTotalCount(), decoded.getTotalCount());
+        assertEquals(h.getValueAtPercentile(99), decoded.getValueAtPercentile(99));
+    }
+
+    @Test
+    void noThroughputWithoutElapsedTime() {
+        Histogram h = new Histogram(3);
+        h.recordValue(1000);
+
+        assertNull(LatencyRecorder.summarize(h, 0, false).getThroughput());
+    }
+}
@@ -0,0 +1,50 @@
+package io.sustc.benchmark;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MannWhitneyTest {
+
+    @Test
+    void exactTailWhenEveryRunIsSlower() {
+        // 5 对 5 且 y 全部更大：C(10, 5) = 252 种排列里只有这一种
+        assertEquals(1.0 / 252, MannWhitney.pGreater(new double[]{1, 2, 3, 4, 5}, new double[]{6, 7, 8, 9, 10}), 1e-12);
+        assertEquals(1.0 / 20, MannWhitney.pGreater(new double[]{1, 2, 3}, new double[]{4, 5, 6}), 1e-12);
+    }
+
+    @Test
+    void exactTailWhenEveryRunIsFaster() {
+        assertEquals(1.0, MannWhitney.pGreater(new double[]{6, 7, 8, 9, 10}, new double[]{1, 2, 3, 4, 5}), 1e-12);
+    }
+
+    @Test
+    void exactTailOfInterleavedRuns() {
+        // U = 3：6 种排列中 U 取 0..4 的次数为 1, 1, 2, 1, 1，所以 P(U >= 3) = 2/6
+        assertEquals(2.0 / 6, MannWhitney.pGreater(new double[]{1, 3}, new double[]{2, 4}), 1e-12);
+    }
+
+    @Test
+    void identicalRunsAreNotSlower() {
+        assertEquals(1.0, MannWhitney.pGreater(new double[]{5, 5, 5}, new double[]{5, 5, 5}));
+    }
+
+    @Test
+    void normalApproximationForLargeSamples() {
+        double[] x = new double[30];
+        double[] y = new double[30];
+        for (int i = 0; i < 30; i++) {
+            x[i] = i;
+            y[i] = 100 + i;
+        }
+        assertTrue(MannWhitney.pGreater(x, y) < 1e-6);
+        assertTrue(MannWhitney.pGreater(y, x) > 0.999);
+    }
+
+    @Test
+    void normalApproximationWithTies() {
+        double p = MannWhitney.pGreater(new double[]{1, 2, 2, 3}, new double[]{2, 3, 3, 4});
+        assertTrue(p > 0.05 && p < 0.5, () -> "p = " + p);
+    }
+}
@@ -0,0 +1,147 @@
+package io.sustc.benchmark;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReportComparatorTest {
+
+    private final ReportComparator comparator = new ReportComparator(0.1, 0.05, 0);
+
+    @Test
+    void slowerInEveryRunIsARegression() {
+        List<ReportComparator.Row> rows = comparator.compare(runs(1, 100, 101, 102, 103, 104), runs(1, 200, 201, 202, 203, 204));
+
+        assertEquals(1, rows.size());
+        ReportComparator.Row row = rows.get(0);
+        assertEquals("elapsed", row.getMetric());
+        assertEquals(5, row.getBaselineRuns());
+        assertEquals(102, row.getBaselineMedian());
+        assertEquals(202, row.getCurrentMedian());
+        assertEquals(1.0 / 252, row.getPValue(), 1e-12);
+        assertEquals(ReportComparator.Verdict.REGRESSED, row.getVerdict());
+        assertTrue(ReportComparator.regressed(rows));
+    }
+
+    @Test
+    void fasterInEveryRunIsAnImprovement() {
+        List<ReportComparator.Row> rows = comparator.compare(runs(1, 200, 201, 202, 203, 204), runs(1, 100, 101, 102, 103, 104));
+
+        assertEquals(ReportComparator.Verdict.IMPROVED, rows.get(0).getVerdict());
+        assertFalse(ReportComparator.regressed(rows));
+    }
+
+    @Test
+    void changeWithinThresholdIsUnchanged() {
+        // 每次都慢，但只慢了 1%
+        List<ReportComparator.Row> rows = comparator.compare(runs(1, 100, 101, 102, 103, 104), runs(1, 101, 102, 103, 104, 105));
+
+        assertEquals(ReportComparator.Verdict.UNCHANGED, rows.get(0).getVerdict());
+    }
+
+    @Test
+    void singleRunCannotBeTested() {
+        List<ReportComparator.Row> rows = comparator.compare(runs(1, 100), runs(1, 150));
+
+        assertNull(rows.get(0).getPValue());
+        assertEquals(ReportComparator.Verdict.SUSPECT, rows.get(0).getVerdict());
+        assertFalse(ReportComparator.regressed(rows));
+    }
+
+    @Test
+    void trialsOfOneRunAreSamples() {
+        BenchmarkResult base = result(1, 100L, 102L);
+        base.setTrials(TrialSummary.builder().elapsedTimes(List.of(100L, 101L, 102L, 103L, 104L)).build());
+        BenchmarkResult cur = result(1, 100L, 202L);
+        cur.setTrials(TrialSummary.builder().elapsedTimes(List.of(200L, 201L, 202L, 203L, 204L)).build());
+
+        ReportComparator.Row row = comparator.compare(List.of(List.of(base)), List.of(List.of(cur))).get(0);
+
+        assertEquals(5, row.getBaselineRuns());
+        assertEquals(5, row.getCurrentRuns());
+        assertEquals(ReportComparator.Verdict.REGRESSED, row.getVerdict());
+    }
+
+    @Test
+    void fewerPassesIsARegressionWhateverTheTimings() {
+        List<List<BenchmarkResult>> baseline = List.of(List.of(result(1, 100L, 100L)), List.of(result(1, 100L, 101L)));
+        List<List<BenchmarkResult>> current = List.of(List.of(result(1, 90L, 100L)), List.of(result(1, 90L, 101L)));
+
+        ReportComparator.Row row = comparator.compare(baseline, current).get(0);
+
+        assertEquals(100L, row.getBaselinePass());
+        assertEquals(90L, row.getCurrentPass());
+        assertEquals(ReportComparator.Verdict.REGRESSED, row.getVerdict());
+        assertEquals(ReportComparator.Verdict.UNCHANGED,
+                new ReportComparator(0.1, 0.05, 10).compare(baseline, current).get(0).getVerdict());
+    }
+
+    @Test
+    void comparesP99OfEachMethod() {
+        List<List<BenchmarkResult>> baseline = new ArrayList<>();
+        List<List<BenchmarkResult>> current = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            baseline.add(List.of(withP99(result(1, 10L, 100L + i), "UserService#login", 1000 + i)));
+            current.add(List.of(withP99(result(1, 10L, 100L + i), "UserService#login", 3000 + i)));
+        }
+
+        List<ReportComparator.Row> rows = comparator.compare(baseline, current);
+
+        assertEquals(2, rows.size());
+        assertEquals(ReportComparator.Verdict.UNCHANGED, rows.get(0).getVerdict());
+        assertEquals("UserService#login p99", rows.get(1).getMetric());
+        assertEquals(ReportComparator.Verdict.REGRESSED, rows.get(1).getVerdict());
+    }
+
+    @Test
+    void skipsStepsMissingOnOneSideAndTimedOutRuns() {
+        List<List<BenchmarkResult>> baseline = List.of(List.of(result(1, null, 100L), result(2, null, 100L)));
+        List<List<BenchmarkResult>> current = List.of(List.of(result(1, null, 100L), result(1, null, -1L), result(3, null, 100L)));
+
+        List<ReportComparator.Row> rows = comparator.compare(baseline, current);
+
+        assertEquals(1, rows.size());
+        assertEquals(1, rows.get(0).getStep());
+        assertEquals(1, rows.get(0).getCurrentRuns());
+        assertNull(rows.get(0).getBaselinePass());
+    }
+
+    @Test
+    void formatCountsTheVerdicts() {
+        List<ReportComparator.Row> rows = comparator.compare(runs(1, 100, 101, 102, 103, 104), runs(1, 200, 201, 202, 203, 204));
+
+        String text = ReportComparator.format(rows);
+
+        assertTrue(text.contains("REGRESSED"), text);
+        assertTrue(text.endsWith(String.format("1 regressed, 0 suspect, 0 improved, 1 compared%n")), text);
+    }
+
+    /**
+     * One report per elapsed time, each with a single result for {@code step}.
+     */
+    private static List<List<BenchmarkResult>> runs(int step, long... elapsed) {
+        List<List<BenchmarkResult>> runs = new ArrayList<>();
+        for (long e : elapsed) {
+            runs.add(List.of(result(step, null, e)));
+        }
+        return runs;
+    }
+
+    private static BenchmarkResult result(int step, Long passCnt, Long elapsed) {
+        BenchmarkResult result = new BenchmarkResult(passCnt, elapsed);
+        result.setId(step);
+        return result;
+    }
+
+    private static BenchmarkResult withP99(BenchmarkResult result, String method, long p99) {
+        result.setLatency(Map.of(method, LatencySummary.builder().p99(p99).build()));
+        return result;
+    }
+}
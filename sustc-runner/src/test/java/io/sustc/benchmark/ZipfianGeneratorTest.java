@@ -0,0 +1,53 @@
+package io.sustc.benchmark;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ZipfianGeneratorTest {
+
+    private static final int DRAWS = 200_000;
+
+    @Test
+    void ranksStayInRangeAndFollowTheSkew() {
+        int n = 1000;
+        double theta = 0.99;
+        ZipfianGenerator zipf = new ZipfianGenerator(n, theta);
+        Random random = new Random(42);
+        long[] counts = new long[n];
+        for (int i = 0; i < DRAWS; i++) {
+            long rank = zipf.next(random);
+            assertTrue(rank >= 0 && rank < n, () -> "rank " + rank);
+            counts[(int) rank]++;
+        }
+
+        double zetan = 0;
+        for (int i = 1; i <= n; i++) {
+            zetan += 1 / Math.pow(i, theta);
+        }
+        // 前两名由算法精确给出，概率分别是 1/zeta(n) 和 2^-theta/zeta(n)
+        assertEquals(1 / zetan, (double) counts[0] / DRAWS, 0.005);
+        assertEquals(Math.pow(2, -theta) / zetan, (double) counts[1] / DRAWS, 0.005);
+        assertTrue(counts[1] > counts[10] && counts[10] > counts[500]);
+    }
+
+    @Test
+    void singleRank() {
+        ZipfianGenerator zipf = new ZipfianGenerator(1, 0.5);
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, zipf.next(random));
+        }
+    }
+
+    @Test
+    void rejectsBadArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new ZipfianGenerator(0, 0.99));
+        assertThrows(IllegalArgumentException.class, () -> new ZipfianGenerator(10, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> new ZipfianGenerator(10, 0));
+    }
+}
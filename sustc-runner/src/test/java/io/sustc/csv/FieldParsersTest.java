@@ -0,0 +1,62 @@
+package io.sustc.csv;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link FieldParsers} must return exactly what {@link LegacyFieldParsers} returns, odd input included.
+ */
+class FieldParsersTest {
+
+    @ParameterizedTest
+    @NullSource
+    @ValueSource(strings = {
+            "", "   ", "null", "NULL", "c()",
+            "c(\"a\", \"b\")", "c(\"salt\",\"black pepper\")", "c(\"a, b\", \"c\")", "c( \"\" , \"x\")",
+            "c(a, b,  , c)", "a, b,,c", "c(\"unclosed)", "  c(\"x\")  ", "\"single\"", "c(\"x\") trailing",
+            "PT1H30M", "c(\"PT1H\", \"PT30M\")"
+    })
+    void stringListMatchesLegacy(String s) {
+        assertArrayEquals(LegacyFieldParsers.parseCsvList(s), FieldParsers.parseStringList(s));
+    }
+
+    @ParameterizedTest
+    @NullSource
+    @ValueSource(strings = {
+            "", "null", "()", "\"\"", "(,)", "(, 1)",
+            "(1, 2, 3)", "\"1,2,3\"", "(1,, 3)", "(1, 2, )", "(1, 2,  ,  )", "( 7 )", "c(1, 2)", "x",
+            "(1, x, 3)", "(-5, +6)", "(12345678901234567890)", "(１, 2)", "(PT1H, 2)"
+    })
+    void longListMatchesLegacy(String s) {
+        assertArrayEquals(LegacyFieldParsers.parseCsvLongList(s), FieldParsers.parseLongList(s));
+    }
+
+    @ParameterizedTest
+    @NullSource
+    @ValueSource(strings = {
+            "", "null", " 2020-01-02 03:04:05 ",
+            "2020-01-02 03:04:05", "2020-01-02T03:04:05", "2020-01-02", "2020-01-02T03:04:05Z", "2020-01-02 03:04:05.123",
+            "01/02/2020 03:04:05", "01/02/2020", "2020-02-29 00:00:00", "2020-02-30", "2020-13-01", "1969-12-31 23:59:59",
+            "2020-03-08 02:30:00", "2020-11-01 01:30:00",
+            "PT1H30M", "PT45M", "P1DT2H", "garbage"
+    })
+    void timestampMatchesLegacy(String s) {
+        assertEquals(LegacyFieldParsers.parseTimestamp(s), FieldParsers.parseTimestamp(s));
+    }
+
+    @ParameterizedTest
+    @NullSource
+    @ValueSource(strings = {
+            "", "null", " 42 ", "-7", "+8", "3.5", "1e3", "１２", "PT20M",
+            "99999999999", "2147483648", "-9223372036854775808", "9223372036854775808"
+    })
+    void numbersMatchLegacy(String s) {
+        assertEquals(LegacyFieldParsers.parseInt(s), FieldParsers.parseInt(s));
+        assertEquals(LegacyFieldParsers.parseLong(s), FieldParsers.parseLong(s));
+        assertEquals(LegacyFieldParsers.parseFloat(s), FieldParsers.parseFloat(s));
+    }
+}
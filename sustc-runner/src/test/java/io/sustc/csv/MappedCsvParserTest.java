@@ -0,0 +1,76 @@
+package io.sustc.csv;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MappedCsvParserTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void parsesQuotedFieldsAndSkipsHeaderAndShortRecords() throws IOException {
+        Path file = write("""
+                id,name,text\r
+                1,plain,"quoted, with comma"\r
+                2,"say ""hi""\","two\r
+                lines"
+                3,short
+                4,,
+                """);
+
+        List<String[]> records = MappedCsvParser.parse(file, 3, fields -> fields, ForkJoinPool.commonPool());
+
+        assertEquals(3, records.size());
+        assertArrayEquals(new String[]{"1", "plain", "quoted, with comma"}, records.get(0));
+        assertArrayEquals(new String[]{"2", "say \"hi\"", "two\nlines"}, records.get(1));
+        assertArrayEquals(new String[]{"4", "", ""}, records.get(2));
+    }
+
+    @Test
+    void headerOnlyFileHasNoRecords() throws IOException {
+        Path file = write("id,name\n");
+
+        assertEquals(List.of(), MappedCsvParser.parse(file, 1, fields -> fields, ForkJoinPool.commonPool()));
+    }
+
+    @Test
+    void keepsFileOrderAcrossRanges() throws IOException {
+        // 几 MB 的文件才会被切成多段并行解析
+        StringBuilder csv = new StringBuilder("id,text\n");
+        int rows = 60_000;
+        for (int i = 0; i < rows; i++) {
+            csv.append(i).append(",\"line one of ").append(i).append("\nline two, ").append("x".repeat(i % 50)).append("\"\n");
+        }
+        Path file = write(csv.toString());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<String[]> records = MappedCsvParser.parse(file, 2, fields -> fields, pool);
+            assertEquals(rows, records.size());
+            for (int i = 0; i < rows; i++) {
+                assertEquals(String.valueOf(i), records.get(i)[0]);
+                assertEquals("line one of " + i + "\nline two, " + "x".repeat(i % 50), records.get(i)[1]);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private Path write(String content) throws IOException {
+        Path file = dir.resolve("data.csv");
+        // 解析器按默认字符集解码
+        Files.writeString(file, content, Charset.defaultCharset());
+        return file;
+    }
+}
@@ -0,0 +1,135 @@
+package io.sustc.snapshot;
+
+import io.sustc.dto.RecipeRecord;
+import io.sustc.dto.ReviewRecord;
+import io.sustc.dto.UserRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void usersRoundTrip() throws IOException {
+        List<UserRecord> users = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            UserRecord u = new UserRecord();
+            u.setAuthorId(1_000_000_000_000L + i);
+            // 空值、空串和多字节字符都要原样读回
+            u.setAuthorName(i % 10 == 0 ? null : i % 10 == 1 ? "" : "用户" + i);
+            u.setGender(i % 2 == 0 ? "Male" : "Female");
+            u.setAge(i % 7 == 0 ? -1 : 18 + i);
+            u.setFollowers(i);
+            u.setFollowing(100 - i);
+            u.setFollowerUsers(i % 5 == 0 ? null : new long[i % 4]);
+            u.setFollowingUsers(new long[]{i, Long.MAX_VALUE, Long.MIN_VALUE});
+            u.setPassword(i % 3 == 0 ? null : "pw" + i);
+            u.setDeleted(i % 4 == 0);
+            users.add(u);
+        }
+
+        Snapshot<UserRecord> snapshot = writeAndOpen(SnapshotSchema.USERS, users);
+
+        assertEquals(users.size(), snapshot.size());
+        assertEquals(users, snapshot);
+        assertEquals(users.get(42), snapshot.get(42));
+    }
+
+    @Test
+    void recipesRoundTrip() throws IOException {
+        List<RecipeRecord> recipes = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            RecipeRecord r = new RecipeRecord();
+            r.setRecipeId(i + 1);
+            r.setName("recipe " + i);
+            r.setAuthorId(i * 3L);
+            r.setAuthorName(i % 6 == 0 ? null : "author " + i);
+            r.setCookTime(i % 2 == 0 ? "PT1H" : null);
+            r.setPrepTime("PT" + i + "M");
+            r.setTotalTime(null);
+            Timestamp published = Timestamp.valueOf("2020-01-02 03:04:05");
+            published.setNanos(123_456_789);
+            r.setDatePublished(i % 4 == 0 ? null : published);
+            r.setDescription("x".repeat(i * 20));
+            r.setRecipeCategory("Dessert");
+            r.setRecipeIngredientParts(i % 9 == 0 ? null : i % 9 == 1 ? new String[0] : new String[]{"salt", "black pepper", "糖"});
+            r.setAggregatedRating(i % 10 == 0 ? Float.NaN : i / 10f);
+            r.setReviewCount(i);
+            r.setCalories(123.5f);
+            r.setFatContent(-0f);
+            r.setSaturatedFatContent(Float.MAX_VALUE);
+            r.setCholesterolContent(Float.MIN_VALUE);
+            r.setSodiumContent(1);
+            r.setCarbohydrateContent(2);
+            r.setFiberContent(3);
+            r.setSugarContent(4);
+            r.setProteinContent(5);
+            r.setRecipeServings(i % 3);
+            r.setRecipeYield(i % 3 == 0 ? null : i + " cakes");
+            recipes.add(r);
+        }
+
+        assertEquals(recipes, writeAndOpen(SnapshotSchema.RECIPES, recipes));
+    }
+
+    @Test
+    void reviewsRoundTrip() throws IOException {
+        List<ReviewRecord> reviews = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            ReviewRecord r = new ReviewRecord();
+            r.setReviewId(i);
+            r.setRecipeId(i / 3);
+            r.setAuthorId(i * 7L);
+            r.setAuthorName("reviewer " + i);
+            r.setRating(i % 6);
+            r.setReview(i % 5 == 0 ? null : "good\n\"really\", " + i);
+            r.setDateSubmitted(new Timestamp(1_600_000_000_000L + i * 1000L));
+            r.setDateModified(i % 2 == 0 ? null : new Timestamp(-1_000L * i));
+            r.setLikes(i % 4 == 0 ? new long[0] : new long[]{i, i + 1L});
+            reviews.add(r);
+        }
+
+        assertEquals(reviews, writeAndOpen(SnapshotSchema.REVIEWS, reviews));
+    }
+
+    @Test
+    void emptySnapshot() throws IOException {
+        Snapshot<UserRecord> snapshot = writeAndOpen(SnapshotSchema.USERS, List.of());
+
+        assertEquals(0, snapshot.size());
+        assertThrows(IndexOutOfBoundsException.class, () -> snapshot.get(0));
+    }
+
+    @Test
+    void rejectsOtherSchemasAndFiles() throws IOException {
+        Path file = dir.resolve(SnapshotSchema.USERS.getFileName());
+        Snapshot.write(SnapshotSchema.USERS, List.of(new UserRecord()), file);
+        Path other = dir.resolve("users.ser");
+        Files.write(other, new byte[64]);
+
+        assertTrue(Snapshot.isSnapshot(file));
+        assertFalse(Snapshot.isSnapshot(other));
+        assertThrows(IOException.class, () -> Snapshot.open(SnapshotSchema.REVIEWS, file));
+        assertThrows(IOException.class, () -> Snapshot.open(SnapshotSchema.USERS, other));
+    }
+
+    private <T> Snapshot<T> writeAndOpen(SnapshotSchema<T> schema, List<T> records) throws IOException {
+        Path file = dir.resolve(schema.getFileName());
+        Snapshot.write(schema, records, file);
+        return Snapshot.open(schema, file);
+    }
+}